@@ -0,0 +1,38 @@
+package center.buran.fast.patterns.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков; аргументы командной строки те же, что и у
+ * `org.openjdk.jmh.Main`, профилировщик `gc` добавляется всегда, поэтому
+ * кроме пропускной способности выводится и скорость выделения памяти
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Точка входа
+     *
+     * @param args аргументы командной строки JMH
+     * @throws RunnerException            ошибка запуска бенчмарков
+     * @throws CommandLineOptionException ошибка разбора аргументов
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+    /**
+     * Запрещённый конструктор
+     */
+    private BenchmarkRunner() {
+        throw new AssertionError("Этот конструктор вызывать нельзя");
+    }
+}
@@ -0,0 +1,49 @@
+package center.buran.fast.patterns.bench;
+
+import center.buran.fast.patterns.misc.Combinatorics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк перебора сочетаний и перестановок
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CombinatoricsBenchmark {
+    /**
+     * Кол-во элементов, из которых выбираются сочетания
+     */
+    @Param({"20", "30"})
+    public int n;
+    /**
+     * Размер сочетания и кол-во элементов перестановки
+     */
+    @Param({"3", "5", "7"})
+    public int k;
+
+    /**
+     * Перебор всех сочетаний из `n` по `k`
+     *
+     * @param bh поглотитель результатов
+     */
+    @Benchmark
+    public void combine(Blackhole bh) {
+        Combinatorics.combine(n, k, bh::consume);
+    }
+
+    /**
+     * Перебор всех перестановок из `k` элементов
+     *
+     * @param bh поглотитель результатов
+     */
+    @Benchmark
+    public void generatePermutations(Blackhole bh) {
+        Combinatorics.generatePermutations(k, bh::consume);
+    }
+}
@@ -0,0 +1,94 @@
+package center.buran.fast.patterns.bench;
+
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк быстрого поиска изоморфных подграфов; дата-граф строится
+ * так же, как в `FastPatternResolverTest`: случайная матрица, в которую
+ * добавлено несколько копий случайного паттерна
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FastPatternResolverBenchmark {
+    /**
+     * Размер дата-графа
+     */
+    @Param({"50", "200"})
+    public int sourceSize;
+    /**
+     * Размер паттерна
+     */
+    @Param({"4", "6"})
+    public int patternSize;
+    /**
+     * Доля ненулевых элементов
+     */
+    @Param({"0.1", "0.5"})
+    public double nonZeroPart;
+    /**
+     * Флаг, нужна ли жёсткая проверка
+     */
+    @Param({"true", "false"})
+    public boolean hardCheck;
+
+    /**
+     * матрица связности дата-графа
+     */
+    private int[][] source;
+    /**
+     * паттерн
+     */
+    private int[][] pattern;
+    /**
+     * индекс дата-графа
+     */
+    private SourceIndex index;
+    /**
+     * подготовленный паттерн
+     */
+    private CompiledPattern compiled;
+
+    /**
+     * Построение входных данных
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(Workloads.SEED);
+        pattern = Workloads.randomMatrix(random, patternSize, nonZeroPart);
+        source = Workloads.sourceWithPattern(random, sourceSize, pattern, 5, nonZeroPart);
+        index = new SourceIndex(source);
+        compiled = new CompiledPattern(pattern, hardCheck);
+    }
+
+    /**
+     * Поиск по матрицам, включая построение индекса и подготовку паттерна
+     *
+     * @return найденные комбинации
+     */
+    @Benchmark
+    public List<CombinatoricsData> getAllPatterns() {
+        return FastPatternResolver.getAllPatterns(source, pattern, hardCheck);
+    }
+
+    /**
+     * Поиск по готовым индексу и подготовленному паттерну
+     *
+     * @return найденные комбинации
+     */
+    @Benchmark
+    public List<CombinatoricsData> getAllPatternsPrepared() {
+        return FastPatternResolver.getAllPatterns(index, compiled);
+    }
+}
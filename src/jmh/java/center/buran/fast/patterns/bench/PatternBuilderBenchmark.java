@@ -0,0 +1,84 @@
+package center.buran.fast.patterns.bench;
+
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк добавления паттернов в дата-граф; одна операция - построение
+ * дата-графа из копии исходной матрицы и добавление в него всех копий
+ * паттерна, как при подготовке данных в тестах
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternBuilderBenchmark {
+    /**
+     * Размер дата-графа
+     */
+    @Param({"50", "200"})
+    public int sourceSize;
+    /**
+     * Размер паттерна
+     */
+    @Param({"4", "6"})
+    public int patternSize;
+    /**
+     * Доля ненулевых элементов
+     */
+    @Param({"0.1", "0.5"})
+    public double nonZeroPart;
+    /**
+     * Кол-во добавляемых копий паттерна
+     */
+    @Param({"10", "100"})
+    public int copies;
+
+    /**
+     * исходная матрица дата-графа
+     */
+    private int[][] source;
+    /**
+     * паттерн
+     */
+    private int[][] pattern;
+    /**
+     * комбинации, по которым добавляются копии паттерна
+     */
+    private CombinatoricsData[] combinations;
+
+    /**
+     * Построение входных данных
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(Workloads.SEED);
+        pattern = Workloads.randomMatrix(random, patternSize, nonZeroPart);
+        source = Workloads.randomMatrix(random, sourceSize, nonZeroPart);
+        combinations = new CombinatoricsData[copies];
+        for (int i = 0; i < copies; i++)
+            combinations[i] = Workloads.randomCombination(random, sourceSize, patternSize);
+    }
+
+    /**
+     * Добавление всех копий паттерна
+     *
+     * @return итоговая матрица
+     */
+    @Benchmark
+    public int[][] putPattern() {
+        int[][] data = new int[source.length][];
+        for (int i = 0; i < source.length; i++)
+            data[i] = source[i].clone();
+        PatternBuilder pb = new PatternBuilder(data);
+        for (CombinatoricsData combination : combinations)
+            pb.putPattern(pattern, combination);
+        return pb.getData();
+    }
+}
@@ -0,0 +1,72 @@
+package center.buran.fast.patterns.bench;
+
+import center.buran.fast.patterns.PatternResolver;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк поиска изоморфных подграфов полным перебором; перебираются
+ * все сочетания и перестановки, поэтому размеры меньше, чем в
+ * {@link FastPatternResolverBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternResolverBenchmark {
+    /**
+     * Размер дата-графа
+     */
+    @Param({"10", "13"})
+    public int sourceSize;
+    /**
+     * Размер паттерна
+     */
+    @Param({"3", "5"})
+    public int patternSize;
+    /**
+     * Доля ненулевых элементов
+     */
+    @Param({"0.1", "0.5"})
+    public double nonZeroPart;
+    /**
+     * Флаг, нужна ли жёсткая проверка
+     */
+    @Param({"true", "false"})
+    public boolean hardCheck;
+
+    /**
+     * матрица связности дата-графа
+     */
+    private int[][] source;
+    /**
+     * паттерн
+     */
+    private int[][] pattern;
+
+    /**
+     * Построение входных данных
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(Workloads.SEED);
+        pattern = Workloads.randomMatrix(random, patternSize, nonZeroPart);
+        source = Workloads.sourceWithPattern(random, sourceSize, pattern, 2, nonZeroPart);
+    }
+
+    /**
+     * Поиск полным перебором
+     *
+     * @return найденные комбинации
+     */
+    @Benchmark
+    public List<CombinatoricsData> getAllPatterns() {
+        return PatternResolver.getAllPatterns(source, pattern, hardCheck);
+    }
+}
@@ -0,0 +1,92 @@
+package center.buran.fast.patterns.bench;
+
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+
+import java.util.Random;
+
+/**
+ * Воспроизводимые входные данные бенчмарков; матрицы строятся так же, как
+ * в `Combinatorics.randomMatrix`, но размер задаётся явно, а случайные
+ * числа берутся из генератора с заданным зерном
+ */
+class Workloads {
+    /**
+     * Зерно генератора случайных чисел
+     */
+    static final long SEED = 42;
+    /**
+     * Минимальное значение элементов матриц
+     */
+    static final int MIN_VAL = -100;
+    /**
+     * Максимальное значение элементов матриц (не включительно)
+     */
+    static final int MAX_VAL = 100;
+
+    /**
+     * Случайная матрица
+     *
+     * @param random      генератор случайных чисел
+     * @param n           размер матрицы
+     * @param nonZeroPart доля ненулевых элементов
+     * @return матрица
+     */
+    static int[][] randomMatrix(Random random, int n, double nonZeroPart) {
+        int[][] r = new int[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                if (random.nextDouble() < nonZeroPart)
+                    r[i][j] = MIN_VAL + random.nextInt(MAX_VAL - MIN_VAL);
+        return r;
+    }
+
+    /**
+     * Случайная комбинация из `k` различных вершин
+     *
+     * @param random генератор случайных чисел
+     * @param n      кол-во вершин
+     * @param k      размер комбинации
+     * @return комбинация
+     */
+    static CombinatoricsData randomCombination(Random random, int n, int k) {
+        // первые `k` элементов перемешивания Фишера-Йетса
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++)
+            all[i] = i;
+        int[] res = new int[k];
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = all[i];
+            all[i] = all[j];
+            all[j] = tmp;
+            res[i] = all[i];
+        }
+        return new CombinatoricsData(res);
+    }
+
+    /**
+     * Дата-граф со встроенными копиями паттерна
+     *
+     * @param random      генератор случайных чисел
+     * @param n           размер дата-графа
+     * @param pattern     паттерн
+     * @param copies      кол-во копий паттерна
+     * @param nonZeroPart доля ненулевых элементов
+     * @return матрица связности дата-графа
+     */
+    static int[][] sourceWithPattern(Random random, int n, int[][] pattern, int copies, double nonZeroPart) {
+        PatternBuilder pb = new PatternBuilder(randomMatrix(random, n, nonZeroPart));
+        // копии, пересекающиеся с уже добавленными, пропускаются
+        for (int i = 0; i < copies; i++)
+            pb.putPattern(pattern, randomCombination(random, n, pattern.length));
+        return pb.getData();
+    }
+
+    /**
+     * Запрещённый конструктор
+     */
+    private Workloads() {
+        throw new AssertionError("Этот конструктор вызывать нельзя");
+    }
+}
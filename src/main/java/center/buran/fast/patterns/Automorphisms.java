@@ -0,0 +1,216 @@
+package center.buran.fast.patterns;
+
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Группа автоморфизмов паттерна и условия нарушения симметрии.
+ * Автоморфизм - это перестановка `p` вершин паттерна, при которой
+ * `pattern[p[i]][p[j]] == pattern[i][j]` для всех `i` и `j`; если комбинация
+ * `c` является вхождением паттерна, то и комбинация `c[p[0]], ..., c[p[k-1]]`
+ * тоже им является. Условия вида `c[a] < c[b]` строятся по цепочке
+ * стабилизаторов: берётся вершина с нетривиальной орбитой, её индекс
+ * в дата-графе должен быть меньше индексов остальных вершин орбиты,
+ * после чего вершина фиксируется. Под условия попадает ровно одна
+ * комбинация из каждого класса эквивалентных вхождений
+ */
+public class Automorphisms {
+    /**
+     * искомый паттерн
+     */
+    private final int[][] pattern;
+    /**
+     * отсортированные значения строк паттерна, по ним отбрасываются
+     * заведомо неподходящие образы вершин
+     */
+    private final int[][] rows;
+    /**
+     * отсортированные значения столбцов паттерна
+     */
+    private final int[][] columns;
+    /**
+     * Порядок группы автоморфизмов
+     */
+    @Getter
+    private final long groupSize;
+    /**
+     * условия нарушения симметрии: пара `{a, b}` означает `c[a] < c[b]`
+     */
+    private final int[][] constraints;
+
+    /**
+     * Конструктор
+     *
+     * @param pattern паттерн
+     */
+    public Automorphisms(int[][] pattern) {
+        int k = pattern.length;
+        this.pattern = pattern;
+        this.rows = new int[k][];
+        this.columns = new int[k][];
+        for (int i = 0; i < k; i++) {
+            rows[i] = pattern[i].clone();
+            columns[i] = new int[k];
+            for (int j = 0; j < k; j++)
+                columns[i][j] = pattern[j][i];
+            Arrays.sort(rows[i]);
+            Arrays.sort(columns[i]);
+        }
+
+        // образы вершин, заданные заранее; -1 - образ не задан
+        int[] forced = new int[k];
+        Arrays.fill(forced, -1);
+        List<int[]> res = new ArrayList<>();
+        long size = 1;
+        for (int v = 0; v < k; v++) {
+            // орбита вершины в стабилизаторе уже зафиксированных вершин
+            int orbit = 1;
+            for (int w = 0; w < k; w++) {
+                if (w == v || forced[w] >= 0)
+                    continue;
+                forced[v] = w;
+                if (search(new int[k], new boolean[k], forced, 0, null)) {
+                    res.add(new int[]{v, w});
+                    orbit++;
+                }
+            }
+            // фиксируем вершину
+            forced[v] = v;
+            // по теореме об орбите и стабилизаторе порядок группы
+            // равен произведению длин орбит цепочки
+            size *= orbit;
+        }
+        this.groupSize = size;
+        this.constraints = res.toArray(new int[0][]);
+    }
+
+    /**
+     * Получить условия нарушения симметрии
+     *
+     * @return массив пар `{a, b}`, каждая из которых означает `c[a] < c[b]`;
+     * изменять его нельзя
+     */
+    public int[][] getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Получить условия нарушения симметрии для паттерна,
+     * переставленного в порядке сопоставления
+     *
+     * @param order порядок сопоставления
+     * @return массив пар позиций `{a, b}`, каждая из которых означает `c[a] < c[b]`
+     */
+    public int[][] getConstraints(int[] order) {
+        // позиция каждой вершины паттерна в порядке сопоставления
+        int[] position = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            position[order[i]] = i;
+
+        int[][] res = new int[constraints.length][];
+        for (int i = 0; i < constraints.length; i++)
+            res[i] = new int[]{position[constraints[i][0]], position[constraints[i][1]]};
+        return res;
+    }
+
+    /**
+     * Получить все автоморфизмы паттерна
+     *
+     * @return список перестановок, первой идёт тождественная
+     */
+    public List<int[]> getAll() {
+        int k = pattern.length;
+        int[] forced = new int[k];
+        Arrays.fill(forced, -1);
+        List<int[]> res = new ArrayList<>();
+        search(new int[k], new boolean[k], forced, 0, res);
+        return res;
+    }
+
+    /**
+     * Получить все вхождения, эквивалентные данному
+     *
+     * @param combination вхождение паттерна
+     * @param group       все автоморфизмы паттерна
+     * @param consumer    обработчик полученных вхождений
+     */
+    public static void expand(int[] combination, List<int[]> group, Consumer<int[]> consumer) {
+        for (int[] p : group) {
+            int[] res = new int[p.length];
+            for (int i = 0; i < p.length; i++)
+                res[i] = combination[p[i]];
+            consumer.accept(res);
+        }
+    }
+
+    /**
+     * Шаг поиска автоморфизмов перебором с отсечениями
+     *
+     * @param p      массив строящейся перестановки
+     * @param used   флаги использованных образов
+     * @param forced заданные заранее образы вершин, -1 - образ не задан
+     * @param cnt    кол-во вершин, для которых уже выбран образ
+     * @param res    список, в который складываются найденные автоморфизмы;
+     *               если `null`, то поиск останавливается на первом
+     * @return флаг, найден ли автоморфизм, если `res` равен `null`
+     */
+    private boolean search(int[] p, boolean[] used, int[] forced, int cnt, List<int[]> res) {
+        if (cnt == p.length) {
+            if (res == null)
+                return true;
+            res.add(p.clone());
+            return false;
+        }
+
+        for (int x = 0; x < p.length; x++) {
+            if (used[x] || (forced[cnt] >= 0 && forced[cnt] != x))
+                continue;
+            // образ вершины должен ещё никому не быть задан
+            // и совпадать с вершиной по значениям строки и столбца
+            if (forced[cnt] < 0 && isForced(forced, x))
+                continue;
+            if (!Arrays.equals(rows[cnt], rows[x]) || !Arrays.equals(columns[cnt], columns[x]))
+                continue;
+            p[cnt] = x;
+            if (!check(p, cnt))
+                continue;
+            used[x] = true;
+            boolean found = search(p, used, forced, cnt + 1, res);
+            used[x] = false;
+            if (found)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Проверить, задан ли заранее образ `x` какой-то вершине
+     *
+     * @param forced заданные заранее образы вершин
+     * @param x      образ
+     * @return флаг, задан ли образ
+     */
+    private static boolean isForced(int[] forced, int x) {
+        for (int f : forced)
+            if (f == x)
+                return true;
+        return false;
+    }
+
+    /**
+     * Проверить, что новая вершина перестановки сохраняет
+     * рёбра с уже выбранными вершинами и диагональный элемент
+     *
+     * @param p   перестановка
+     * @param cnt индекс новой вершины
+     * @return флаг, сохраняются ли рёбра
+     */
+    private boolean check(int[] p, int cnt) {
+        for (int j = 0; j <= cnt; j++)
+            if (pattern[p[cnt]][p[j]] != pattern[cnt][j] || pattern[p[j]][p[cnt]] != pattern[j][cnt])
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,283 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.DenseGraph;
+
+/**
+ * Множества вершин-кандидатов для позиций паттерна в виде битовых масок;
+ * начальные множества строятся один раз по свойствам отдельных вершин,
+ * а после выбора каждой вершины множества следующих позиций пересекаются
+ * с масками её соседей (forward checking), так что ветвь отсекается,
+ * как только у какой-то из следующих позиций не остаётся кандидатов
+ */
+class CandidateDomains {
+    /**
+     * кол-во 64-битных слов в одной маске
+     */
+    private final int words;
+    /**
+     * искомый паттерн, вершины которого переставлены в порядке сопоставления
+     */
+    private final int[][] pattern;
+    /**
+     * флаг, нужна ли жёсткая проверка
+     */
+    private final boolean hardCheck;
+    /**
+     * индекс дата-графа с масками соседей его вершин
+     */
+    private final SourceIndex index;
+    /**
+     * множества кандидатов по уровням перебора: `levels[d][w]` - кандидаты
+     * позиции `w >= d` после выбора вершин для первых `d` позиций
+     */
+    private final long[][][] levels;
+    /**
+     * условия нарушения симметрии: `relation[a][b]` равен 1, если вершина
+     * позиции `b > a` должна быть больше вершины позиции `a`, -1 - если
+     * меньше, и 0, если условия нет
+     */
+    private final int[][] relation;
+
+    /**
+     * Конструктор
+     *
+     * @param index    индекс дата-графа
+     * @param compiled подготовленный паттерн
+     * @param unique   флаг, нужно ли применять условия нарушения симметрии
+     */
+    CandidateDomains(SourceIndex index, CompiledPattern compiled, boolean unique) {
+        DenseGraph source = index.getGraph();
+        int[][] pattern = compiled.getOrdered();
+        this.relation = new int[pattern.length][pattern.length];
+        if (unique)
+            for (int[] c : compiled.getConstraints()) {
+                // условие проверяется при выборе вершины для более ранней позиции
+                if (c[0] < c[1])
+                    relation[c[0]][c[1]] = 1;
+                else
+                    relation[c[1]][c[0]] = -1;
+            }
+        this.words = (source.getSize() + 63) >>> 6;
+        this.pattern = pattern;
+        this.hardCheck = compiled.isHardCheck();
+        this.index = index;
+        this.levels = new long[pattern.length][pattern.length][words];
+
+        // начальные множества кандидатов
+        for (int u = 0; u < pattern.length; u++) {
+            SourceIndex.Signature signature = compiled.getSignature(u);
+            for (int v = 0; v < source.getSize(); v++) {
+                // ненулевые рёбра паттерна переходят в разные рёбра дата-графа
+                // с тем же значением, поэтому сигнатура кандидата должна доминировать
+                if (!index.dominates(v, signature))
+                    continue;
+                // диагональный элемент проверяется так же, как и остальные
+                if ((hardCheck || pattern[u][u] != 0) && pattern[u][u] != source.get(v, v))
+                    continue;
+                levels[0][u][v >>> 6] |= 1L << v;
+            }
+        }
+    }
+
+    /**
+     * Конструктор копии; индекс общий, множества кандидатов
+     * копируются начиная с заданного уровня, более ранние уровни
+     * копии не нужны
+     *
+     * @param other копируемые множества
+     * @param from  первый копируемый уровень
+     */
+    private CandidateDomains(CandidateDomains other, int from) {
+        this.words = other.words;
+        this.pattern = other.pattern;
+        this.hardCheck = other.hardCheck;
+        this.index = other.index;
+        this.relation = other.relation;
+        this.levels = new long[other.levels.length][][];
+        for (int d = from; d < levels.length; d++) {
+            levels[d] = new long[other.levels[d].length][];
+            for (int w = 0; w < levels[d].length; w++)
+                levels[d][w] = other.levels[d][w].clone();
+        }
+    }
+
+    /**
+     * Получить копию с собственными множествами кандидатов
+     * для перебора, начинающегося с заданного уровня
+     *
+     * @param from первый уровень, с которого будет идти перебор в копии
+     * @return копия
+     */
+    CandidateDomains copy(int from) {
+        return new CandidateDomains(this, from);
+    }
+
+    /**
+     * Получить кол-во вершин дата-графа
+     *
+     * @return кол-во вершин
+     */
+    int getSourceSize() {
+        return index.getSize();
+    }
+
+    /**
+     * Получить размер начального множества кандидатов позиции
+     *
+     * @param u позиция паттерна
+     * @return кол-во вершин, прошедших фильтр по сигнатуре и диагональному элементу
+     */
+    int getInitialSize(int u) {
+        int res = 0;
+        for (long word : levels[0][u])
+            res += Long.bitCount(word);
+        return res;
+    }
+
+    /**
+     * Получить следующего кандидата позиции
+     *
+     * @param cnt  позиция паттерна (она же уровень перебора)
+     * @param from индекс, начиная с которого ищется кандидат
+     * @return индекс вершины-кандидата или -1, если кандидатов не осталось
+     */
+    int next(int cnt, int from) {
+        long[] domain = levels[cnt][cnt];
+        int w = from >>> 6;
+        if (w >= words)
+            return -1;
+        // отбрасываем биты младше `from` в первом слове
+        long word = domain[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words)
+                return -1;
+            word = domain[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Получить кол-во кандидатов позиции на её уровне перебора
+     *
+     * @param cnt позиция паттерна (она же уровень перебора)
+     * @return кол-во вершин-кандидатов
+     */
+    int size(int cnt) {
+        int res = 0;
+        for (long word : levels[cnt][cnt])
+            res += Long.bitCount(word);
+        return res;
+    }
+
+    /**
+     * Получить кандидата позиции по его порядковому номеру
+     *
+     * @param cnt  позиция паттерна (она же уровень перебора)
+     * @param rank номер кандидата в порядке возрастания, меньше {@link #size(int)}
+     * @return индекс вершины-кандидата
+     */
+    int select(int cnt, int rank) {
+        long[] domain = levels[cnt][cnt];
+        int w = 0;
+        // пропускаем слова целиком, пока в них меньше кандидатов, чем осталось
+        for (int bits = Long.bitCount(domain[0]); bits <= rank; bits = Long.bitCount(domain[++w]))
+            rank -= bits;
+        long word = domain[w];
+        // сбрасываем младшие единицы до нужной
+        for (int i = 0; i < rank; i++)
+            word &= word - 1;
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Выбрать вершину для позиции и построить множества кандидатов
+     * следующих позиций на следующем уровне
+     *
+     * @param cnt позиция паттерна
+     * @param v   выбранная вершина дата-графа
+     * @return флаг, остались ли кандидаты у всех следующих позиций
+     */
+    boolean assign(int cnt, int v) {
+        // у последней позиции следующих нет
+        if (cnt + 1 == levels.length)
+            return true;
+
+        long[][] cur = levels[cnt];
+        long[][] next = levels[cnt + 1];
+        long[] out = index.getOutBits(v);
+        long[] in = index.getInBits(v);
+        for (int w = cnt + 1; w < pattern.length; w++) {
+            // значения рёбер в паттерне между выбранной позицией и `w`
+            int forward = pattern[cnt][w];
+            int backward = pattern[w][cnt];
+            long[] src = cur[w];
+            long[] dst = next[w];
+            long any = 0;
+            for (int i = 0; i < words; i++) {
+                long word = src[i];
+                // ненулевому ребру паттерна соответствует ребро дата-графа,
+                // при жёсткой проверке нулевому - его отсутствие
+                if (forward != 0)
+                    word &= out[i];
+                else if (hardCheck)
+                    word &= ~out[i];
+                if (backward != 0)
+                    word &= in[i];
+                else if (hardCheck)
+                    word &= ~in[i];
+                dst[i] = word;
+                any |= word;
+            }
+            // выбранная вершина больше никому не достаётся
+            dst[v >>> 6] &= ~(1L << v);
+            // условия нарушения симметрии оставляют только вершины
+            // больше или меньше выбранной
+            if (relation[cnt][w] > 0)
+                clearBelow(dst, v);
+            else if (relation[cnt][w] < 0)
+                clearAbove(dst, v);
+            // если у позиции не осталось кандидатов, ветвь можно отсечь
+            if (relation[cnt][w] != 0 ? isEmpty(dst) : any == 0 || (dst[v >>> 6] == 0 && isEmpty(dst)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Убрать из маски вершины с индексами не больше заданного
+     *
+     * @param mask маска
+     * @param v    индекс вершины
+     */
+    private static void clearBelow(long[] mask, int v) {
+        for (int i = 0; i < v >>> 6; i++)
+            mask[i] = 0;
+        // сдвиг на 64 не обнуляет слово, поэтому сдвигаем в два приёма
+        mask[v >>> 6] &= (-1L << v) << 1;
+    }
+
+    /**
+     * Убрать из маски вершины с индексами не меньше заданного
+     *
+     * @param mask маска
+     * @param v    индекс вершины
+     */
+    private static void clearAbove(long[] mask, int v) {
+        for (int i = (v >>> 6) + 1; i < mask.length; i++)
+            mask[i] = 0;
+        mask[v >>> 6] &= ~(-1L << v);
+    }
+
+    /**
+     * Проверить, пуста ли маска
+     *
+     * @param mask маска
+     * @return флаг, пуста ли маска
+     */
+    private static boolean isEmpty(long[] mask) {
+        for (long word : mask)
+            if (word != 0)
+                return false;
+        return true;
+    }
+}
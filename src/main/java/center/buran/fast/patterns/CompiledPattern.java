@@ -0,0 +1,255 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.misc.Combinatorics;
+import lombok.Getter;
+
+/**
+ * Паттерн, подготовленный к поиску: порядок сопоставления вершин,
+ * переставленный паттерн, списки проверяемых элементов для каждой позиции,
+ * степени и сигнатуры вершин и автоморфизмы строятся один раз в конструкторе.
+ * Объект не меняется после создания, поэтому его можно кэшировать и
+ * использовать из разных потоков для поиска в любых дата-графах
+ */
+public class CompiledPattern {
+    /**
+     * Кол-во вершин паттерна
+     */
+    @Getter
+    private final int size;
+    /**
+     * Флаг, нужна ли жёсткая проверка
+     */
+    @Getter
+    private final boolean hardCheck;
+    /**
+     * исходный паттерн, копия переданного
+     */
+    private final int[][] pattern;
+    /**
+     * порядок сопоставления вершин паттерна
+     */
+    private final int[] order;
+    /**
+     * паттерн, переставленный в порядке сопоставления
+     */
+    private final int[][] ordered;
+    /**
+     * степени вершин переставленного паттерна
+     */
+    private final int[] powers;
+    /**
+     * сигнатуры вершин переставленного паттерна
+     */
+    private final SourceIndex.Signature[] signatures;
+    /**
+     * для каждой позиции `u` - более ранние позиции `i`, для которых
+     * проверяется элемент `ordered[u][i]`; при нежёсткой проверке только
+     * те, у которых элемент ненулевой
+     */
+    private final int[][] rowPositions;
+    /**
+     * значения `ordered[u][i]` для позиций из `rowPositions[u]`
+     */
+    private final int[][] rowValues;
+    /**
+     * для каждой позиции `u` - более ранние позиции `i`, для которых
+     * проверяется элемент `ordered[i][u]`
+     */
+    private final int[][] columnPositions;
+    /**
+     * значения `ordered[i][u]` для позиций из `columnPositions[u]`
+     */
+    private final int[][] columnValues;
+    /**
+     * группа автоморфизмов паттерна
+     */
+    private final Automorphisms automorphisms;
+    /**
+     * условия нарушения симметрии для позиций переставленного паттерна
+     */
+    private final int[][] constraints;
+
+    /**
+     * Конструктор
+     *
+     * @param pattern   паттерн, копируется
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     */
+    public CompiledPattern(int[][] pattern, boolean hardCheck) {
+        this.size = pattern.length;
+        this.hardCheck = hardCheck;
+        this.pattern = new int[size][];
+        for (int i = 0; i < size; i++) {
+            if (pattern[i].length != size)
+                throw new AssertionError("матрица паттерна должна быть квадратной");
+            this.pattern[i] = pattern[i].clone();
+        }
+        this.order = MatchingOrder.getOrder(this.pattern);
+        this.ordered = Combinatorics.makePermute(this.pattern, order);
+        this.powers = PatternResolver.getPowers(ordered);
+
+        this.signatures = new SourceIndex.Signature[size];
+        this.rowPositions = new int[size][];
+        this.rowValues = new int[size][];
+        this.columnPositions = new int[size][];
+        this.columnValues = new int[size][];
+        for (int u = 0; u < size; u++) {
+            signatures[u] = new SourceIndex.Signature(ordered, u);
+            int rowLen = 0;
+            int columnLen = 0;
+            for (int i = 0; i < u; i++) {
+                if (hardCheck || ordered[u][i] != 0)
+                    rowLen++;
+                if (hardCheck || ordered[i][u] != 0)
+                    columnLen++;
+            }
+            rowPositions[u] = new int[rowLen];
+            rowValues[u] = new int[rowLen];
+            columnPositions[u] = new int[columnLen];
+            columnValues[u] = new int[columnLen];
+            rowLen = 0;
+            columnLen = 0;
+            for (int i = 0; i < u; i++) {
+                if (hardCheck || ordered[u][i] != 0) {
+                    rowPositions[u][rowLen] = i;
+                    rowValues[u][rowLen++] = ordered[u][i];
+                }
+                if (hardCheck || ordered[i][u] != 0) {
+                    columnPositions[u][columnLen] = i;
+                    columnValues[u][columnLen++] = ordered[i][u];
+                }
+            }
+        }
+
+        this.automorphisms = new Automorphisms(this.pattern);
+        this.constraints = automorphisms.getConstraints(order);
+    }
+
+    /**
+     * Получить исходный паттерн
+     *
+     * @return копия паттерна
+     */
+    public int[][] getPattern() {
+        int[][] res = new int[size][];
+        for (int i = 0; i < size; i++)
+            res[i] = pattern[i].clone();
+        return res;
+    }
+
+    /**
+     * Получить порядок сопоставления вершин паттерна
+     *
+     * @return копия порядка, i-й элемент которого - индекс вершины
+     * паттерна, сопоставляемой i-й по счёту
+     */
+    public int[] getOrder() {
+        return order.clone();
+    }
+
+    /**
+     * Получить порядок группы автоморфизмов паттерна
+     *
+     * @return порядок группы автоморфизмов
+     */
+    public long getGroupSize() {
+        return automorphisms.getGroupSize();
+    }
+
+    /**
+     * Получить группу автоморфизмов паттерна
+     *
+     * @return группа автоморфизмов
+     */
+    Automorphisms getAutomorphisms() {
+        return automorphisms;
+    }
+
+    /**
+     * Получить паттерн, переставленный в порядке сопоставления
+     *
+     * @return переставленный паттерн, изменять его нельзя
+     */
+    int[][] getOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Получить степени вершин переставленного паттерна
+     *
+     * @return массив степеней, изменять его нельзя
+     */
+    int[] getPowers() {
+        return powers;
+    }
+
+    /**
+     * Получить сигнатуру вершины переставленного паттерна
+     *
+     * @param u позиция
+     * @return сигнатура вершины
+     */
+    SourceIndex.Signature getSignature(int u) {
+        return signatures[u];
+    }
+
+    /**
+     * Получить условия нарушения симметрии для позиций переставленного паттерна
+     *
+     * @return массив пар позиций `{a, b}`, изменять его нельзя
+     */
+    int[][] getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Получить более ранние позиции, для которых проверяется строка позиции
+     *
+     * @param u позиция
+     * @return массив позиций `i`, изменять его нельзя
+     */
+    int[] getRowPositions(int u) {
+        return rowPositions[u];
+    }
+
+    /**
+     * Получить значения `ordered[u][i]` для позиций из {@link #getRowPositions(int)}
+     *
+     * @param u позиция
+     * @return массив значений, изменять его нельзя
+     */
+    int[] getRowValues(int u) {
+        return rowValues[u];
+    }
+
+    /**
+     * Получить более ранние позиции, для которых проверяется столбец позиции
+     *
+     * @param u позиция
+     * @return массив позиций `i`, изменять его нельзя
+     */
+    int[] getColumnPositions(int u) {
+        return columnPositions[u];
+    }
+
+    /**
+     * Получить значения `ordered[i][u]` для позиций из {@link #getColumnPositions(int)}
+     *
+     * @param u позиция
+     * @return массив значений, изменять его нельзя
+     */
+    int[] getColumnValues(int u) {
+        return columnValues[u];
+    }
+
+    /**
+     * Перевести комбинацию, найденную для переставленного паттерна,
+     * в комбинацию для исходного паттерна
+     *
+     * @param combination комбинация по позициям переставленного паттерна
+     * @return комбинация по вершинам исходного паттерна
+     */
+    int[] restore(int[] combination) {
+        return MatchingOrder.restore(combination, order);
+    }
+}
@@ -0,0 +1,98 @@
+package center.buran.fast.patterns;
+
+import lombok.Getter;
+
+/**
+ * Оценка кол-ва комбинаций, полученная {@link PatternEstimator}:
+ * несмещённая оценка, её стандартная ошибка и доверительный интервал
+ * по нормальному приближению
+ */
+public class CountEstimate {
+    /**
+     * Несмещённая оценка кол-ва комбинаций
+     */
+    @Getter
+    private final double estimate;
+    /**
+     * Стандартная ошибка оценки
+     */
+    @Getter
+    private final double standardError;
+    /**
+     * Нижняя граница доверительного интервала, не меньше нуля
+     */
+    @Getter
+    private final double lower;
+    /**
+     * Верхняя граница доверительного интервала
+     */
+    @Getter
+    private final double upper;
+    /**
+     * Доверительная вероятность интервала
+     */
+    @Getter
+    private final double confidence;
+    /**
+     * Кол-во случайных спусков по дереву перебора
+     */
+    @Getter
+    private final long samples;
+    /**
+     * Флаг, достигнута ли заданная относительная точность
+     */
+    @Getter
+    private final boolean converged;
+
+    /**
+     * Конструктор
+     *
+     * @param estimate      оценка кол-ва комбинаций
+     * @param standardError стандартная ошибка оценки
+     * @param halfWidth     полуширина доверительного интервала
+     * @param confidence    доверительная вероятность
+     * @param samples       кол-во случайных спусков
+     * @param converged     флаг, достигнута ли заданная точность
+     */
+    CountEstimate(
+            double estimate, double standardError, double halfWidth, double confidence, long samples, boolean converged
+    ) {
+        this.estimate = estimate;
+        this.standardError = standardError;
+        this.lower = Math.max(0, estimate - halfWidth);
+        this.upper = estimate + halfWidth;
+        this.confidence = confidence;
+        this.samples = samples;
+        this.converged = converged;
+    }
+
+    /**
+     * Получить относительную полуширину доверительного интервала
+     *
+     * @return полуширина, делённая на оценку, или бесконечность при нулевой оценке
+     */
+    public double getRelativeError() {
+        return estimate > 0 ? (upper - estimate) / estimate : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Проверить, попадает ли значение в доверительный интервал
+     *
+     * @param value значение
+     * @return флаг, попадает ли
+     */
+    public boolean contains(double value) {
+        return value >= lower && value <= upper;
+    }
+
+    /**
+     * Строковое представление объекта
+     *
+     * @return строковое представление объекта
+     */
+    @Override
+    public String toString() {
+        return String.format("%.1f [%.1f, %.1f] (%.0f%%, %d samples)",
+                estimate, lower, upper, confidence * 100, samples);
+    }
+}
@@ -1,20 +1,31 @@
 package center.buran.fast.patterns;
 
 
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.graph.SparseGraph;
 import center.buran.fast.patterns.misc.CombinatoricsData;
 
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Класс быстрого поиска изоморфных подграфов
+ * Класс быстрого поиска изоморфных подграфов.
+ * Методы, принимающие матрицу связности `int[][]`, при каждом вызове
+ * строят {@link SourceIndex}: маски соседей (`n * n / 4` байт) и гистограммы
+ * значений рёбер. Сама матрица при этом не копируется и не должна меняться
+ * до конца поиска. Для нескольких поисков по одному дата-графу индекс
+ * лучше построить один раз и передавать в методы, принимающие `SourceIndex`
  */
 public class FastPatternResolver {
 
     /**
      * Быстрый поиск изоморфных подграфов
      *
-     * @param source    дата-граф
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
      * @param pattern   искомый паттерн
      * @param hardCheck флаг, нужна ли жёсткая проверка; если `hardCheck` равен `false`, то нулевому элементу паттерна
      *                  может соответствовать произвольное значение в переставленной подматрице, а если
@@ -25,81 +36,885 @@ public class FastPatternResolver {
      * были изоморфны заданному паттерну
      */
     public static List<CombinatoricsData> getAllPatterns(int[][] source, int[][] pattern, boolean hardCheck) {
-        if (pattern.length > source.length)
-            throw new AssertionError("размер паттерна: " + pattern.length + " превышает " +
-                    "размер дата-графа " + source.length);
+        return getAllPatterns(SourceIndex.wrap(source), pattern, hardCheck);
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов в плотном дата-графе
+     *
+     * @param source    плотный дата-граф
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(DenseGraph source, int[][] pattern, boolean hardCheck) {
+        return getAllPatterns(new SourceIndex(source), pattern, hardCheck);
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов по заранее построенному индексу
+     * дата-графа; индекс можно использовать для любого кол-ва запросов
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(SourceIndex index, int[][] pattern, boolean hardCheck) {
+        return getAllPatterns(index, new CompiledPattern(pattern, hardCheck));
+    }
 
+    /**
+     * Быстрый поиск изоморфных подграфов по заранее построенному индексу
+     * дата-графа и заранее подготовленному паттерну; подготовленный паттерн
+     * можно использовать для любого кол-ва запросов к любым дата-графам
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(SourceIndex index, CompiledPattern pattern) {
         // множество найденных паттернов
         List<CombinatoricsData> res = new ArrayList<>();
-        // флаги, использована ли уже та или иная точка
-        boolean[] used = new boolean[source.length];
-        // текущая комбинация
-        int[] combination = new int[pattern.length];
-        // степени вершин в дата-графе
-        int[] sourcePowers = PatternResolver.getPowers(source);
-        // степени вершин в паттерне
-        int[] patternPowers = PatternResolver.getPowers(pattern);
 
-        // запускаем рекурсию
+        // запускаем рекурсию для переставленного паттерна и переводим
+        // найденные комбинации обратно к индексам исходного паттерна
+        runSearch(index, pattern, false, c -> res.add(new CombinatoricsData(pattern.restore(c))));
+        // возвращаем множество найденных паттернов
+        return res;
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов со сбором статистики дерева
+     * перебора; используется отдельный шаг перебора со счётчиками, поэтому
+     * поиск без статистики ими не замедляется
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param stats   статистика, к которой добавляется статистика поиска
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(
+            SourceIndex index, CompiledPattern pattern, SearchStats stats
+    ) {
+        List<CombinatoricsData> res = new ArrayList<>();
+        runSearch(index, pattern, stats, c -> res.add(new CombinatoricsData(pattern.restore(c))));
+        return res;
+    }
+
+    /**
+     * Быстрый поиск набора паттернов за один перебор; паттерны с общими
+     * первыми позициями после перестановки в порядке сопоставления
+     * перебираются вместе, см. {@link PatternBatch}
+     *
+     * @param index     индекс дата-графа
+     * @param patterns  искомые паттерны
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return списки комбинаций по номерам паттернов в `patterns`
+     */
+    public static List<List<CombinatoricsData>> getAllPatterns(
+            SourceIndex index, List<int[][]> patterns, boolean hardCheck
+    ) {
+        return new PatternBatch(patterns).getAllPatterns(index, hardCheck);
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов с нарушением симметрии: по группе
+     * автоморфизмов паттерна строятся условия, под которые попадает ровно
+     * одно вхождение из каждого класса вхождений, отличающихся только
+     * перестановкой вершин паттерна (например, для треугольника таких
+     * вхождений 6, а для клики из `k` вершин - `k!`), и перебираются только
+     * такие вхождения. Автоморфизмами считаются перестановки, при которых
+     * паттерн совпадает с собой поэлементно, поэтому при нежёсткой проверке
+     * условия строятся так же, как и при жёсткой
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param unique    флаг, нужно ли вернуть только по одному вхождению из класса;
+     *                  если `false`, то остальные вхождения класса получаются
+     *                  из найденного перестановкой без повторного поиска
+     * @return список комбинаций; если `unique` равен `false`, то множество
+     * комбинаций совпадает с тем, которое возвращает
+     * {@link #getAllPatterns(int[][], int[][], boolean)}, но порядок другой
+     */
+    public static List<CombinatoricsData> getAllPatterns(
+            int[][] source, int[][] pattern, boolean hardCheck, boolean unique
+    ) {
+        return getAllPatterns(SourceIndex.wrap(source), pattern, hardCheck, unique);
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов с нарушением симметрии
+     * по заранее построенному индексу дата-графа
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param unique    флаг, нужно ли вернуть только по одному вхождению из класса
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean, boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(
+            SourceIndex index, int[][] pattern, boolean hardCheck, boolean unique
+    ) {
+        return getAllPatterns(index, new CompiledPattern(pattern, hardCheck), unique);
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов с нарушением симметрии
+     * по заранее построенному индексу и подготовленному паттерну
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param unique  флаг, нужно ли вернуть только по одному вхождению из класса
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean, boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(SourceIndex index, CompiledPattern pattern, boolean unique) {
+        // все автоморфизмы нужны, только если вхождения надо размножать
+        List<int[]> group = unique ? null : pattern.getAutomorphisms().getAll();
+        // множество найденных паттернов
+        List<CombinatoricsData> res = new ArrayList<>();
+
+        runSearch(index, pattern, true,
+                c -> {
+                    int[] restored = pattern.restore(c);
+                    if (unique)
+                        res.add(new CombinatoricsData(restored));
+                    else
+                        Automorphisms.expand(restored, group, e -> res.add(new CombinatoricsData(e)));
+                    return true;
+                }
+        );
+        // возвращаем множество найденных паттернов
+        return res;
+    }
+
+    /**
+     * Параллельный быстрый поиск изоморфных подграфов; дерево перебора
+     * делится на задачи `fork/join` по вершинам, выбранным для первых
+     * позиций паттерна, более глубокие поддеревья делятся адаптивно,
+     * если в пуле есть простаивающие потоки
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param pool      пул потоков, в котором выполняется поиск
+     * @return список таких комбинаций точек из источника, чтобы при составлении
+     * соответствующих переставленных подматриц, подграфы, построенные по ним,
+     * были изоморфны заданному паттерну; порядок комбинаций совпадает
+     * с порядком, который возвращает {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatternsParallel(
+            int[][] source, int[][] pattern, boolean hardCheck, ForkJoinPool pool
+    ) {
+        return getAllPatternsParallel(SourceIndex.wrap(source), pattern, hardCheck, pool);
+    }
+
+    /**
+     * Параллельный быстрый поиск изоморфных подграфов по заранее построенному индексу дата-графа
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param pool      пул потоков, в котором выполняется поиск
+     * @return список комбинаций, как у {@link #getAllPatternsParallel(int[][], int[][], boolean, ForkJoinPool)}
+     */
+    public static List<CombinatoricsData> getAllPatternsParallel(
+            SourceIndex index, int[][] pattern, boolean hardCheck, ForkJoinPool pool
+    ) {
+        return getAllPatternsParallel(index, new CompiledPattern(pattern, hardCheck), pool);
+    }
+
+    /**
+     * Параллельный быстрый поиск изоморфных подграфов по заранее построенному
+     * индексу дата-графа и подготовленному паттерну
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param pool    пул потоков, в котором выполняется поиск
+     * @return список комбинаций, как у {@link #getAllPatternsParallel(int[][], int[][], boolean, ForkJoinPool)}
+     */
+    public static List<CombinatoricsData> getAllPatternsParallel(
+            SourceIndex index, CompiledPattern pattern, ForkJoinPool pool
+    ) {
+        checkSize(index, pattern);
+
+        // запускаем корневую задачу с пустым префиксом комбинации
+        return pool.invoke(new PatternSearchTask(
+                index.getGraph(), pattern, new CandidateDomains(index, pattern, false), new int[pattern.getSize()], 0
+        ));
+    }
+
+    /**
+     * Ленивый быстрый поиск изоморфных подграфов; комбинации
+     * не накапливаются в списке, а ищутся по мере того, как их запрашивает
+     * поток, поэтому время до первой комбинации и потребление памяти
+     * не зависят от общего кол-ва найденных комбинаций. Поток поддерживает
+     * параллельную обработку: перебор делится по диапазонам кандидатов
+     * для самых верхних позиций паттерна
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return поток комбинаций точек из источника в том же порядке,
+     * что и у {@link #getAllPatterns(int[][], int[][], boolean)}; каждая
+     * комбинация - отдельный массив
+     */
+    public static Stream<int[]> stream(int[][] source, int[][] pattern, boolean hardCheck) {
+        return stream(SourceIndex.wrap(source), pattern, hardCheck);
+    }
+
+    /**
+     * Ленивый быстрый поиск изоморфных подграфов по заранее построенному индексу дата-графа
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return поток комбинаций, как у {@link #stream(int[][], int[][], boolean)}
+     */
+    public static Stream<int[]> stream(SourceIndex index, int[][] pattern, boolean hardCheck) {
+        return stream(index, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Ленивый быстрый поиск изоморфных подграфов по заранее построенному
+     * индексу дата-графа и подготовленному паттерну
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return поток комбинаций, как у {@link #stream(int[][], int[][], boolean)}
+     */
+    public static Stream<int[]> stream(SourceIndex index, CompiledPattern pattern) {
+        checkSize(index, pattern);
+        // пустому паттерну соответствует единственная пустая комбинация
+        if (pattern.getSize() == 0)
+            return Stream.of(new int[0]);
+
+        return StreamSupport.stream(new PatternSpliterator(
+                index.getGraph(), pattern, new CandidateDomains(index, pattern, false)
+        ), false);
+    }
+
+    /**
+     * Проверка, встречается ли паттерн в дата-графе; перебор
+     * останавливается на первой найденной комбинации
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return флаг, найдена ли хотя бы одна комбинация
+     */
+    public static boolean exists(int[][] source, int[][] pattern, boolean hardCheck) {
+        return exists(SourceIndex.wrap(source), pattern, hardCheck);
+    }
+
+    /**
+     * Проверка, встречается ли паттерн в дата-графе, по заранее построенному индексу дата-графа
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return флаг, найдена ли хотя бы одна комбинация
+     */
+    public static boolean exists(SourceIndex index, int[][] pattern, boolean hardCheck) {
+        return exists(index, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Проверка, встречается ли паттерн в дата-графе, по заранее построенному
+     * индексу дата-графа и подготовленному паттерну
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return флаг, найдена ли хотя бы одна комбинация
+     */
+    public static boolean exists(SourceIndex index, CompiledPattern pattern) {
+        return !findFirst(1, index, pattern).isEmpty();
+    }
+
+    /**
+     * Поиск первых `k` комбинаций; перебор останавливается,
+     * как только они найдены
+     *
+     * @param k         максимальное кол-во комбинаций
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список не более чем `k` первых комбинаций в порядке
+     * {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> findFirst(int k, int[][] source, int[][] pattern, boolean hardCheck) {
+        return findFirst(k, SourceIndex.wrap(source), pattern, hardCheck);
+    }
+
+    /**
+     * Поиск первых `k` комбинаций по заранее построенному индексу дата-графа
+     *
+     * @param k         максимальное кол-во комбинаций
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций, как у {@link #findFirst(int, int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> findFirst(int k, SourceIndex index, int[][] pattern, boolean hardCheck) {
+        return findFirst(k, index, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Поиск первых `k` комбинаций по заранее построенному индексу
+     * дата-графа и подготовленному паттерну
+     *
+     * @param k       максимальное кол-во комбинаций
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return список комбинаций, как у {@link #findFirst(int, int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> findFirst(int k, SourceIndex index, CompiledPattern pattern) {
+        if (k < 0)
+            throw new AssertionError("недопустимое кол-во комбинаций: " + k);
+        // множество найденных паттернов
+        List<CombinatoricsData> res = new ArrayList<>();
+        if (k == 0)
+            return res;
+
+        // запускаем рекурсию, которая прекращается, когда найдено `k` комбинаций
+        runSearch(index, pattern, false, c -> {
+            res.add(new CombinatoricsData(pattern.restore(c)));
+            return res.size() < k;
+        });
+        return res;
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций; сами комбинации
+     * при этом не сохраняются и не копируются
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return кол-во комбинаций, которые вернул бы
+     * {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static long count(int[][] source, int[][] pattern, boolean hardCheck) {
+        return count(SourceIndex.wrap(source), pattern, hardCheck);
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций по заранее построенному индексу дата-графа
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return кол-во комбинаций, как у {@link #count(int[][], int[][], boolean)}
+     */
+    public static long count(SourceIndex index, int[][] pattern, boolean hardCheck) {
+        return count(index, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций по заранее построенному индексу
+     * дата-графа и подготовленному паттерну
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return кол-во комбинаций, как у {@link #count(int[][], int[][], boolean)}
+     */
+    public static long count(SourceIndex index, CompiledPattern pattern) {
+        // счётчик найденных комбинаций
+        long[] cnt = new long[1];
+        // порядок вершин на кол-во комбинаций не влияет, поэтому
+        // найденные комбинации обратно не переводятся
+        runSearch(index, pattern, false, c -> {
+            cnt[0]++;
+            return true;
+        });
+        return cnt[0];
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций со сбором статистики дерева перебора
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param stats   статистика, к которой добавляется статистика поиска
+     * @return кол-во комбинаций, как у {@link #count(int[][], int[][], boolean)}
+     */
+    public static long count(SourceIndex index, CompiledPattern pattern, SearchStats stats) {
+        long[] cnt = new long[1];
+        runSearch(index, pattern, stats, c -> {
+            cnt[0]++;
+            return true;
+        });
+        return cnt[0];
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций с нарушением симметрии
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, см. описание класса
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param unique    флаг, нужно ли считать только по одному вхождению из класса
+     * @return кол-во комбинаций, которые вернул бы
+     * {@link #getAllPatterns(int[][], int[][], boolean, boolean)}
+     */
+    public static long count(int[][] source, int[][] pattern, boolean hardCheck, boolean unique) {
+        return count(SourceIndex.wrap(source), pattern, hardCheck, unique);
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций с нарушением симметрии по заранее
+     * построенному индексу дата-графа; если нужны все вхождения, то кол-во
+     * найденных умножается на порядок группы автоморфизмов паттерна
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param unique    флаг, нужно ли считать только по одному вхождению из класса
+     * @return кол-во комбинаций, как у {@link #count(int[][], int[][], boolean, boolean)}
+     */
+    public static long count(SourceIndex index, int[][] pattern, boolean hardCheck, boolean unique) {
+        return count(index, new CompiledPattern(pattern, hardCheck), unique);
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций с нарушением симметрии по заранее
+     * построенному индексу дата-графа и подготовленному паттерну
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param unique  флаг, нужно ли считать только по одному вхождению из класса
+     * @return кол-во комбинаций, как у {@link #count(int[][], int[][], boolean, boolean)}
+     */
+    public static long count(SourceIndex index, CompiledPattern pattern, boolean unique) {
+        long[] cnt = new long[1];
+        runSearch(index, pattern, true, c -> {
+            cnt[0]++;
+            return true;
+        });
+        return unique ? cnt[0] : cnt[0] * pattern.getGroupSize();
+    }
+
+    /**
+     * Запустить рекурсивный поиск паттерна
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param unique  флаг, нужно ли применять условия нарушения симметрии
+     * @param handler обработчик найденной комбинации; комбинация передаётся
+     *                без копирования по позициям переставленного паттерна,
+     *                если обработчик возвращает `false`, перебор прекращается
+     */
+    private static void runSearch(
+            SourceIndex index, CompiledPattern pattern, boolean unique, Predicate<int[]> handler
+    ) {
+        checkSize(index, pattern);
+
         findPatternStep(
-                c -> res.add(new CombinatoricsData(c.clone())), used, source, pattern,
-                sourcePowers, patternPowers, 0, combination, hardCheck
+                handler, new CandidateDomains(index, pattern, unique), index.getGraph(), pattern,
+                0, new int[pattern.getSize()]
+        );
+    }
+
+    /**
+     * Запустить рекурсивный поиск паттерна со сбором статистики
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param stats   статистика, к которой добавляется статистика поиска
+     * @param handler обработчик найденной комбинации
+     */
+    private static void runSearch(
+            SourceIndex index, CompiledPattern pattern, SearchStats stats, Predicate<int[]> handler
+    ) {
+        checkSize(index, pattern);
+
+        // статистика этого поиска собирается отдельно, чтобы записать её в JFR
+        CandidateDomains domains = new CandidateDomains(index, pattern, false);
+        SearchStats local = new SearchStats();
+        local.start(domains, pattern.getSize());
+        findPatternStepStats(
+                handler, domains, index.getGraph(), pattern, 0, new int[pattern.getSize()], local
+        );
+        stats.add(local);
+        local.commit();
+    }
+
+    /**
+     * Запустить рекурсивный поиск паттерна, который можно прервать из
+     * другого потока; флаг проверяется перед каждым кандидатом, поэтому
+     * перебор останавливается вскоре после его установки, даже если
+     * комбинации не находятся
+     *
+     * @param index     индекс дата-графа
+     * @param pattern   подготовленный паттерн
+     * @param cancelled флаг отмены поиска
+     * @param handler   обработчик найденной комбинации
+     * @return флаг, завершился ли перебор без отмены
+     */
+    static boolean runSearch(
+            SourceIndex index, CompiledPattern pattern, AtomicBoolean cancelled, Predicate<int[]> handler
+    ) {
+        checkSize(index, pattern);
+
+        findPatternStepCancellable(
+                handler, new CandidateDomains(index, pattern, false), index.getGraph(), pattern,
+                0, new int[pattern.getSize()], cancelled
+        );
+        return !cancelled.get();
+    }
+
+    /**
+     * Запустить рекурсивный поиск паттерна только по тем комбинациям,
+     * у которых вершина первой позиции переставленного паттерна лежит
+     * в заданном диапазоне; комбинации, найденные по диапазонам,
+     * покрывающим все вершины, в порядке диапазонов совпадают
+     * с комбинациями полного поиска
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param from    первая вершина диапазона
+     * @param to      вершина, следующая за последней вершиной диапазона
+     * @param handler обработчик найденной комбинации
+     */
+    static void runSearch(SourceIndex index, CompiledPattern pattern, int from, int to, Predicate<int[]> handler) {
+        checkSize(index, pattern);
+        if (from < 0 || from > to || to > index.getSize())
+            throw new AssertionError("недопустимый диапазон вершин: [" + from + ", " + to + ")");
+
+        CandidateDomains domains = new CandidateDomains(index, pattern, false);
+        DenseGraph source = index.getGraph();
+        int[] combination = new int[pattern.getSize()];
+        // внешний цикл первого шага перебора, ограниченный диапазоном
+        for (int i = domains.next(0, from); i >= 0 && i < to; i = domains.next(0, i + 1)) {
+            combination[0] = i;
+            if (!checkMatrixEdge(source, pattern, combination, 1) || !domains.assign(0, i))
+                continue;
+            if (!findPatternStep(handler, domains, source, pattern, 1, combination))
+                return;
+        }
+    }
+
+    /**
+     * Проверить, что паттерн не больше дата-графа
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     */
+    static void checkSize(SourceIndex index, CompiledPattern pattern) {
+        if (pattern.getSize() > index.getSize())
+            throw new AssertionError("размер паттерна: " + pattern.getSize() + " превышает " +
+                    "размер дата-графа " + index.getSize());
+    }
+
+    /**
+     * Шаг поиска паттерна; комбинация из первых `cnt` элементов уже
+     * проверена, а множества кандидатов уровня `cnt` построены
+     *
+     * @param handler     обработчик найденной комбинации; комбинация передаётся
+     *                    без копирования, если обработчик возвращает `false`,
+     *                    перебор прекращается
+     * @param domains     множества вершин-кандидатов для позиций паттерна
+     * @param source      дата-граф
+     * @param pattern     подготовленный паттерн
+     * @param cnt         кол-во обработанных элементов
+     * @param combination массив комбинации
+     * @return флаг, нужно ли продолжать перебор
+     */
+    static boolean findPatternStep(
+            Predicate<int[]> handler, CandidateDomains domains, DenseGraph source, CompiledPattern pattern,
+            int cnt, int[] combination
+    ) {
+        // если получено нужное кол-во элементов комбинации
+        if (cnt == pattern.getSize())
+            // обрабатываем её
+            return handler.test(combination);
+
+        // в противном случае перебираем кандидатов следующей позиции;
+        // использованные точки и точки, не подходящие по степеням
+        // и диагональному элементу, среди них уже отсутствуют
+        for (int i = domains.next(cnt, 0); i >= 0; i = domains.next(cnt, i + 1)) {
+            // добавляем индекс точки в комбинацию
+            combination[cnt] = i;
+
+            // если матрица, составленная из дата-графа по этой комбинации
+            // не совпадает с соответствующей подматрицей паттерна
+            // (нам нужно проверить только новые элементы,
+            // они находятся в самом нижнем ряду и в самой правой колонке)
+            // или у какой-то из следующих позиций не осталось кандидатов
+            if (!checkMatrixEdge(source, pattern, combination, cnt + 1) || !domains.assign(cnt, i))
+                continue;
+
+            // вызываем следующий шаг рекурсии; если обработчик
+            // попросил остановить перебор, прекращаем его
+            if (!findPatternStep(handler, domains, source, pattern, cnt + 1, combination))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Шаг поиска паттерна со сбором статистики; повторяет
+     * {@link #findPatternStep(Predicate, CandidateDomains, DenseGraph, CompiledPattern, int, int[])}
+     *
+     * @param handler     обработчик найденной комбинации
+     * @param domains     множества вершин-кандидатов для позиций паттерна
+     * @param source      дата-граф
+     * @param pattern     подготовленный паттерн
+     * @param cnt         кол-во обработанных элементов
+     * @param combination массив комбинации
+     * @param stats       статистика поиска
+     * @return флаг, нужно ли продолжать перебор
+     */
+    private static boolean findPatternStepStats(
+            Predicate<int[]> handler, CandidateDomains domains, DenseGraph source, CompiledPattern pattern,
+            int cnt, int[] combination, SearchStats stats
+    ) {
+        if (cnt == pattern.getSize()) {
+            stats.match();
+            return handler.test(combination);
+        }
+
+        long start = System.nanoTime();
+        boolean proceed = true;
+        for (int i = domains.next(cnt, 0); i >= 0; i = domains.next(cnt, i + 1)) {
+            stats.node(cnt);
+            combination[cnt] = i;
+            if (!checkMatrixEdge(source, pattern, combination, cnt + 1)) {
+                stats.edgeRejection(cnt);
+                continue;
+            }
+            if (!domains.assign(cnt, i)) {
+                stats.domainRejection(cnt);
+                continue;
+            }
+            if (!findPatternStepStats(handler, domains, source, pattern, cnt + 1, combination, stats)) {
+                proceed = false;
+                break;
+            }
+        }
+        stats.time(cnt, System.nanoTime() - start);
+        return proceed;
+    }
+
+    /**
+     * Шаг поиска паттерна с проверкой флага отмены; повторяет
+     * {@link #findPatternStep(Predicate, CandidateDomains, DenseGraph, CompiledPattern, int, int[])}
+     *
+     * @param handler     обработчик найденной комбинации
+     * @param domains     множества вершин-кандидатов для позиций паттерна
+     * @param source      дата-граф
+     * @param pattern     подготовленный паттерн
+     * @param cnt         кол-во обработанных элементов
+     * @param combination массив комбинации
+     * @param cancelled   флаг отмены поиска
+     * @return флаг, нужно ли продолжать перебор
+     */
+    private static boolean findPatternStepCancellable(
+            Predicate<int[]> handler, CandidateDomains domains, DenseGraph source, CompiledPattern pattern,
+            int cnt, int[] combination, AtomicBoolean cancelled
+    ) {
+        if (cnt == pattern.getSize())
+            return handler.test(combination);
+
+        for (int i = domains.next(cnt, 0); i >= 0; i = domains.next(cnt, i + 1)) {
+            // поиск отменён или истёк срок запроса
+            if (cancelled.get())
+                return false;
+            combination[cnt] = i;
+            if (!checkMatrixEdge(source, pattern, combination, cnt + 1) || !domains.assign(cnt, i))
+                continue;
+            if (!findPatternStepCancellable(handler, domains, source, pattern, cnt + 1, combination, cancelled))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов в разреженном дата-графе;
+     * если следующая вершина паттерна связана ребром с уже выбранной,
+     * кандидаты берутся из списка соседей выбранной вершины, а не
+     * перебором всех вершин дата-графа
+     *
+     * @param source    разреженный дата-граф
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций точек из источника, совпадающий со списком,
+     * который возвращает {@link #getAllPatterns(int[][], int[][], boolean)}
+     * для матрицы связности того же графа
+     */
+    public static List<CombinatoricsData> getAllPatterns(SparseGraph source, int[][] pattern, boolean hardCheck) {
+        return getAllPatterns(source, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Быстрый поиск изоморфных подграфов в разреженном дата-графе
+     * по подготовленному паттерну
+     *
+     * @param source  разреженный дата-граф
+     * @param pattern подготовленный паттерн
+     * @return список комбинаций, как у {@link #getAllPatterns(SparseGraph, int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(SparseGraph source, CompiledPattern pattern) {
+        if (pattern.getSize() > source.getSize())
+            throw new AssertionError("размер паттерна: " + pattern.getSize() + " превышает " +
+                    "размер дата-графа " + source.getSize());
+
+        // в порядке сопоставления каждая следующая вершина паттерна по
+        // возможности связана с уже выбранными, поэтому кандидаты чаще
+        // берутся из списков соседей
+        List<CombinatoricsData> res = new ArrayList<>();
+        // запускаем рекурсию
+        findSparsePatternStep(
+                c -> res.add(new CombinatoricsData(pattern.restore(c))), new boolean[source.getSize()],
+                source, pattern.getOrdered(), source.getPowers(), pattern.getPowers(), 0,
+                new int[pattern.getSize()], pattern.isHardCheck()
         );
         // возвращаем множество найденных паттернов
         return res;
     }
 
     /**
-     * Шаг поиска паттерна
+     * Шаг поиска паттерна в разреженном дата-графе
      *
-     * @param consumer      обработчик найденной комбинации
+     * @param handler       обработчик найденной комбинации; комбинация передаётся
+     *                      без копирования, если обработчик возвращает `false`,
+     *                      перебор прекращается
      * @param used          массив флагов, использовалась ли уже i-я точка
-     * @param source        дата-граф
+     * @param source        разреженный дата-граф
      * @param pattern       искомый паттерн
      * @param sourcePowers  степени вершин источника
-     * @param patternPowers степени вершин
+     * @param patternPowers степени вершин паттерна
      * @param cnt           кол-во обработанных элементов
      * @param combination   массив комбинации
      * @param hardCheck     флаг, нужна ли жёсткая проверка
+     * @return флаг, нужно ли продолжать перебор
      */
-    private static void findPatternStep(
-            Consumer<int[]> consumer, boolean[] used, int[][] source, int[][] pattern,
+    private static boolean findSparsePatternStep(
+            Predicate<int[]> handler, boolean[] used, SparseGraph source, int[][] pattern,
             int[] sourcePowers, int[] patternPowers, int cnt, int[] combination, boolean hardCheck
     ) {
-        // если уже выбрана хотя бы одна точка для комбинации и при этом
-        // матрица, составленная из дата-графа по этой комбинации
-        // не совпадает с соответствующей подматрицей паттерна
-        // (нам нужно проверить только новые элементы,
-        // они находятся в самом нижнем ряду и в самой правой колонке)
-        if (cnt > 0 && !checkMatrixEdge(source, pattern, combination, cnt, hardCheck))
-            return;
+        // если новые элементы подматрицы не совпадают с паттерном
+        if (cnt > 0 && !checkSparseEdge(source, pattern, combination, cnt, hardCheck))
+            return true;
 
         // если получено нужное кол-во элементов комбинации
         if (cnt == pattern.length)
             // обрабатываем её
-            consumer.accept(combination.clone());
-        else
-            // в противном случае перебираем все вершины графа
-            for (int i = 0; i < source.length; i++) {
-                // если i-я точка уже использована или её степень меньше степени
-                // следующей точки в паттерне
-                if (used[i] || (hardCheck && sourcePowers[i] < patternPowers[cnt]))
-                    continue;
-
-                // говорим, что i-я точка использована
-                used[i] = true;
-                // добавляем индекс точки в комбинацию
-                combination[cnt] = i;
-
-                // вызываем следующий шаг рекурсии
-                findPatternStep(
-                        consumer, used, source, pattern, sourcePowers,
-                        patternPowers, cnt + 1, combination, hardCheck
-                );
-
-                // возвращаем значение флага
-                used[i] = false;
+            return handler.test(combination);
+
+        // ищем среди выбранных вершин ту, которая связана ребром со
+        // следующей вершиной паттерна и у которой меньше всего соседей
+        int anchor = -1;
+        boolean anchorOut = false;
+        int anchorSize = Integer.MAX_VALUE;
+        for (int j = 0; j < cnt; j++) {
+            // ребро от j-й вершины паттерна к следующей: кандидаты - концы исходящих рёбер
+            if (pattern[j][cnt] != 0 && source.getOutDegree(combination[j]) < anchorSize) {
+                anchor = j;
+                anchorOut = true;
+                anchorSize = source.getOutDegree(combination[j]);
+            }
+            // ребро от следующей вершины паттерна к j-й: кандидаты - начала входящих рёбер
+            if (pattern[cnt][j] != 0 && source.getInDegree(combination[j]) < anchorSize) {
+                anchor = j;
+                anchorOut = false;
+                anchorSize = source.getInDegree(combination[j]);
             }
+        }
+
+        // если следующая вершина паттерна не связана с выбранными,
+        // перебираем все вершины графа
+        if (anchor < 0) {
+            for (int i = 0; i < source.getSize(); i++)
+                if (!trySparseCandidate(
+                        handler, used, source, pattern, sourcePowers, patternPowers, cnt, combination, hardCheck, i
+                ))
+                    return false;
+            return true;
+        }
+
+        // иначе перебираем соседей выбранной вершины, у которых
+        // значение ребра совпадает со значением в паттерне
+        int v = combination[anchor];
+        if (anchorOut) {
+            int value = pattern[anchor][cnt];
+            for (int e = source.getOutBegin(v); e < source.getOutEnd(v); e++)
+                if (source.getOutValue(e) == value && !trySparseCandidate(
+                        handler, used, source, pattern, sourcePowers, patternPowers, cnt, combination, hardCheck,
+                        source.getOutTarget(e)
+                ))
+                    return false;
+        } else {
+            int value = pattern[cnt][anchor];
+            for (int e = source.getInBegin(v); e < source.getInEnd(v); e++)
+                if (source.getInValue(e) == value && !trySparseCandidate(
+                        handler, used, source, pattern, sourcePowers, patternPowers, cnt, combination, hardCheck,
+                        source.getInSource(e)
+                ))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Попробовать добавить вершину-кандидата в комбинацию и продолжить поиск
+     *
+     * @param handler       обработчик найденной комбинации
+     * @param used          массив флагов, использовалась ли уже i-я точка
+     * @param source        разреженный дата-граф
+     * @param pattern       искомый паттерн
+     * @param sourcePowers  степени вершин источника
+     * @param patternPowers степени вершин паттерна
+     * @param cnt           кол-во обработанных элементов
+     * @param combination   массив комбинации
+     * @param hardCheck     флаг, нужна ли жёсткая проверка
+     * @param i             индекс вершины-кандидата
+     * @return флаг, нужно ли продолжать перебор
+     */
+    private static boolean trySparseCandidate(
+            Predicate<int[]> handler, boolean[] used, SparseGraph source, int[][] pattern,
+            int[] sourcePowers, int[] patternPowers, int cnt, int[] combination, boolean hardCheck, int i
+    ) {
+        // если i-я точка уже использована или её степень меньше степени
+        // следующей точки в паттерне
+        if (used[i] || (hardCheck && sourcePowers[i] < patternPowers[cnt]))
+            return true;
+
+        used[i] = true;
+        combination[cnt] = i;
+        boolean proceed = findSparsePatternStep(
+                handler, used, source, pattern, sourcePowers, patternPowers, cnt + 1, combination, hardCheck
+        );
+        used[i] = false;
+        return proceed;
+    }
+
+    /**
+     * Проверить совпадение самого правого столбца
+     * и самой нижней строки подматрицы разреженного дата-графа
+     *
+     * @param source      разреженный дата-граф
+     * @param pattern     паттерн
+     * @param combination комбинация
+     * @param cnt         кол-во элементов в комбинации
+     * @param hardCheck   флаг, нужна ли жёсткая проверка
+     * @return флаг, совпадают ли матрицы по углу
+     */
+    static boolean checkSparseEdge(
+            SparseGraph source, int[][] pattern, int[] combination, int cnt, boolean hardCheck
+    ) {
+        int last = combination[cnt - 1];
+        for (int i = 0; i < cnt; i++) {
+            // при нежёсткой проверке нулевые элементы паттерна не проверяются
+            if ((hardCheck || pattern[i][cnt - 1] != 0)
+                    && pattern[i][cnt - 1] != source.get(combination[i], last))
+                return false;
+            if ((hardCheck || pattern[cnt - 1][i] != 0)
+                    && pattern[cnt - 1][i] != source.get(last, combination[i]))
+                return false;
+        }
+        return true;
     }
 
     /**
@@ -107,55 +922,31 @@ public class FastPatternResolver {
      * и самой нижней строки подматрицы дата-графа,
      * полученной по соответствующей комбинации
      * (проверяются только новые элементы,
-     * они находятся в самом нижнем ряду и в самой правой колонке)
+     * они находятся в самом нижнем ряду и в самой правой колонке);
+     * перебираются только элементы из списков подготовленного паттерна,
+     * при нежёсткой проверке нулевых элементов в них нет, а диагональный
+     * элемент проверен при построении множеств кандидатов
      *
      * @param source      дата-граф
-     * @param pattern     паттерн
+     * @param pattern     подготовленный паттерн
      * @param combination комбинация
      * @param cnt         кол-во элементов в комбинации
-     * @param hardCheck   флаг, нужна ли жёсткая проверка
      * @return флаг, совпадают ли матрицы по углу
      */
-    private static boolean checkMatrixEdge(
-            int[][] source, int[][] pattern, int[] combination, int cnt, boolean hardCheck
-    ) {
+    static boolean checkMatrixEdge(DenseGraph source, CompiledPattern pattern, int[] combination, int cnt) {
         // если кол-во элементов в комбинации больше её размера
         if (cnt > combination.length)
             // кидаем исключение
             throw new AssertionError("размер комбинации " + Arrays.toString(combination) + " меньше " +
                     "требуемой длины " + cnt);
 
-        // перебираем элементы самого нижнего ряда матрицы
-        // и самой правой колонки
-        for (int i = 0; i < cnt; i++) {
-            // если жёсткая проверка
-            if (hardCheck) {
-                // если элемент из паттерна в правом столбце не совпадает с соответствующим
-                // элементом из дата-графа
-                if (pattern[i][cnt - 1] != source[combination[i]][combination[cnt - 1]])
-                    // возвращаем флаг, что матрицы не равны по уголку
-                    return false;
-                // если элемент из паттерна в нижней строке не совпадает с соответствующим
-                // элементом из дата-графа
-                if (pattern[cnt - 1][i] != source[combination[cnt - 1]][combination[i]])
-                    // возвращаем флаг, что матрицы не равны по уголку
-                    return false;
-            } else { // если нежёсткая проверка
-                // если элемент из паттерна в правом столбце ненулевой и не совпадает с соответствующим
-                // элементом из дата-графа
-                if (pattern[i][cnt - 1] != 0 && pattern[i][cnt - 1] != source[combination[i]][combination[cnt - 1]])
-                    // возвращаем флаг, что матрицы не равны по уголку
-                    return false;
-                // если элемент из паттерна в нижней строке ненулевой и не совпадает с соответствующим
-                // элементом из дата-графа
-                if (pattern[cnt - 1][i] != 0 && pattern[cnt - 1][i] != source[combination[cnt - 1]][combination[i]])
-                    // возвращаем флаг, что матрицы не равны по уголку
-                    return false;
-            }
-        }
-
-        // если не встречено неравных элементов, то возвращаем флаг, что матрицы равны по уголку
-        return true;
+        int u = cnt - 1;
+        int last = combination[u];
+        // сначала элементы самой нижней строки, затем самого правого столбца;
+        // столбец последней вершины читается из транспонированной копии,
+        // поэтому и строка, и столбец перебираются подряд по одной строке памяти
+        return source.rowEquals(last, combination, pattern.getRowPositions(u), pattern.getRowValues(u), false)
+                && source.rowEquals(last, combination, pattern.getColumnPositions(u), pattern.getColumnValues(u), true);
     }
 
     /**
@@ -0,0 +1,339 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.SparseGraph;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Поиск изоморфных подграфов в разреженном дата-графе соединением
+ * с оптимальной оценкой худшего случая (generic join / leapfrog triejoin).
+ * Каждый ненулевой элемент паттерна рассматривается как отношение над
+ * рёбрами дата-графа с тем же значением; кандидаты следующей позиции -
+ * пересечение отсортированных списков соседей всех уже выбранных вершин,
+ * связанных с ней ребром, а не перебор соседей одной из них с проверкой
+ * остальных рёбер, как в {@link FastPatternResolver#getAllPatterns(SparseGraph, CompiledPattern)}.
+ * Для каждого значения рёбер паттерна строится подграф только из рёбер
+ * с этим значением ({@link SparseGraph#filter(int)}, `O(size + m)` на значение
+ * при каждом поиске), поэтому отношение - это непрерывный отсортированный
+ * список соседей. Списки пересекаются попеременным продвижением к наибольшему
+ * текущему элементу с галопирующим поиском, поэтому стоимость шага
+ * определяется самым коротким списком. Нулевые элементы паттерна при
+ * жёсткой проверке и диагональ проверяются для вершин, уже прошедших
+ * пересечение.
+ * Результат совпадает с результатом {@link FastPatternResolver}
+ */
+public class JoinPatternResolver {
+
+    /**
+     * Поиск изоморфных подграфов соединением
+     *
+     * @param source    разреженный дата-граф
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций в том же порядке, что и у
+     * {@link FastPatternResolver#getAllPatterns(SparseGraph, int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(SparseGraph source, int[][] pattern, boolean hardCheck) {
+        return getAllPatterns(source, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Поиск изоморфных подграфов соединением по подготовленному паттерну
+     *
+     * @param source  разреженный дата-граф
+     * @param pattern подготовленный паттерн
+     * @return список комбинаций, как у {@link #getAllPatterns(SparseGraph, int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(SparseGraph source, CompiledPattern pattern) {
+        List<CombinatoricsData> res = new ArrayList<>();
+        new Join(source, pattern).run(c -> res.add(new CombinatoricsData(pattern.restore(c))));
+        return res;
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций соединением
+     *
+     * @param source    разреженный дата-граф
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return кол-во комбинаций
+     */
+    public static long count(SparseGraph source, int[][] pattern, boolean hardCheck) {
+        return count(source, new CompiledPattern(pattern, hardCheck));
+    }
+
+    /**
+     * Подсчёт кол-ва комбинаций соединением по подготовленному паттерну
+     *
+     * @param source  разреженный дата-граф
+     * @param pattern подготовленный паттерн
+     * @return кол-во комбинаций
+     */
+    public static long count(SparseGraph source, CompiledPattern pattern) {
+        long[] cnt = new long[1];
+        new Join(source, pattern).run(c -> {
+            cnt[0]++;
+            return true;
+        });
+        return cnt[0];
+    }
+
+    /**
+     * Состояние одного соединения: отношения каждой позиции паттерна
+     * и текущие позиции в пересекаемых списках соседей по уровням
+     */
+    private static class Join {
+        /**
+         * разреженный дата-граф
+         */
+        private final SparseGraph source;
+        /**
+         * паттерн, переставленный в порядке сопоставления
+         */
+        private final int[][] pattern;
+        /**
+         * флаг, нужна ли жёсткая проверка
+         */
+        private final boolean hardCheck;
+        /**
+         * степени вершин источника
+         */
+        private final int[] sourcePowers;
+        /**
+         * степени вершин переставленного паттерна
+         */
+        private final int[] patternPowers;
+        /**
+         * для каждой позиции - более ранние позиции, связанные с ней ребром
+         */
+        private final int[][] relPositions;
+        /**
+         * флаги, исходит ли ребро из более ранней позиции (иначе входит в неё)
+         */
+        private final boolean[][] relOut;
+        /**
+         * подграфы из рёбер со значениями отношений
+         */
+        private final SparseGraph[][] relGraphs;
+        /**
+         * текущие номера рёбер в пересекаемых списках
+         */
+        private final int[][] pos;
+        /**
+         * номера, следующие за последними рёбрами пересекаемых списков
+         */
+        private final int[][] end;
+        /**
+         * флаги, использовалась ли уже i-я точка
+         */
+        private final boolean[] used;
+        /**
+         * массив комбинации
+         */
+        private final int[] combination;
+        /**
+         * обработчик найденной комбинации
+         */
+        private Predicate<int[]> handler;
+
+        /**
+         * Конструктор
+         *
+         * @param source  разреженный дата-граф
+         * @param pattern подготовленный паттерн
+         */
+        Join(SparseGraph source, CompiledPattern pattern) {
+            if (pattern.getSize() > source.getSize())
+                throw new AssertionError("размер паттерна: " + pattern.getSize() + " превышает " +
+                        "размер дата-графа " + source.getSize());
+            this.source = source;
+            this.pattern = pattern.getOrdered();
+            this.hardCheck = pattern.isHardCheck();
+            this.sourcePowers = source.getPowers();
+            this.patternPowers = pattern.getPowers();
+            int k = this.pattern.length;
+            this.relPositions = new int[k][];
+            this.relOut = new boolean[k][];
+            this.relGraphs = new SparseGraph[k][];
+            this.pos = new int[k][];
+            this.end = new int[k][];
+            // подграфы строятся по одному на значение
+            Map<Integer, SparseGraph> byValue = new HashMap<>();
+            for (int u = 0; u < k; u++) {
+                int m = 0;
+                for (int j = 0; j < u; j++)
+                    m += (this.pattern[j][u] != 0 ? 1 : 0) + (this.pattern[u][j] != 0 ? 1 : 0);
+                relPositions[u] = new int[m];
+                relOut[u] = new boolean[m];
+                relGraphs[u] = new SparseGraph[m];
+                pos[u] = new int[m];
+                end[u] = new int[m];
+                int r = 0;
+                for (int j = 0; j < u; j++) {
+                    // ребро от j-й позиции: список исходящих рёбер её вершины
+                    if (this.pattern[j][u] != 0) {
+                        relPositions[u][r] = j;
+                        relOut[u][r] = true;
+                        relGraphs[u][r++] = byValue.computeIfAbsent(this.pattern[j][u], source::filter);
+                    }
+                    // ребро к j-й позиции: список входящих рёбер её вершины
+                    if (this.pattern[u][j] != 0) {
+                        relPositions[u][r] = j;
+                        relOut[u][r] = false;
+                        relGraphs[u][r++] = byValue.computeIfAbsent(this.pattern[u][j], source::filter);
+                    }
+                }
+            }
+            this.used = new boolean[source.getSize()];
+            this.combination = new int[k];
+        }
+
+        /**
+         * Запустить соединение
+         *
+         * @param handler обработчик найденной комбинации; комбинация передаётся
+         *                без копирования по позициям переставленного паттерна,
+         *                если обработчик возвращает `false`, перебор прекращается
+         */
+        void run(Predicate<int[]> handler) {
+            this.handler = handler;
+            step(0);
+        }
+
+        /**
+         * Шаг соединения: перебор вершин, лежащих во всех списках
+         * соседей позиции, в порядке возрастания
+         *
+         * @param cnt кол-во выбранных вершин
+         * @return флаг, нужно ли продолжать перебор
+         */
+        private boolean step(int cnt) {
+            if (cnt == pattern.length)
+                return handler.test(combination);
+
+            int m = relPositions[cnt].length;
+            // позиция не связана с выбранными - перебираем все вершины
+            if (m == 0) {
+                for (int v = 0; v < source.getSize(); v++)
+                    if (!tryCandidate(cnt, v))
+                        return false;
+                return true;
+            }
+
+            for (int r = 0; r < m; r++) {
+                int v = combination[relPositions[cnt][r]];
+                SparseGraph graph = relGraphs[cnt][r];
+                pos[cnt][r] = relOut[cnt][r] ? graph.getOutBegin(v) : graph.getInBegin(v);
+                end[cnt][r] = relOut[cnt][r] ? graph.getOutEnd(v) : graph.getInEnd(v);
+            }
+            // по кругу продвигаем списки к наибольшему встреченному элементу `x`;
+            // когда все `m` списков подряд стоят на `x`, он лежит в пересечении
+            int x = 0;
+            int agree = 0;
+            for (int r = 0; ; r = r + 1 == m ? 0 : r + 1) {
+                int key = seek(cnt, r, x);
+                if (key < 0)
+                    return true;
+                if (key != x) {
+                    x = key;
+                    agree = 0;
+                }
+                if (++agree == m) {
+                    if (!tryCandidate(cnt, x))
+                        return false;
+                    x++;
+                    agree = 0;
+                }
+            }
+        }
+
+        /**
+         * Продвинуть список к первому ребру с концом не меньше заданного;
+         * сначала шаг удваивается, пока не перескочит
+         * искомое место, затем оно уточняется двоичным поиском
+         *
+         * @param cnt позиция паттерна
+         * @param r   номер отношения позиции
+         * @param x   нижняя граница конца ребра
+         * @return конец найденного ребра или -1, если список закончился
+         */
+        private int seek(int cnt, int r, int x) {
+            boolean out = relOut[cnt][r];
+            SparseGraph graph = relGraphs[cnt][r];
+            int lo = pos[cnt][r];
+            int e = end[cnt][r];
+            if (lo < e && key(graph, out, lo) < x) {
+                // `key(lo) < x`, ищем первое ребро в `(lo, hi]` с концом не меньше `x`
+                int step = 1;
+                while (lo + step < e && key(graph, out, lo + step) < x) {
+                    lo += step;
+                    step <<= 1;
+                }
+                int hi = Math.min(lo + step, e);
+                while (hi - lo > 1) {
+                    int mid = (lo + hi) >>> 1;
+                    if (key(graph, out, mid) < x)
+                        lo = mid;
+                    else
+                        hi = mid;
+                }
+                lo = hi;
+            }
+            pos[cnt][r] = lo;
+            return lo < e ? key(graph, out, lo) : -1;
+        }
+
+        /**
+         * Получить соседа по номеру ребра
+         *
+         * @param graph подграф отношения
+         * @param out   флаг, исходящее ли ребро
+         * @param e     номер ребра
+         * @return индекс соседа
+         */
+        private static int key(SparseGraph graph, boolean out, int e) {
+            return out ? graph.getOutTarget(e) : graph.getInSource(e);
+        }
+
+        /**
+         * Проверить вершину из пересечения и продолжить поиск; ненулевые
+         * элементы к выбранным вершинам уже совпали при пересечении,
+         * остаются диагональ и при жёсткой проверке нулевые элементы
+         *
+         * @param cnt позиция паттерна
+         * @param v   индекс вершины-кандидата
+         * @return флаг, нужно ли продолжать перебор
+         */
+        private boolean tryCandidate(int cnt, int v) {
+            if (used[v] || (hardCheck && sourcePowers[v] < patternPowers[cnt]))
+                return true;
+            if ((hardCheck || pattern[cnt][cnt] != 0) && source.get(v, v) != pattern[cnt][cnt])
+                return true;
+            if (hardCheck)
+                for (int j = 0; j < cnt; j++) {
+                    if (pattern[j][cnt] == 0 && source.get(combination[j], v) != 0)
+                        return true;
+                    if (pattern[cnt][j] == 0 && source.get(v, combination[j]) != 0)
+                        return true;
+                }
+
+            used[v] = true;
+            combination[cnt] = v;
+            boolean proceed = step(cnt + 1);
+            used[v] = false;
+            return proceed;
+        }
+    }
+
+    /**
+     * Запрещённый конструктор
+     */
+    private JoinPatternResolver() {
+        throw new AssertionError("Этот конструктор вызывать нельзя");
+    }
+}
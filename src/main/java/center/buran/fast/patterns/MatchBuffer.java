@@ -0,0 +1,205 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Буфер найденных комбинаций: каждая комбинация занимает `width` подряд
+ * идущих чисел в больших страницах `int[]`, отдельного объекта на
+ * комбинацию нет. Страницы выделяются по мере заполнения и сохраняются
+ * при очистке, поэтому повторное заполнение очищенного буфера не выделяет
+ * память. Читать комбинации можно по номеру или обходом страниц без
+ * копирования, см. {@link Visitor}
+ */
+public class MatchBuffer {
+    /**
+     * Размер страницы по умолчанию, в числах
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1 << 14;
+    /**
+     * Кол-во чисел в одной комбинации
+     */
+    @Getter
+    private final int width;
+    /**
+     * кол-во комбинаций в одной странице
+     */
+    private final int pageMatches;
+    /**
+     * страницы, выделенные до сих пор
+     */
+    private int[][] pages;
+    /**
+     * кол-во выделенных страниц
+     */
+    private int pageCnt;
+    /**
+     * Кол-во комбинаций в буфере
+     */
+    @Getter
+    private int size;
+
+    /**
+     * Обходчик комбинаций буфера
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * Обработать комбинацию
+         *
+         * @param page   страница, в которой лежит комбинация, изменять её нельзя
+         * @param offset индекс первого элемента комбинации в странице
+         * @return флаг, нужно ли продолжать обход
+         */
+        boolean visit(int[] page, int offset);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param width кол-во чисел в одной комбинации, т.е. размер паттерна
+     */
+    public MatchBuffer(int width) {
+        this(width, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param width    кол-во чисел в одной комбинации, т.е. размер паттерна
+     * @param pageSize размер страницы в числах; если в него не помещается
+     *                 ни одной комбинации, страница содержит одну комбинацию
+     */
+    public MatchBuffer(int width, int pageSize) {
+        if (width <= 0)
+            throw new AssertionError("размер комбинации должен быть положительным: " + width);
+        if (pageSize <= 0)
+            throw new AssertionError("размер страницы должен быть положительным: " + pageSize);
+        this.width = width;
+        this.pageMatches = Math.max(1, pageSize / width);
+        this.pages = new int[4][];
+    }
+
+    /**
+     * Добавить комбинацию
+     *
+     * @param combination комбинация из `width` чисел, копируется
+     */
+    public void add(int[] combination) {
+        if (combination.length != width)
+            throw new AssertionError("длина комбинации " + combination.length + " не равна " + width);
+        int offset = reserve();
+        System.arraycopy(combination, 0, pages[pageCnt - 1], offset, width);
+    }
+
+    /**
+     * Добавить комбинацию, найденную для переставленного паттерна,
+     * сразу переведя её к вершинам исходного паттерна
+     *
+     * @param combination комбинация по позициям переставленного паттерна
+     * @param order       порядок сопоставления вершин паттерна
+     */
+    void addRestored(int[] combination, int[] order) {
+        int offset = reserve();
+        int[] page = pages[pageCnt - 1];
+        for (int i = 0; i < width; i++)
+            page[offset + order[i]] = combination[i];
+    }
+
+    /**
+     * Получить элемент комбинации
+     *
+     * @param match    номер комбинации
+     * @param position номер элемента в комбинации
+     * @return индекс вершины дата-графа
+     */
+    public int get(int match, int position) {
+        checkIndex(match);
+        return pages[match / pageMatches][(match % pageMatches) * width + position];
+    }
+
+    /**
+     * Скопировать комбинацию в массив
+     *
+     * @param match номер комбинации
+     * @param dst   массив длиной не меньше `width`
+     */
+    public void copy(int match, int[] dst) {
+        checkIndex(match);
+        System.arraycopy(pages[match / pageMatches], (match % pageMatches) * width, dst, 0, width);
+    }
+
+    /**
+     * Обойти комбинации буфера по порядку добавления
+     *
+     * @param visitor обходчик; страницы передаются без копирования
+     * @return флаг, обойдены ли все комбинации
+     */
+    public boolean forEach(Visitor visitor) {
+        int left = size;
+        for (int p = 0; left > 0; p++) {
+            int cnt = Math.min(left, pageMatches);
+            int[] page = pages[p];
+            for (int m = 0; m < cnt; m++)
+                if (!visitor.visit(page, m * width))
+                    return false;
+            left -= cnt;
+        }
+        return true;
+    }
+
+    /**
+     * Очистить буфер; выделенные страницы сохраняются для повторного заполнения
+     */
+    public void clear() {
+        size = 0;
+        pageCnt = 0;
+    }
+
+    /**
+     * Получить комбинации буфера в виде списка объектов
+     *
+     * @return список комбинаций в порядке добавления
+     */
+    public List<CombinatoricsData> toList() {
+        List<CombinatoricsData> res = new ArrayList<>(size);
+        forEach((page, offset) -> res.add(new CombinatoricsData(Arrays.copyOfRange(page, offset, offset + width))));
+        return res;
+    }
+
+    /**
+     * Зарезервировать место для следующей комбинации
+     *
+     * @return индекс первого элемента комбинации в последней странице
+     */
+    private int reserve() {
+        if (size == Integer.MAX_VALUE)
+            throw new AssertionError("буфер переполнен");
+        int offset = (size % pageMatches) * width;
+        // текущая страница заполнена или ещё не выбрана
+        if (offset == 0) {
+            if (pageCnt == pages.length)
+                pages = Arrays.copyOf(pages, pages.length * 2);
+            // страница могла остаться с прошлого заполнения
+            if (pages[pageCnt] == null)
+                pages[pageCnt] = new int[pageMatches * width];
+            pageCnt++;
+        }
+        size++;
+        return offset;
+    }
+
+    /**
+     * Проверить номер комбинации
+     *
+     * @param match номер комбинации
+     */
+    private void checkIndex(int match) {
+        if (match < 0 || match >= size)
+            throw new AssertionError("номер комбинации " + match + " вне диапазона [0, " + size + ")");
+    }
+}
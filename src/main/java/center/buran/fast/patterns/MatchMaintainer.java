@@ -0,0 +1,398 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Поддержка множества комбинаций паттерна при изменении дата-графа.
+ * При изменении ребра `(i, j)` могут появиться или пропасть только
+ * комбинации, в которые входят обе вершины `i` и `j`, поэтому перебор
+ * запускается только от этого ребра: вершины `i` и `j` закрепляются за
+ * парой позиций паттерна, а остальные позиции по возможности выбираются
+ * из списков соседей уже выбранных вершин. Для связного паттерна стоимость
+ * изменения зависит от окрестности ребра, а не от размера дата-графа
+ */
+public class MatchMaintainer {
+    /**
+     * Кол-во вершин дата-графа
+     */
+    @Getter
+    private final int size;
+    /**
+     * матрица связности дата-графа, копия исходной
+     */
+    private final int[][] source;
+    /**
+     * искомый паттерн, копия исходного
+     */
+    private final int[][] pattern;
+    /**
+     * флаг, нужна ли жёсткая проверка
+     */
+    private final boolean hardCheck;
+    /**
+     * порядки перебора позиций паттерна: `orders[a][b]` начинается
+     * с позиций `a` и `b`, за которыми закреплены концы изменённого ребра
+     */
+    private final int[][][] orders;
+    /**
+     * концы исходящих рёбер каждой вершины
+     */
+    private final int[][] outNeighbours;
+    /**
+     * кол-ва исходящих рёбер
+     */
+    private final int[] outCounts;
+    /**
+     * начала входящих рёбер каждой вершины
+     */
+    private final int[][] inNeighbours;
+    /**
+     * кол-ва входящих рёбер
+     */
+    private final int[] inCounts;
+    /**
+     * текущие комбинации
+     */
+    private final Set<CombinatoricsData> matches = new LinkedHashSet<>();
+    /**
+     * текущие комбинации, в которые входит вершина
+     */
+    private final List<Set<CombinatoricsData>> byVertex = new ArrayList<>();
+    /**
+     * флаги, выбрана ли уже вершина; после каждого перебора все сброшены
+     */
+    private final boolean[] used;
+
+    /**
+     * Конструктор; начальное множество комбинаций ищется полным перебором
+     *
+     * @param source    матрица связности дата-графа, копируется
+     * @param pattern   искомый паттерн, копируется
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     */
+    public MatchMaintainer(int[][] source, int[][] pattern, boolean hardCheck) {
+        this.size = source.length;
+        this.source = new int[size][];
+        for (int i = 0; i < size; i++)
+            this.source[i] = source[i].clone();
+        this.pattern = new int[pattern.length][];
+        for (int i = 0; i < pattern.length; i++)
+            this.pattern[i] = pattern[i].clone();
+        this.hardCheck = hardCheck;
+        this.used = new boolean[size];
+
+        this.outNeighbours = new int[size][];
+        this.outCounts = new int[size];
+        this.inNeighbours = new int[size][];
+        this.inCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            outNeighbours[i] = new int[4];
+            inNeighbours[i] = new int[4];
+            byVertex.add(new HashSet<>());
+        }
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                if (source[i][j] != 0)
+                    link(i, j);
+
+        this.orders = new int[pattern.length][pattern.length][];
+        for (int a = 0; a < pattern.length; a++)
+            for (int b = 0; b < pattern.length; b++)
+                orders[a][b] = getOrder(a, b);
+
+        for (CombinatoricsData cd : FastPatternResolver.getAllPatterns(source, pattern, hardCheck))
+            put(cd);
+    }
+
+    /**
+     * Получить значение ребра
+     *
+     * @param i начало ребра
+     * @param j конец ребра
+     * @return значение ребра или 0, если ребра нет
+     */
+    public int get(int i, int j) {
+        return source[i][j];
+    }
+
+    /**
+     * Получить текущие комбинации
+     *
+     * @return неизменяемое множество комбинаций в порядке их появления
+     */
+    public Set<CombinatoricsData> getMatches() {
+        return Collections.unmodifiableSet(matches);
+    }
+
+    /**
+     * Изменить значение ребра и обновить множество комбинаций
+     *
+     * @param i     начало ребра
+     * @param j     конец ребра
+     * @param value новое значение ребра, 0 - удалить ребро
+     * @return появившиеся и пропавшие комбинации
+     */
+    public Update setEdge(int i, int j, int value) {
+        if (i < 0 || i >= size || j < 0 || j >= size)
+            throw new AssertionError("ребро (" + i + ", " + j + ") вне дата-графа размера " + size);
+
+        int old = source[i][j];
+        if (old == value)
+            return new Update(new ArrayList<>(), new ArrayList<>());
+        source[i][j] = value;
+        if (old == 0)
+            link(i, j);
+        else if (value == 0)
+            unlink(i, j);
+
+        // комбинации, которые содержат обе вершины ребра, после изменения;
+        // остальных комбинаций изменение не касается
+        Set<CombinatoricsData> found = new LinkedHashSet<>();
+        int[] combination = new int[pattern.length];
+        for (int a = 0; a < pattern.length; a++)
+            for (int b = 0; b < pattern.length; b++) {
+                // при петле обе вершины совпадают, иначе различны
+                if ((a == b) != (i == j))
+                    continue;
+                combination[a] = i;
+                combination[b] = j;
+                if (!check(a, combination, orders[a][b], 0) || (a != b && !check(b, combination, orders[a][b], 1)))
+                    continue;
+                used[i] = true;
+                used[j] = true;
+                findStep(orders[a][b], a == b ? 1 : 2, combination, found);
+                used[i] = false;
+                used[j] = false;
+            }
+
+        // пропавшие комбинации ищем среди тех, что содержат обе вершины
+        List<CombinatoricsData> removed = new ArrayList<>();
+        Set<CombinatoricsData> first = byVertex.get(i).size() <= byVertex.get(j).size() ?
+                byVertex.get(i) : byVertex.get(j);
+        for (CombinatoricsData cd : first)
+            if (contains(cd.getData(), i) && contains(cd.getData(), j) && !found.contains(cd))
+                removed.add(cd);
+        for (CombinatoricsData cd : removed)
+            remove(cd);
+
+        List<CombinatoricsData> added = new ArrayList<>();
+        for (CombinatoricsData cd : found)
+            if (!matches.contains(cd)) {
+                added.add(cd);
+                put(cd);
+            }
+        return new Update(added, removed);
+    }
+
+    /**
+     * Шаг перебора: позиции `order[0..cnt - 1]` уже выбраны
+     *
+     * @param order       порядок перебора позиций паттерна
+     * @param cnt         кол-во выбранных позиций
+     * @param combination массив комбинации по позициям паттерна
+     * @param found       множество найденных комбинаций
+     */
+    private void findStep(int[] order, int cnt, int[] combination, Set<CombinatoricsData> found) {
+        if (cnt == order.length) {
+            found.add(new CombinatoricsData(combination.clone()));
+            return;
+        }
+
+        int p = order[cnt];
+        // ищем выбранную позицию, связанную со следующей ненулевым
+        // ребром, у вершины которой меньше всего соседей
+        int[] candidates = null;
+        int candidateCnt = size;
+        for (int t = 0; t < cnt; t++) {
+            int v = combination[order[t]];
+            if (pattern[order[t]][p] != 0 && outCounts[v] < candidateCnt) {
+                candidates = outNeighbours[v];
+                candidateCnt = outCounts[v];
+            }
+            if (pattern[p][order[t]] != 0 && inCounts[v] < candidateCnt) {
+                candidates = inNeighbours[v];
+                candidateCnt = inCounts[v];
+            }
+        }
+
+        // если таких позиций нет, перебираем все вершины графа
+        for (int k = 0; k < candidateCnt; k++) {
+            int v = candidates == null ? k : candidates[k];
+            if (used[v])
+                continue;
+            combination[p] = v;
+            if (!check(p, combination, order, cnt))
+                continue;
+            used[v] = true;
+            findStep(order, cnt + 1, combination, found);
+            used[v] = false;
+        }
+    }
+
+    /**
+     * Проверить рёбра новой позиции с уже выбранными позициями и с собой
+     *
+     * @param p           новая позиция
+     * @param combination массив комбинации по позициям паттерна
+     * @param order       порядок перебора позиций паттерна
+     * @param cnt         кол-во выбранных до новой позиции
+     * @return флаг, совпадают ли рёбра
+     */
+    private boolean check(int p, int[] combination, int[] order, int cnt) {
+        for (int t = 0; t <= cnt; t++) {
+            int q = t < cnt ? order[t] : p;
+            // при нежёсткой проверке нулевые элементы паттерна не проверяются
+            if ((hardCheck || pattern[p][q] != 0) && pattern[p][q] != source[combination[p]][combination[q]])
+                return false;
+            if ((hardCheck || pattern[q][p] != 0) && pattern[q][p] != source[combination[q]][combination[p]])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Получить порядок перебора позиций паттерна, начинающийся с позиций
+     * `a` и `b`; каждой следующей берётся позиция, у которой больше всего
+     * ненулевых связей с уже выбранными
+     *
+     * @param a позиция начала изменённого ребра
+     * @param b позиция конца изменённого ребра
+     * @return порядок перебора позиций
+     */
+    private int[] getOrder(int a, int b) {
+        int[] order = new int[pattern.length];
+        boolean[] ordered = new boolean[pattern.length];
+        int[] links = new int[pattern.length];
+        for (int pos = 0; pos < pattern.length; pos++) {
+            int best;
+            if (pos == 0)
+                best = a;
+            else if (pos == 1 && a != b)
+                best = b;
+            else {
+                best = -1;
+                for (int i = 0; i < pattern.length; i++)
+                    if (!ordered[i] && (best < 0 || links[i] > links[best]))
+                        best = i;
+            }
+            order[pos] = best;
+            ordered[best] = true;
+            for (int i = 0; i < pattern.length; i++) {
+                if (pattern[best][i] != 0)
+                    links[i]++;
+                if (pattern[i][best] != 0)
+                    links[i]++;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Добавить ребро в списки соседей
+     *
+     * @param i начало ребра
+     * @param j конец ребра
+     */
+    private void link(int i, int j) {
+        if (outCounts[i] == outNeighbours[i].length)
+            outNeighbours[i] = Arrays.copyOf(outNeighbours[i], outCounts[i] * 2);
+        outNeighbours[i][outCounts[i]++] = j;
+        if (inCounts[j] == inNeighbours[j].length)
+            inNeighbours[j] = Arrays.copyOf(inNeighbours[j], inCounts[j] * 2);
+        inNeighbours[j][inCounts[j]++] = i;
+    }
+
+    /**
+     * Удалить ребро из списков соседей
+     *
+     * @param i начало ребра
+     * @param j конец ребра
+     */
+    private void unlink(int i, int j) {
+        outCounts[i] = removeValue(outNeighbours[i], outCounts[i], j);
+        inCounts[j] = removeValue(inNeighbours[j], inCounts[j], i);
+    }
+
+    /**
+     * Удалить значение из массива, заменив его последним используемым элементом
+     *
+     * @param arr   массив
+     * @param len   кол-во используемых элементов
+     * @param value удаляемое значение
+     * @return новое кол-во используемых элементов
+     */
+    private static int removeValue(int[] arr, int len, int value) {
+        for (int k = 0; k < len; k++)
+            if (arr[k] == value) {
+                arr[k] = arr[len - 1];
+                return len - 1;
+            }
+        return len;
+    }
+
+    /**
+     * Проверить, входит ли вершина в комбинацию
+     *
+     * @param combination комбинация
+     * @param v           вершина
+     * @return флаг, входит ли вершина
+     */
+    private static boolean contains(int[] combination, int v) {
+        for (int c : combination)
+            if (c == v)
+                return true;
+        return false;
+    }
+
+    /**
+     * Добавить комбинацию
+     *
+     * @param cd комбинация
+     */
+    private void put(CombinatoricsData cd) {
+        matches.add(cd);
+        for (int v : cd.getData())
+            byVertex.get(v).add(cd);
+    }
+
+    /**
+     * Удалить комбинацию
+     *
+     * @param cd комбинация
+     */
+    private void remove(CombinatoricsData cd) {
+        matches.remove(cd);
+        for (int v : cd.getData())
+            byVertex.get(v).remove(cd);
+    }
+
+    /**
+     * Результат изменения ребра
+     */
+    public static class Update {
+        /**
+         * Появившиеся комбинации
+         */
+        @Getter
+        private final List<CombinatoricsData> added;
+        /**
+         * Пропавшие комбинации
+         */
+        @Getter
+        private final List<CombinatoricsData> removed;
+
+        /**
+         * Конструктор
+         *
+         * @param added   появившиеся комбинации
+         * @param removed пропавшие комбинации
+         */
+        private Update(List<CombinatoricsData> added, List<CombinatoricsData> removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package center.buran.fast.patterns;
+
+import lombok.Getter;
+
+import java.util.function.Predicate;
+
+/**
+ * Многоразовый поиск подготовленного паттерна в одном дата-графе: множества
+ * кандидатов, массив комбинации и обработчик найденных комбинаций создаются
+ * один раз в конструкторе, поэтому повторные запросы не выделяют память,
+ * а комбинации записываются в {@link MatchBuffer} без промежуточных
+ * объектов. Начальные множества кандидатов при переборе не меняются,
+ * а множества следующих уровней каждый раз строятся заново, поэтому их
+ * можно переиспользовать без очистки. Объект не потокобезопасен: для
+ * параллельных запросов нужно по объекту на поток
+ */
+public class Matcher {
+    /**
+     * Индекс дата-графа
+     */
+    @Getter
+    private final SourceIndex index;
+    /**
+     * Подготовленный паттерн
+     */
+    @Getter
+    private final CompiledPattern pattern;
+    /**
+     * множества вершин-кандидатов для позиций паттерна
+     */
+    private final CandidateDomains domains;
+    /**
+     * массив комбинации по позициям переставленного паттерна
+     */
+    private final int[] combination;
+    /**
+     * порядок сопоставления вершин паттерна
+     */
+    private final int[] order;
+    /**
+     * обработчик, записывающий комбинации в `target`
+     */
+    private final Predicate<int[]> collector;
+    /**
+     * обработчик, считающий комбинации
+     */
+    private final Predicate<int[]> counter;
+    /**
+     * буфер текущего запроса
+     */
+    private MatchBuffer target;
+    /**
+     * сколько ещё комбинаций можно найти в текущем запросе
+     */
+    private long remaining;
+    /**
+     * кол-во комбинаций, найденных в текущем запросе
+     */
+    private long found;
+
+    /**
+     * Конструктор
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     */
+    public Matcher(SourceIndex index, CompiledPattern pattern) {
+        FastPatternResolver.checkSize(index, pattern);
+        this.index = index;
+        this.pattern = pattern;
+        this.domains = new CandidateDomains(index, pattern, false);
+        this.combination = new int[pattern.getSize()];
+        this.order = pattern.getOrder();
+        this.collector = c -> {
+            target.addRestored(c, order);
+            found++;
+            return --remaining > 0;
+        };
+        this.counter = c -> {
+            found++;
+            return --remaining > 0;
+        };
+    }
+
+    /**
+     * Найти все комбинации и добавить их в буфер; кол-во комбинаций
+     * не ограничивается, но буфер нумерует их числами `int`, поэтому
+     * в нём помещается не больше `Integer.MAX_VALUE` комбинаций.
+     * Если комбинаций больше, выбрасывается {@link AssertionError},
+     * а не возвращается часть комбинаций; для подсчёта без ограничения
+     * см. {@link #count()}
+     *
+     * @param out буфер, в конец которого добавляются комбинации
+     *            в том же порядке, что и у
+     *            {@link FastPatternResolver#getAllPatterns(SourceIndex, CompiledPattern)}
+     * @return кол-во добавленных комбинаций
+     */
+    public int getAllPatterns(MatchBuffer out) {
+        return collect(Long.MAX_VALUE, out);
+    }
+
+    /**
+     * Найти первые комбинации и добавить их в буфер
+     *
+     * @param k   максимальное кол-во комбинаций
+     * @param out буфер, в конец которого добавляются комбинации
+     * @return кол-во добавленных комбинаций
+     */
+    public int findFirst(int k, MatchBuffer out) {
+        if (k < 0)
+            throw new AssertionError("недопустимое кол-во комбинаций: " + k);
+        return collect(k, out);
+    }
+
+    /**
+     * Найти комбинации и добавить их в буфер
+     *
+     * @param limit максимальное кол-во комбинаций
+     * @param out   буфер, в конец которого добавляются комбинации
+     * @return кол-во добавленных комбинаций
+     */
+    private int collect(long limit, MatchBuffer out) {
+        if (out.getWidth() != pattern.getSize())
+            throw new AssertionError("размер комбинаций буфера " + out.getWidth() +
+                    " не равен размеру паттерна " + pattern.getSize());
+        target = out;
+        try {
+            return (int) run(collector, limit);
+        } finally {
+            target = null;
+        }
+    }
+
+    /**
+     * Подсчитать кол-во комбинаций
+     *
+     * @return кол-во комбинаций
+     */
+    public long count() {
+        return run(counter, Long.MAX_VALUE);
+    }
+
+    /**
+     * Проверить, есть ли хотя бы одна комбинация
+     *
+     * @return флаг, есть ли комбинация
+     */
+    public boolean exists() {
+        return run(counter, 1) > 0;
+    }
+
+    /**
+     * Запустить перебор
+     *
+     * @param handler обработчик найденной комбинации
+     * @param limit   максимальное кол-во комбинаций
+     * @return кол-во найденных комбинаций
+     */
+    private long run(Predicate<int[]> handler, long limit) {
+        if (limit == 0)
+            return 0;
+        remaining = limit;
+        found = 0;
+        FastPatternResolver.findPatternStep(handler, domains, index.getGraph(), pattern, 0, combination);
+        return found;
+    }
+}
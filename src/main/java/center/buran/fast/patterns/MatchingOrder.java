@@ -0,0 +1,76 @@
+package center.buran.fast.patterns;
+
+/**
+ * Класс выбора порядка сопоставления вершин паттерна;
+ * чем раньше в порядке встречаются вершины, связанные с уже
+ * выбранными, тем раньше проверка рёбер начинает отсекать
+ * ветви перебора
+ */
+public class MatchingOrder {
+
+    /**
+     * Получить порядок сопоставления вершин паттерна;
+     * первой берётся вершина наибольшей степени, каждой следующей -
+     * вершина, у которой больше всего ненулевых связей с уже выбранными,
+     * при равенстве - вершина наибольшей степени, затем - с меньшим индексом
+     *
+     * @param pattern паттерн
+     * @return массив, i-й элемент которого - индекс вершины паттерна,
+     * сопоставляемой i-й по счёту
+     */
+    public static int[] getOrder(int[][] pattern) {
+        // степени вершин паттерна
+        int[] powers = PatternResolver.getPowers(pattern);
+        // кол-во связей каждой вершины с уже выбранными
+        int[] links = new int[pattern.length];
+        // флаги, выбрана ли уже вершина
+        boolean[] ordered = new boolean[pattern.length];
+        // итоговый порядок
+        int[] order = new int[pattern.length];
+
+        for (int pos = 0; pos < pattern.length; pos++) {
+            // выбираем лучшую из ещё не выбранных вершин
+            int best = -1;
+            for (int i = 0; i < pattern.length; i++) {
+                if (ordered[i])
+                    continue;
+                if (best < 0 || links[i] > links[best] ||
+                        (links[i] == links[best] && powers[i] > powers[best]))
+                    best = i;
+            }
+            order[pos] = best;
+            ordered[best] = true;
+            // обновляем кол-во связей с выбранными вершинами
+            for (int i = 0; i < pattern.length; i++) {
+                if (pattern[best][i] != 0)
+                    links[i]++;
+                if (pattern[i][best] != 0)
+                    links[i]++;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Перевести комбинацию, найденную для переставленного паттерна,
+     * в комбинацию для исходного паттерна
+     *
+     * @param combination комбинация, i-й элемент которой сопоставлен
+     *                    вершине паттерна `order[i]`
+     * @param order       порядок сопоставления вершин паттерна
+     * @return комбинация, i-й элемент которой сопоставлен i-й вершине паттерна
+     */
+    public static int[] restore(int[] combination, int[] order) {
+        int[] res = new int[combination.length];
+        for (int i = 0; i < combination.length; i++)
+            res[order[i]] = combination[i];
+        return res;
+    }
+
+    /**
+     * Запрещённый конструктор
+     */
+    private MatchingOrder() {
+        throw new AssertionError("Этот конструктор вызывать нельзя");
+    }
+}
@@ -0,0 +1,351 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Набор паттернов для одновременного поиска в одном дата-графе.
+ * Вершины каждого паттерна переставляются в порядке сопоставления,
+ * после чего паттерны складываются в префиксное дерево: у узла глубины `d`
+ * общая левая верхняя подматрица `d x d` всех паттернов его поддерева.
+ * Перебор идёт один раз по дереву, поэтому вершины для общих первых
+ * позиций выбираются и проверяются один раз для всех паттернов, у которых
+ * эти позиции совпадают. Набор строится один раз и после этого не меняется,
+ * поэтому его можно использовать для поиска в разных дата-графах
+ */
+public class PatternBatch {
+    /**
+     * Кол-во паттернов
+     */
+    @Getter
+    private final int size;
+    /**
+     * порядки сопоставления вершин паттернов
+     */
+    private final int[][] orders;
+    /**
+     * переставленные в порядке сопоставления паттерны
+     */
+    private final int[][][] ordered;
+    /**
+     * корень префиксного дерева, ему соответствует пустой префикс
+     */
+    private final Node root;
+    /**
+     * Кол-во узлов префиксного дерева, не считая корня
+     */
+    @Getter
+    private final int nodeCount;
+    /**
+     * размер самого большого паттерна
+     */
+    private final int maxLength;
+
+    /**
+     * Конструктор
+     *
+     * @param patterns паттерны; номер паттерна в списке - его идентификатор в результатах поиска
+     */
+    public PatternBatch(List<int[][]> patterns) {
+        this.size = patterns.size();
+        this.orders = new int[size][];
+        this.ordered = new int[size][][];
+        this.root = new Node(0, null, null, -1);
+
+        int nodes = 0;
+        int max = 0;
+        for (int id = 0; id < size; id++) {
+            int[][] pattern = patterns.get(id);
+            orders[id] = MatchingOrder.getOrder(pattern);
+            ordered[id] = Combinatorics.makePermute(pattern, orders[id]);
+            max = Math.max(max, pattern.length);
+
+            // спускаемся по дереву, добавляя недостающие узлы
+            Node node = root;
+            node.ids.add(id);
+            for (int d = 0; d < pattern.length; d++) {
+                int[] row = Arrays.copyOf(ordered[id][d], d + 1);
+                int[] column = new int[d];
+                for (int i = 0; i < d; i++)
+                    column[i] = ordered[id][i][d];
+                Node child = node.find(row, column);
+                if (child == null) {
+                    child = new Node(d + 1, row, column, nodes++);
+                    node.children.add(child);
+                }
+                child.ids.add(id);
+                node = child;
+            }
+            node.ends.add(id);
+        }
+        this.nodeCount = nodes;
+        this.maxLength = max;
+    }
+
+    /**
+     * Поиск всех паттернов набора в дата-графе
+     *
+     * @param source    дата-граф; индекс строится при каждом вызове, матрица
+     *                  не копируется и не должна меняться до конца поиска
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return списки комбинаций по идентификаторам паттернов; список каждого
+     * паттерна совпадает со списком, который возвращает
+     * {@link FastPatternResolver#getAllPatterns(int[][], int[][], boolean)}
+     */
+    public List<List<CombinatoricsData>> getAllPatterns(int[][] source, boolean hardCheck) {
+        return getAllPatterns(SourceIndex.wrap(source), hardCheck);
+    }
+
+    /**
+     * Поиск всех паттернов набора по заранее построенному индексу дата-графа
+     *
+     * @param index     индекс дата-графа
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return списки комбинаций по идентификаторам паттернов, как у
+     * {@link #getAllPatterns(int[][], boolean)}
+     */
+    public List<List<CombinatoricsData>> getAllPatterns(SourceIndex index, boolean hardCheck) {
+        if (maxLength > index.getSize())
+            throw new AssertionError("размер паттерна: " + maxLength + " превышает " +
+                    "размер дата-графа " + index.getSize());
+
+        List<List<CombinatoricsData>> res = new ArrayList<>();
+        for (int id = 0; id < size; id++)
+            res.add(new ArrayList<>());
+
+        new Search(index, hardCheck, res).step(root, 0);
+        return res;
+    }
+
+    /**
+     * Узел префиксного дерева
+     */
+    private static class Node {
+        /**
+         * глубина узла, она же кол-во выбранных вершин
+         */
+        private final int depth;
+        /**
+         * новая строка подматрицы: `pattern[depth - 1][0..depth - 1]`
+         */
+        private final int[] row;
+        /**
+         * новый столбец подматрицы без диагонали: `pattern[0..depth - 2][depth - 1]`
+         */
+        private final int[] column;
+        /**
+         * номер узла
+         */
+        private final int id;
+        /**
+         * дочерние узлы
+         */
+        private final List<Node> children = new ArrayList<>();
+        /**
+         * идентификаторы паттернов поддерева
+         */
+        private final List<Integer> ids = new ArrayList<>();
+        /**
+         * идентификаторы паттернов, которые заканчиваются в узле
+         */
+        private final List<Integer> ends = new ArrayList<>();
+
+        /**
+         * Конструктор
+         *
+         * @param depth  глубина узла
+         * @param row    новая строка подматрицы
+         * @param column новый столбец подматрицы
+         * @param id     номер узла
+         */
+        private Node(int depth, int[] row, int[] column, int id) {
+            this.depth = depth;
+            this.row = row;
+            this.column = column;
+            this.id = id;
+        }
+
+        /**
+         * Найти дочерний узел с заданными строкой и столбцом
+         *
+         * @param row    новая строка подматрицы
+         * @param column новый столбец подматрицы
+         * @return дочерний узел или `null`, если его нет
+         */
+        private Node find(int[] row, int[] column) {
+            for (Node child : children)
+                if (Arrays.equals(child.row, row) && Arrays.equals(child.column, column))
+                    return child;
+            return null;
+        }
+    }
+
+    /**
+     * Состояние одного поиска набора в дата-графе
+     */
+    private class Search {
+        /**
+         * индекс дата-графа
+         */
+        private final SourceIndex index;
+        /**
+         * дата-граф
+         */
+        private final DenseGraph source;
+        /**
+         * флаг, нужна ли жёсткая проверка
+         */
+        private final boolean hardCheck;
+        /**
+         * списки найденных комбинаций по идентификаторам паттернов
+         */
+        private final List<List<CombinatoricsData>> res;
+        /**
+         * кол-во 64-битных слов в одной маске
+         */
+        private final int words;
+        /**
+         * начальные маски кандидатов узлов: вершина попадает в маску,
+         * если подходит по сигнатуре и диагонали хотя бы одному паттерну поддерева
+         */
+        private final long[][] initial;
+        /**
+         * маски кандидатов по глубинам перебора
+         */
+        private final long[][] masks;
+        /**
+         * маска уже выбранных вершин
+         */
+        private final long[] used;
+        /**
+         * массив комбинации
+         */
+        private final int[] combination;
+
+        /**
+         * Конструктор
+         *
+         * @param index     индекс дата-графа
+         * @param hardCheck флаг, нужна ли жёсткая проверка
+         * @param res       списки найденных комбинаций
+         */
+        private Search(SourceIndex index, boolean hardCheck, List<List<CombinatoricsData>> res) {
+            this.index = index;
+            this.source = index.getGraph();
+            this.hardCheck = hardCheck;
+            this.res = res;
+            this.words = (index.getSize() + 63) >>> 6;
+            this.initial = new long[nodeCount][words];
+            this.masks = new long[maxLength][words];
+            this.used = new long[words];
+            this.combination = new int[maxLength];
+            fillInitial(root);
+        }
+
+        /**
+         * Построить начальные маски кандидатов поддерева
+         *
+         * @param node корень поддерева
+         */
+        private void fillInitial(Node node) {
+            for (Node child : node.children) {
+                int u = child.depth - 1;
+                for (int id : child.ids) {
+                    SourceIndex.Signature signature = new SourceIndex.Signature(ordered[id], u);
+                    for (int v = 0; v < source.getSize(); v++)
+                        if (index.dominates(v, signature))
+                            initial[child.id][v >>> 6] |= 1L << v;
+                }
+                for (int v = 0; v < source.getSize(); v++)
+                    if ((hardCheck || child.row[u] != 0) && child.row[u] != source.get(v, v))
+                        initial[child.id][v >>> 6] &= ~(1L << v);
+                fillInitial(child);
+            }
+        }
+
+        /**
+         * Шаг перебора: для первых `cnt` позиций вершины уже выбраны
+         * и соответствуют префиксу узла
+         *
+         * @param node узел префиксного дерева
+         * @param cnt  кол-во выбранных вершин
+         */
+        private void step(Node node, int cnt) {
+            // сохраняем комбинации паттернов, которые заканчиваются в узле
+            for (int id : node.ends)
+                res.get(id).add(new CombinatoricsData(
+                        MatchingOrder.restore(Arrays.copyOf(combination, cnt), orders[id])
+                ));
+
+            for (Node child : node.children) {
+                long[] mask = masks[cnt];
+                buildMask(child, cnt, mask);
+                for (int w = 0; w < words; w++)
+                    for (long word = mask[w]; word != 0; word &= word - 1) {
+                        int v = (w << 6) + Long.numberOfTrailingZeros(word);
+                        if (!check(child, cnt, v))
+                            continue;
+                        combination[cnt] = v;
+                        used[v >>> 6] |= 1L << v;
+                        step(child, cnt + 1);
+                        used[v >>> 6] &= ~(1L << v);
+                    }
+            }
+        }
+
+        /**
+         * Построить маску кандидатов дочернего узла по маскам соседей
+         * уже выбранных вершин
+         *
+         * @param child дочерний узел
+         * @param cnt   кол-во выбранных вершин
+         * @param mask  массив, в который записывается маска
+         */
+        private void buildMask(Node child, int cnt, long[] mask) {
+            long[] start = initial[child.id];
+            for (int w = 0; w < words; w++)
+                mask[w] = start[w] & ~used[w];
+            for (int i = 0; i < cnt; i++) {
+                // ребро от новой вершины к выбранной и от выбранной к новой
+                long[] in = index.getInBits(combination[i]);
+                long[] out = index.getOutBits(combination[i]);
+                int forward = child.row[i];
+                int backward = child.column[i];
+                for (int w = 0; w < words; w++) {
+                    if (forward != 0)
+                        mask[w] &= in[w];
+                    else if (hardCheck)
+                        mask[w] &= ~in[w];
+                    if (backward != 0)
+                        mask[w] &= out[w];
+                    else if (hardCheck)
+                        mask[w] &= ~out[w];
+                }
+            }
+        }
+
+        /**
+         * Проверить значения рёбер новой вершины с уже выбранными
+         *
+         * @param child дочерний узел
+         * @param cnt   кол-во выбранных вершин
+         * @param v     новая вершина
+         * @return флаг, совпадают ли значения
+         */
+        private boolean check(Node child, int cnt, int v) {
+            for (int i = 0; i < cnt; i++) {
+                int forward = child.row[i];
+                int backward = child.column[i];
+                if ((hardCheck || forward != 0) && forward != source.get(v, combination[i]))
+                    return false;
+                if ((hardCheck || backward != 0) && backward != source.getReverse(v, combination[i]))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
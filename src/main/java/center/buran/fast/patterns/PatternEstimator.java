@@ -0,0 +1,410 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.graph.SparseGraph;
+import lombok.Getter;
+
+import java.util.SplittableRandom;
+
+/**
+ * Приближённый подсчёт кол-ва комбинаций случайными спусками по дереву
+ * перебора (оценка Кнута): на каждом уровне выбирается случайный кандидат
+ * из множества размера `d`, вес спуска умножается на `d`, а если кандидат
+ * не прошёл проверку рёбер или отсечение, спуск даёт ноль. Матожидание
+ * веса дошедшего до конца спуска равно кол-ву листьев дерева, т.е. точному
+ * кол-ву комбинаций, поэтому среднее по спускам - несмещённая оценка.
+ * Последний уровень перебирается целиком, это не меняет матожидание,
+ * но уменьшает разброс. Для плотного графа кандидаты берутся из
+ * {@link CandidateDomains}, как в {@link FastPatternResolver#count(SourceIndex, CompiledPattern)},
+ * для разреженного - из списков соседей уже выбранной вершины, как
+ * в {@link FastPatternResolver#getAllPatterns(SparseGraph, CompiledPattern)}.
+ * Объект не потокобезопасен: для параллельной оценки нужно по объекту
+ * с разными начальными значениями на поток
+ */
+public class PatternEstimator {
+    /**
+     * минимальное кол-во спусков перед проверкой точности,
+     * чтобы нормальное приближение было осмысленным
+     */
+    private static final int MIN_SAMPLES = 1000;
+    /**
+     * кол-во спусков между проверками точности и времени
+     */
+    private static final int BATCH = 256;
+    /**
+     * Подготовленный паттерн
+     */
+    @Getter
+    private final CompiledPattern pattern;
+    /**
+     * плотный дата-граф или `null`
+     */
+    private final DenseGraph dense;
+    /**
+     * множества кандидатов плотного дата-графа
+     */
+    private final CandidateDomains domains;
+    /**
+     * разреженный дата-граф или `null`
+     */
+    private final SparseGraph sparse;
+    /**
+     * степени вершин разреженного дата-графа
+     */
+    private final int[] sourcePowers;
+    /**
+     * флаги, выбрана ли вершина разреженного дата-графа в текущем спуске
+     */
+    private final boolean[] used;
+    /**
+     * массив комбинации по позициям переставленного паттерна
+     */
+    private final int[] combination;
+    /**
+     * генератор случайных чисел
+     */
+    private final SplittableRandom random;
+    /**
+     * кол-во вершин, отмеченных в `used` текущим спуском
+     */
+    private int chosen;
+
+    /**
+     * Конструктор оценки по индексу плотного дата-графа
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param seed    начальное значение генератора случайных чисел
+     */
+    public PatternEstimator(SourceIndex index, CompiledPattern pattern, long seed) {
+        FastPatternResolver.checkSize(index, pattern);
+        this.pattern = pattern;
+        this.dense = index.getGraph();
+        this.domains = new CandidateDomains(index, pattern, false);
+        this.sparse = null;
+        this.sourcePowers = null;
+        this.used = null;
+        this.combination = new int[pattern.getSize()];
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Конструктор оценки по разреженному дата-графу
+     *
+     * @param source  разреженный дата-граф
+     * @param pattern подготовленный паттерн
+     * @param seed    начальное значение генератора случайных чисел
+     */
+    public PatternEstimator(SparseGraph source, CompiledPattern pattern, long seed) {
+        if (pattern.getSize() > source.getSize())
+            throw new AssertionError("размер паттерна: " + pattern.getSize() + " превышает " +
+                    "размер дата-графа " + source.getSize());
+        this.pattern = pattern;
+        this.dense = null;
+        this.domains = null;
+        this.sparse = source;
+        this.sourcePowers = source.getPowers();
+        this.used = new boolean[source.getSize()];
+        this.combination = new int[pattern.getSize()];
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Оценить кол-во комбинаций по заданному кол-ву спусков
+     *
+     * @param samples кол-во спусков
+     * @param delta   допустимая вероятность того, что точное значение
+     *                не попадёт в доверительный интервал
+     * @return оценка
+     */
+    public CountEstimate estimate(long samples, double delta) {
+        if (samples <= 0)
+            throw new AssertionError("кол-во спусков должно быть положительным: " + samples);
+        checkDelta(delta);
+        Accumulator acc = new Accumulator();
+        for (long s = 0; s < samples; s++)
+            acc.add(sample());
+        return acc.result(quantile(1 - delta / 2), 1 - delta, false);
+    }
+
+    /**
+     * Оценить кол-во комбинаций с заданной относительной точностью: спуски
+     * продолжаются, пока полуширина доверительного интервала больше `epsilon`
+     * от оценки, но не дольше заданного времени
+     *
+     * @param epsilon       допустимая относительная ошибка
+     * @param delta         допустимая вероятность того, что точное значение
+     *                      не попадёт в доверительный интервал
+     * @param timeoutMillis ограничение времени в миллисекундах
+     * @return оценка; если все спуски дали ноль, возвращается сошедшаяся
+     * нулевая оценка, если точность не достигнута за отведённое время,
+     * {@link CountEstimate#isConverged()} возвращает `false`
+     */
+    public CountEstimate estimate(double epsilon, double delta, long timeoutMillis) {
+        if (epsilon <= 0)
+            throw new AssertionError("относительная ошибка должна быть положительной: " + epsilon);
+        checkDelta(delta);
+        if (timeoutMillis <= 0)
+            throw new AssertionError("ограничение времени должно быть положительным: " + timeoutMillis);
+        double z = quantile(1 - delta / 2);
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        Accumulator acc = new Accumulator();
+        while (true) {
+            for (int s = 0; s < BATCH; s++)
+                acc.add(sample());
+            if (acc.count >= MIN_SAMPLES && acc.mean > 0 && z * acc.standardError() <= epsilon * acc.mean)
+                return acc.result(z, 1 - delta, true);
+            // все спуски дали ноль: интервал [0, 0], дальше точнее не станет
+            if (acc.count >= MIN_SAMPLES && acc.mean == 0 && acc.m2 == 0)
+                return acc.result(z, 1 - delta, true);
+            if (System.nanoTime() - deadline >= 0)
+                return acc.result(z, 1 - delta, false);
+        }
+    }
+
+    /**
+     * Выполнить один случайный спуск
+     *
+     * @return вес спуска, матожидание которого равно кол-ву комбинаций
+     */
+    double sample() {
+        if (dense != null)
+            return sampleDense();
+        chosen = 0;
+        double res = sampleSparse();
+        for (int j = 0; j < chosen; j++)
+            used[combination[j]] = false;
+        return res;
+    }
+
+    /**
+     * Случайный спуск по множествам кандидатов плотного дата-графа;
+     * начальные множества не меняются, а множества следующих уровней
+     * каждый раз строятся заново, поэтому их не нужно очищать
+     *
+     * @return вес спуска
+     */
+    private double sampleDense() {
+        int k = pattern.getSize();
+        double weight = 1;
+        for (int cnt = 0; ; cnt++) {
+            int d = domains.size(cnt);
+            if (d == 0)
+                return 0;
+            // кандидатов последней позиции проверяем все
+            if (cnt == k - 1) {
+                int valid = 0;
+                for (int i = domains.next(cnt, 0); i >= 0; i = domains.next(cnt, i + 1)) {
+                    combination[cnt] = i;
+                    if (FastPatternResolver.checkMatrixEdge(dense, pattern, combination, k))
+                        valid++;
+                }
+                return weight * valid;
+            }
+            int v = domains.select(cnt, random.nextInt(d));
+            combination[cnt] = v;
+            if (!FastPatternResolver.checkMatrixEdge(dense, pattern, combination, cnt + 1) || !domains.assign(cnt, v))
+                return 0;
+            weight *= d;
+        }
+    }
+
+    /**
+     * Случайный спуск по спискам соседей разреженного дата-графа;
+     * если следующая вершина паттерна связана с выбранными, кандидаты -
+     * все соседи выбранной вершины с наименьшим кол-вом соседей,
+     * а соседи с другим значением ребра дают нулевой вес
+     *
+     * @return вес спуска
+     */
+    private double sampleSparse() {
+        int[][] ordered = pattern.getOrdered();
+        int k = ordered.length;
+        double weight = 1;
+        for (int cnt = 0; cnt < k; cnt++) {
+            // ищем выбранную вершину с наименьшим кол-вом подходящих соседей
+            int anchor = -1;
+            boolean anchorOut = false;
+            int anchorSize = Integer.MAX_VALUE;
+            for (int j = 0; j < cnt; j++) {
+                if (ordered[j][cnt] != 0 && sparse.getOutDegree(combination[j]) < anchorSize) {
+                    anchor = j;
+                    anchorOut = true;
+                    anchorSize = sparse.getOutDegree(combination[j]);
+                }
+                if (ordered[cnt][j] != 0 && sparse.getInDegree(combination[j]) < anchorSize) {
+                    anchor = j;
+                    anchorOut = false;
+                    anchorSize = sparse.getInDegree(combination[j]);
+                }
+            }
+
+            // не связанная с выбранными вершина выбирается из всех вершин графа
+            if (anchor < 0) {
+                int i = random.nextInt(sparse.getSize());
+                if (!accept(ordered, cnt, i))
+                    return 0;
+                weight *= sparse.getSize();
+                continue;
+            }
+
+            int v = combination[anchor];
+            int begin = anchorOut ? sparse.getOutBegin(v) : sparse.getInBegin(v);
+            int value = anchorOut ? ordered[anchor][cnt] : ordered[cnt][anchor];
+            if (anchorSize == 0)
+                return 0;
+            // соседей последней позиции проверяем всех
+            if (cnt == k - 1) {
+                int valid = 0;
+                for (int e = begin; e < begin + anchorSize; e++)
+                    if (neighbourValue(anchorOut, e) == value && accept(ordered, cnt, neighbour(anchorOut, e)))
+                        valid++;
+                return weight * valid;
+            }
+            int e = begin + random.nextInt(anchorSize);
+            if (neighbourValue(anchorOut, e) != value || !accept(ordered, cnt, neighbour(anchorOut, e)))
+                return 0;
+            weight *= anchorSize;
+        }
+        return weight;
+    }
+
+    /**
+     * Проверить вершину-кандидата разреженного дата-графа и при
+     * успехе отметить её выбранной
+     *
+     * @param ordered переставленный паттерн
+     * @param cnt     позиция паттерна
+     * @param i       индекс вершины-кандидата
+     * @return флаг, подходит ли вершина
+     */
+    private boolean accept(int[][] ordered, int cnt, int i) {
+        boolean hardCheck = pattern.isHardCheck();
+        if (used[i] || (hardCheck && sourcePowers[i] < pattern.getPowers()[cnt]))
+            return false;
+        combination[cnt] = i;
+        if (!FastPatternResolver.checkSparseEdge(sparse, ordered, combination, cnt + 1, hardCheck))
+            return false;
+        // последнюю позицию при полном переборе не отмечаем:
+        // соседи проверяются независимо друг от друга
+        if (cnt + 1 < ordered.length) {
+            used[i] = true;
+            chosen++;
+        }
+        return true;
+    }
+
+    /**
+     * Получить соседа по номеру ребра
+     *
+     * @param out флаг, исходящее ли ребро
+     * @param e   номер ребра
+     * @return индекс соседа
+     */
+    private int neighbour(boolean out, int e) {
+        return out ? sparse.getOutTarget(e) : sparse.getInSource(e);
+    }
+
+    /**
+     * Получить значение ребра по номеру
+     *
+     * @param out флаг, исходящее ли ребро
+     * @param e   номер ребра
+     * @return значение ребра
+     */
+    private int neighbourValue(boolean out, int e) {
+        return out ? sparse.getOutValue(e) : sparse.getInValue(e);
+    }
+
+    /**
+     * Проверить допустимую вероятность ошибки
+     *
+     * @param delta допустимая вероятность ошибки
+     */
+    private static void checkDelta(double delta) {
+        if (!(delta > 0 && delta < 1))
+            throw new AssertionError("вероятность ошибки должна быть от 0 до 1: " + delta);
+    }
+
+    /**
+     * Квантиль стандартного нормального распределения
+     * (рациональное приближение Акклама, относительная ошибка около 1e-9)
+     *
+     * @param p вероятность от 0 до 1
+     * @return квантиль
+     */
+    static double quantile(double p) {
+        double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        // хвосты и центральная часть приближаются разными дробями
+        if (p < 0.02425) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) /
+                    ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - 0.02425)
+            return -quantile(1 - p);
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q /
+                (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+
+    /**
+     * Среднее и дисперсия весов спусков, считаемые на лету (метод Уэлфорда)
+     */
+    private static class Accumulator {
+        /**
+         * кол-во спусков
+         */
+        private long count;
+        /**
+         * среднее
+         */
+        private double mean;
+        /**
+         * сумма квадратов отклонений от среднего
+         */
+        private double m2;
+
+        /**
+         * Добавить вес спуска
+         *
+         * @param x вес спуска
+         */
+        void add(double x) {
+            count++;
+            double delta = x - mean;
+            mean += delta / count;
+            m2 += delta * (x - mean);
+        }
+
+        /**
+         * Получить стандартную ошибку среднего
+         *
+         * @return стандартная ошибка
+         */
+        double standardError() {
+            return count > 1 ? Math.sqrt(m2 / (count - 1) / count) : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Получить оценку
+         *
+         * @param z          квантиль нормального распределения
+         * @param confidence доверительная вероятность
+         * @param converged  флаг, достигнута ли заданная точность
+         * @return оценка
+         */
+        CountEstimate result(double z, double confidence, boolean converged) {
+            double se = standardError();
+            return new CountEstimate(mean, se, z * se, confidence, count, converged);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Сервис запросов поиска паттернов для вызова из многих потоков: запросы
+ * выполняются пулом из `concurrency` потоков, ещё не начатые запросы
+ * ждут в очереди ограниченной длины, а если очередь заполнена, запрос
+ * сразу завершается с {@link RejectedExecutionException}. У каждого
+ * запроса есть срок: по его истечении результат запроса завершается
+ * с {@link TimeoutException}, а перебор останавливается по флагу отмены,
+ * который проверяется перед каждым кандидатом. Так же останавливается
+ * перебор при отмене результата через {@link CompletableFuture#cancel(boolean)}
+ */
+public class PatternQueryService implements AutoCloseable {
+    /**
+     * Максимальное кол-во одновременно выполняемых запросов
+     */
+    @Getter
+    private final int concurrency;
+    /**
+     * Срок выполнения запроса в миллисекундах, считая ожидание в очереди
+     */
+    @Getter
+    private final long timeoutMillis;
+    /**
+     * пул потоков с ограниченной очередью
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * запросы, которые ещё не завершены
+     */
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Конструктор
+     *
+     * @param concurrency   максимальное кол-во одновременно выполняемых запросов
+     * @param queueCapacity максимальное кол-во запросов, ожидающих выполнения
+     * @param timeoutMillis срок выполнения запроса в миллисекундах
+     */
+    public PatternQueryService(int concurrency, int queueCapacity, long timeoutMillis) {
+        if (concurrency <= 0)
+            throw new AssertionError("кол-во потоков должно быть положительным: " + concurrency);
+        if (queueCapacity <= 0)
+            throw new AssertionError("длина очереди должна быть положительной: " + queueCapacity);
+        if (timeoutMillis <= 0)
+            throw new AssertionError("срок запроса должен быть положительным: " + timeoutMillis);
+        this.concurrency = concurrency;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadCnt = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                concurrency, concurrency, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "pattern-query-" + threadCnt.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    /**
+     * Найти все комбинации; кол-во комбинаций не ограничивается, и список
+     * никогда не обрезается: если комбинации не помещаются в список,
+     * результат запроса завершается с ошибкой
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return результат запроса со списком комбинаций, как у
+     * {@link FastPatternResolver#getAllPatterns(SourceIndex, CompiledPattern)}
+     */
+    public CompletableFuture<List<CombinatoricsData>> getAllPatterns(SourceIndex index, CompiledPattern pattern) {
+        return submit(cancelled -> {
+            List<CombinatoricsData> res = new ArrayList<>();
+            FastPatternResolver.runSearch(index, pattern, cancelled, c -> {
+                if (res.size() == Integer.MAX_VALUE)
+                    throw new AssertionError("кол-во комбинаций превышает " + Integer.MAX_VALUE);
+                res.add(new CombinatoricsData(pattern.restore(c)));
+                return true;
+            });
+            return res;
+        });
+    }
+
+    /**
+     * Найти первые комбинации
+     *
+     * @param k       максимальное кол-во комбинаций
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return результат запроса со списком комбинаций, как у
+     * {@link FastPatternResolver#findFirst(int, SourceIndex, CompiledPattern)}
+     */
+    public CompletableFuture<List<CombinatoricsData>> findFirst(int k, SourceIndex index, CompiledPattern pattern) {
+        if (k < 0)
+            throw new AssertionError("недопустимое кол-во комбинаций: " + k);
+        return submit(cancelled -> {
+            List<CombinatoricsData> res = new ArrayList<>();
+            if (k > 0)
+                FastPatternResolver.runSearch(index, pattern, cancelled, c -> {
+                    res.add(new CombinatoricsData(pattern.restore(c)));
+                    return res.size() < k;
+                });
+            return res;
+        });
+    }
+
+    /**
+     * Подсчитать кол-во комбинаций
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return результат запроса с кол-вом комбинаций
+     */
+    public CompletableFuture<Long> count(SourceIndex index, CompiledPattern pattern) {
+        return submit(cancelled -> {
+            long[] cnt = new long[1];
+            FastPatternResolver.runSearch(index, pattern, cancelled, c -> {
+                cnt[0]++;
+                return true;
+            });
+            return cnt[0];
+        });
+    }
+
+    /**
+     * Проверить, есть ли хотя бы одна комбинация
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @return результат запроса с флагом, есть ли комбинация
+     */
+    public CompletableFuture<Boolean> exists(SourceIndex index, CompiledPattern pattern) {
+        return submit(cancelled -> {
+            boolean[] found = new boolean[1];
+            FastPatternResolver.runSearch(index, pattern, cancelled, c -> {
+                found[0] = true;
+                return false;
+            });
+            return found[0];
+        });
+    }
+
+    /**
+     * Получить кол-во незавершённых запросов
+     *
+     * @return кол-во запросов, которые выполняются или ждут в очереди
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Отменить все незавершённые запросы и остановить потоки
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (CompletableFuture<?> future : pending)
+            future.cancel(false);
+    }
+
+    /**
+     * Поставить запрос в очередь
+     *
+     * @param query запрос; получает флаг отмены, который нужно передать в перебор
+     * @param <T>   тип результата
+     * @return результат запроса
+     */
+    private <T> CompletableFuture<T> submit(Function<AtomicBoolean, T> query) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            // запрос мог истечь или быть отменён, пока ждал в очереди
+            if (future.isDone())
+                return;
+            try {
+                T res = query.apply(cancelled);
+                // если перебор прерван, результат уже завершён
+                future.complete(res);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        pending.add(future);
+        // срок отсчитывается от постановки в очередь
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        // после завершения результата любым способом перебор больше не нужен,
+        // а ещё не начатый запрос освобождает место в очереди
+        future.whenComplete((r, e) -> {
+            cancelled.set(true);
+            executor.remove(task);
+            pending.remove(future);
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -1,10 +1,13 @@
 package center.buran.fast.patterns;
 
+import center.buran.fast.patterns.graph.DenseGraph;
 import center.buran.fast.patterns.misc.Combinatorics;
 import center.buran.fast.patterns.misc.CombinatoricsData;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Класс поиска изоморфных подграфов полным перебором
@@ -25,33 +28,101 @@ public class PatternResolver {
      * были изоморфны заданному паттерну
      */
     public static List<CombinatoricsData> getAllPatterns(int[][] source, int[][] pattern, boolean hardCheck) {
+        return getAllPatterns(source.length, c -> Combinatorics.getSubMatrix(source, c), pattern, hardCheck);
+    }
+
+    /**
+     * Поиск изоморфных подграфов плотного дата-графа полным перебором
+     *
+     * @param source    плотный дата-граф
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций, как у {@link #getAllPatterns(int[][], int[][], boolean)}
+     */
+    public static List<CombinatoricsData> getAllPatterns(DenseGraph source, int[][] pattern, boolean hardCheck) {
+        return getAllPatterns(source.getSize(), source::getSubMatrix, pattern, hardCheck);
+    }
+
+    /**
+     * Поиск изоморфных подграфов полным перебором
+     *
+     * @param size      кол-во вершин дата-графа
+     * @param subMatrix функция получения подматрицы дата-графа по комбинации
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций точек из источника
+     */
+    private static List<CombinatoricsData> getAllPatterns(
+            int size, Function<int[], int[][]> subMatrix, int[][] pattern, boolean hardCheck
+    ) {
         // множество найденных паттернов
         List<CombinatoricsData> res = new ArrayList<>();
         // перебираем все возрастающие комбинации
-        Combinatorics.combine(source.length, pattern.length, c -> {
-            // для каждой из них получаем матрицу из дата-графа по этой комбинации
-            int[][] subMatrix = Combinatorics.getSubMatrix(source, c);
-            // находим все перестановки, которые связывают паттерн
-            // и составленную подматрицу
-            Set<CombinatoricsData> ps = getAllIsomorphicPermutations(subMatrix, pattern, hardCheck);
-            // для каждой найденной перестановки
-            for (CombinatoricsData p : ps) {
-                // в множество добавляем переставленную комбинацию
-                // в соответствии с той, которая найдена при поиске изоморфных
-                // матриц
-                res.add(Combinatorics.makePermute(c, Combinatorics.getReversePermutation(p.getData())));
-            }
-        });
+        Combinatorics.combine(size, pattern.length, c -> addPatterns(c, subMatrix, pattern, hardCheck, res));
 
         // возвращаем множество найденных паттернов
         return res;
     }
 
+    /**
+     * Поиск изоморфных подграфов полным перебором в несколько потоков:
+     * возрастающие комбинации делятся на части с одинаковым кол-вом
+     * комбинаций по их номерам, см. {@link Combinatorics#spliterator(int, int)}
+     *
+     * @param source    матрица-источник
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return список комбинаций, множество которых совпадает с результатом
+     * {@link #getAllPatterns(int[][], int[][], boolean)}; возрастающие
+     * комбинации перебираются в порядке их номеров
+     */
+    public static List<CombinatoricsData> getAllPatternsParallel(int[][] source, int[][] pattern, boolean hardCheck) {
+        if (pattern.length > source.length)
+            throw new AssertionError("размер массива: " + source.length + " количество элементов " + pattern.length);
+        return Combinatorics.stream(source.length, pattern.length, true)
+                .flatMap(c -> {
+                    List<CombinatoricsData> res = new ArrayList<>();
+                    addPatterns(c, s -> Combinatorics.getSubMatrix(source, s), pattern, hardCheck, res);
+                    return res.stream();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Добавить в список все комбинации, которые получаются перестановкой
+     * возрастающей комбинации и соответствуют паттерну
+     *
+     * @param c         возрастающая комбинация
+     * @param subMatrix функция получения подматрицы дата-графа по комбинации
+     * @param pattern   искомый паттерн
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param res       список найденных комбинаций
+     */
+    private static void addPatterns(
+            int[] c, Function<int[], int[][]> subMatrix, int[][] pattern, boolean hardCheck,
+            List<CombinatoricsData> res
+    ) {
+        // для комбинации получаем матрицу из дата-графа
+        int[][] sub = subMatrix.apply(c);
+        // находим все перестановки, которые связывают паттерн
+        // и составленную подматрицу
+        Set<CombinatoricsData> ps = getAllIsomorphicPermutations(sub, pattern, hardCheck);
+        // для каждой найденной перестановки
+        for (CombinatoricsData p : ps) {
+            // в множество добавляем переставленную комбинацию
+            // в соответствии с той, которая найдена при поиске изоморфных
+            // матриц
+            res.add(Combinatorics.makePermute(c, Combinatorics.getReversePermutation(p.getData())));
+        }
+    }
 
     /**
      * Поиск всех перестановок исходной матрицы таких, что переставленная матрица совпадает
      * с целевой. Перестановка - это просто последовательность индексов всех вершин,
-     * составляя по которым новую матрицу, мы получим целевую
+     * составляя по которым новую матрицу, мы получим целевую. Перестановка строится
+     * по одному элементу, и частичная перестановка отбрасывается на первом
+     * несовпавшем элементе, а матрицы, которые заведомо не совпадают по степеням
+     * вершин или по набору значений элементов, отбрасываются без перебора
      *
      * @param source    матрица-источник
      * @param target    целевая матрица
@@ -74,15 +145,163 @@ public class PatternResolver {
 
         // множество подходящих перестановок
         Set<CombinatoricsData> ps = new HashSet<>();
+        // если матрицы заведомо не совпадают, перебирать перестановки не нужно
+        if (!canMatch(source, target, sourceSum, targetSum, hardCheck))
+            return ps;
         // запускаем перебор перестановок
-        Combinatorics.generatePermutations(target.length, p -> {
-                    if (arePermutatedEquals(p, source, target, sourceSum, targetSum, hardCheck))
-                        ps.add(new CombinatoricsData(p.clone()));
-                }
+        findPermutationsStep(
+                new int[target.length], new boolean[target.length], 0, source, target,
+                sourceSum, targetSum, hardCheck, ps
         );
         return ps;
     }
 
+    /**
+     * Шаг перебора перестановок: первые `pos` элементов перестановки
+     * уже выбраны, и все элементы матриц между ними совпадают
+     *
+     * @param p         текущая перестановка
+     * @param used      флаги, использована ли вершина матрицы-источника
+     * @param pos       кол-во выбранных элементов перестановки
+     * @param source    матрица-источник
+     * @param target    матрица-цель
+     * @param sourceSum степени вершин у графа-источника
+     * @param targetSum степени вершин у графа-цели
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @param ps        множество подходящих перестановок
+     */
+    private static void findPermutationsStep(
+            int[] p, boolean[] used, int pos, int[][] source, int[][] target, int[] sourceSum, int[] targetSum,
+            boolean hardCheck, Set<CombinatoricsData> ps
+    ) {
+        // если перестановка собрана, то она подходит
+        if (pos == p.length) {
+            ps.add(new CombinatoricsData(p.clone()));
+            return;
+        }
+        // перебираем ещё не использованные вершины матрицы-источника
+        for (int v = 0; v < p.length; v++) {
+            // если вершина уже использована или её степень меньше степени
+            // вершины цели (каждому ненулевому элементу цели должен
+            // соответствовать ненулевой элемент источника)
+            if (used[v] || sourceSum[v] < targetSum[pos])
+                continue;
+            p[pos] = v;
+            // если новые элементы переставленной матрицы не совпадают с целевой
+            if (!arePermutatedEquals(p, pos, source, target, hardCheck))
+                continue;
+            // выбираем вершину и переходим к следующему элементу перестановки
+            used[v] = true;
+            findPermutationsStep(p, used, pos + 1, source, target, sourceSum, targetSum, hardCheck, ps);
+            used[v] = false;
+        }
+    }
+
+    /**
+     * Проверка новых элементов переставленной подматрицы на равенство целевой матрице:
+     * проверяются элементы строки и столбца `pos` с индексами не больше `pos`,
+     * остальные элементы первых `pos` строк и столбцов уже проверены.
+     * Каждому ненулевому элементу образца должен соответствовать такой же
+     * элемент в переставленной матрице, а в случае жёсткой проверки и каждому нулевому
+     *
+     * @param p         частичная перестановка
+     * @param pos       индекс последнего выбранного элемента перестановки
+     * @param source    матрица-источник
+     * @param target    матрица-цель
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return флаг, совпадают ли новые элементы
+     */
+    private static boolean arePermutatedEquals(int[] p, int pos, int[][] source, int[][] target, boolean hardCheck) {
+        // перебираем уже выбранные вершины, включая новую
+        for (int i = 0; i <= pos; i++) {
+            // элемент строки новой вершины
+            if ((hardCheck || target[pos][i] != 0) && target[pos][i] != source[p[pos]][p[i]])
+                return false;
+            // элемент столбца новой вершины
+            if ((hardCheck || target[i][pos] != 0) && target[i][pos] != source[p[i]][p[pos]])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Проверка, может ли хоть одна перестановка матрицы-источника совпасть с целевой:
+     * переставленная матрица состоит из тех же элементов, диагональные элементы
+     * остаются на диагонали, а степени вершин переставляются вместе с вершинами.
+     * Поэтому при жёсткой проверке должны совпадать отсортированные степени вершин
+     * и наборы значений диагональных и недиагональных элементов, а при нежёсткой
+     * отсортированные степени источника должны быть не меньше степеней цели,
+     * а каждое ненулевое значение цели должно встречаться в источнике
+     * не реже, чем в цели
+     *
+     * @param source    матрица-источник
+     * @param target    матрица-цель
+     * @param sourceSum степени вершин у графа-источника
+     * @param targetSum степени вершин у графа-цели
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @return флаг, может ли перестановка совпасть с целевой матрицей
+     */
+    private static boolean canMatch(
+            int[][] source, int[][] target, int[] sourceSum, int[] targetSum, boolean hardCheck
+    ) {
+        // сравниваем отсортированные степени вершин
+        int[] sortedSource = sourceSum.clone();
+        int[] sortedTarget = targetSum.clone();
+        Arrays.sort(sortedSource);
+        Arrays.sort(sortedTarget);
+        for (int i = 0; i < sortedTarget.length; i++)
+            if (hardCheck ? sortedSource[i] != sortedTarget[i] : sortedSource[i] < sortedTarget[i])
+                return false;
+
+        // сравниваем наборы значений диагональных и недиагональных элементов
+        return containsValues(getValues(source, true, true), getValues(target, true, hardCheck), hardCheck) &&
+                containsValues(getValues(source, false, true), getValues(target, false, hardCheck), hardCheck);
+    }
+
+    /**
+     * Получить отсортированные значения элементов матрицы
+     *
+     * @param matrix   матрица
+     * @param diagonal флаг, нужны ли диагональные элементы; если `false`, то нужны недиагональные
+     * @param zeros    флаг, нужны ли нулевые элементы
+     * @return отсортированный массив значений
+     */
+    private static int[] getValues(int[][] matrix, boolean diagonal, boolean zeros) {
+        int[] values = new int[diagonal ? matrix.length : matrix.length * (matrix.length - 1)];
+        int cnt = 0;
+        for (int i = 0; i < matrix.length; i++)
+            for (int j = 0; j < matrix.length; j++)
+                if ((i == j) == diagonal && (zeros || matrix[i][j] != 0))
+                    values[cnt++] = matrix[i][j];
+        values = Arrays.copyOf(values, cnt);
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Проверка, что отсортированный набор значений содержит другой
+     *
+     * @param all   отсортированный набор значений источника
+     * @param part  отсортированный набор значений цели
+     * @param equal флаг, должны ли наборы совпадать
+     * @return флаг, содержит ли `all` все значения `part` с учётом повторений
+     */
+    private static boolean containsValues(int[] all, int[] part, boolean equal) {
+        if (equal)
+            return Arrays.equals(all, part);
+        // идём по обоим наборам одновременно
+        int j = 0;
+        for (int value : part) {
+            // пропускаем значения источника, которых нет в цели
+            while (j < all.length && all[j] < value)
+                j++;
+            if (j == all.length || all[j] != value)
+                return false;
+            j++;
+        }
+        return true;
+    }
+
     /**
      * Получить массив степеней вершин
      *
@@ -109,51 +328,4 @@ public class PatternResolver {
         return powers;
     }
 
-
-    /**
-     * Проверка переставленной подматрицы на равенство целевой матрице;
-     * Этот метод проверяет, что каждому ненулевому элементу образца
-     * должен соответствовать ненулевой элемент в переставленной матрице.
-     * В случае жёсткой проверки каждому нулевому элементу целевой матрицы должен
-     * соответствовать нулевой элемент переставленной матрицы
-     *
-     * @param p         перестановка
-     * @param source    матрица-источник
-     * @param target    матрица-цель
-     * @param sourceSum степени вершин у графа-источника
-     * @param targetSum степени вершин у графа-цели
-     * @param hardCheck флаг, нужна ли жёсткая проверка
-     * @return флаг, является ли одна матрица перестановкой другой
-     */
-    private static boolean arePermutatedEquals(
-            int[] p, int[][] source, int[][] target, int[] sourceSum, int[] targetSum,
-            boolean hardCheck
-    ) {
-        // проверяем, что у графов совпадают степени вершин
-        for (int i = 0; i < targetSum.length; i++)
-            // или её степень меньше степени в паттерне
-            if (hardCheck && sourceSum[p[i]] < targetSum[i])
-                return false;
-
-        // перебираем все вершины
-        for (int i = 0; i < target.length; i++)
-            // снова перебираем все вершины
-            for (int j = 0; j < target.length; j++) {
-                // если проверка жёсткая и элемент из переставленной не совпадает с соответствующим
-                // элементом из целевой матрицы
-                if (hardCheck && target[i][j] != source[p[i]][p[j]])
-                    // возвращаем флаг, что матрицы не равны
-                    return false;
-                // если проверка нежёсткая, элемент целевой матрицы не равен 0
-                // и при этом элемент из переставленной не совпадает с соответствующим
-                // элементом из целевой матрицы
-                if (!hardCheck && target[i][j] != 0 && target[i][j] != source[p[i]][p[j]])
-                    // возвращаем флаг, что матрицы не равны
-                    return false;
-            }
-        // если не встречено неравных элементов, то возвращаем флаг, что матрицы равны
-        return true;
-    }
-
-
 }
@@ -0,0 +1,136 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Задача параллельного поиска паттерна в поддереве перебора,
+ * заданном префиксом комбинации
+ */
+class PatternSearchTask extends RecursiveTask<List<CombinatoricsData>> {
+    /**
+     * Версия сериализации
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Глубина, до которой поддеревья делятся всегда
+     */
+    private static final int FORCED_SPLIT_DEPTH = 2;
+    /**
+     * Максимальное кол-во задач в очереди текущего потока, при котором
+     * поддерево ещё делится на подзадачи; если задач больше, значит
+     * остальные потоки заняты, и делить дальше нет смысла
+     */
+    private static final int SURPLUS_THRESHOLD = 3;
+
+    /**
+     * дата-граф
+     */
+    private final DenseGraph source;
+    /**
+     * подготовленный паттерн
+     */
+    private final CompiledPattern pattern;
+    /**
+     * собственные множества кандидатов задачи, построенные для префикса
+     */
+    private final CandidateDomains domains;
+    /**
+     * собственный массив комбинации задачи, первые `cnt` элементов
+     * которого заданы префиксом
+     */
+    private final int[] combination;
+    /**
+     * кол-во элементов префикса
+     */
+    private final int cnt;
+
+    /**
+     * Конструктор
+     *
+     * @param source      дата-граф
+     * @param pattern     подготовленный паттерн
+     * @param domains     множества кандидатов, построенные для префикса
+     * @param combination массив комбинации с заполненным префиксом
+     * @param cnt         кол-во элементов префикса
+     */
+    PatternSearchTask(
+            DenseGraph source, CompiledPattern pattern, CandidateDomains domains, int[] combination, int cnt
+    ) {
+        this.source = source;
+        this.pattern = pattern;
+        this.domains = domains;
+        this.combination = combination;
+        this.cnt = cnt;
+    }
+
+    /**
+     * Поиск паттерна в поддереве
+     *
+     * @return список найденных комбинаций
+     */
+    @Override
+    protected List<CombinatoricsData> compute() {
+        // если комбинация уже составлена или поддерево делить не нужно
+        if (cnt == pattern.getSize() || !needSplit())
+            // перебираем поддерево последовательно
+            return computeSequentially();
+
+        // подзадачи для каждой подходящей вершины следующей позиции
+        List<PatternSearchTask> tasks = new ArrayList<>();
+        for (int i = domains.next(cnt, 0); i >= 0; i = domains.next(cnt, i + 1)) {
+            // каждая подзадача получает собственную копию комбинации
+            int[] subCombination = combination.clone();
+            subCombination[cnt] = i;
+            // если новые элементы не совпадают с паттерном или у следующих
+            // позиций не осталось кандидатов, подзадача не нужна
+            if (!FastPatternResolver.checkMatrixEdge(source, pattern, subCombination, cnt + 1)
+                    || !domains.assign(cnt, i))
+                continue;
+            // и собственную копию множеств кандидатов
+            tasks.add(new PatternSearchTask(source, pattern, domains.copy(cnt + 1), subCombination, cnt + 1));
+        }
+        // запускаем подзадачи
+        invokeAll(tasks);
+
+        // собираем результаты в том же порядке, в котором их
+        // нашёл бы последовательный перебор
+        List<CombinatoricsData> res = new ArrayList<>();
+        for (PatternSearchTask task : tasks)
+            res.addAll(task.join());
+        return res;
+    }
+
+    /**
+     * Нужно ли делить поддерево на подзадачи
+     *
+     * @return флаг, нужно ли делить поддерево
+     */
+    private boolean needSplit() {
+        // последний уровень не делим: на нём нет рекурсии
+        if (cnt >= pattern.getSize() - 1)
+            return false;
+        // первые уровни делим всегда, более глубокие - только если
+        // у потоков пула заканчивается работа (дерево несбалансировано)
+        return cnt < FORCED_SPLIT_DEPTH || getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD;
+    }
+
+    /**
+     * Последовательный перебор поддерева
+     *
+     * @return список найденных комбинаций
+     */
+    private List<CombinatoricsData> computeSequentially() {
+        List<CombinatoricsData> res = new ArrayList<>();
+        // запускаем рекурсию с собственными множествами кандидатов и комбинацией,
+        // найденные комбинации переводим к индексам исходного паттерна
+        FastPatternResolver.findPatternStep(
+                c -> res.add(new CombinatoricsData(pattern.restore(c))), domains, source, pattern, cnt, combination
+        );
+        return res;
+    }
+}
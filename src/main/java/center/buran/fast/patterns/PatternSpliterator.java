@@ -0,0 +1,187 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.DenseGraph;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Ленивый перебор найденных комбинаций; в отличие от рекурсивного
+ * шага поиска, состояние перебора хранится в массивах курсоров по
+ * каждой позиции паттерна, поэтому перебор можно прервать после
+ * любой найденной комбинации и продолжить при следующем запросе
+ */
+class PatternSpliterator implements Spliterator<int[]> {
+    /**
+     * дата-граф
+     */
+    private final DenseGraph source;
+    /**
+     * подготовленный паттерн
+     */
+    private final CompiledPattern pattern;
+    /**
+     * множества вершин-кандидатов для позиций паттерна
+     */
+    private final CandidateDomains domains;
+    /**
+     * текущая комбинация
+     */
+    private final int[] combination;
+    /**
+     * следующая вершина-кандидат для каждой позиции паттерна
+     */
+    private final int[] cursor;
+    /**
+     * граница (не включительно) перебора кандидатов для каждой позиции паттерна
+     */
+    private final int[] bound;
+    /**
+     * кол-во позиций, значения которых зафиксированы и не перебираются
+     */
+    private int base;
+    /**
+     * позиция, для которой сейчас перебираются кандидаты
+     */
+    private int depth;
+    /**
+     * оценка кол-ва оставшихся комбинаций
+     */
+    private long est;
+
+    /**
+     * Конструктор перебора всего дерева
+     *
+     * @param source  дата-граф
+     * @param pattern подготовленный паттерн
+     * @param domains множества вершин-кандидатов для позиций паттерна
+     */
+    PatternSpliterator(DenseGraph source, CompiledPattern pattern, CandidateDomains domains) {
+        this.source = source;
+        this.pattern = pattern;
+        this.domains = domains;
+        this.combination = new int[pattern.getSize()];
+        this.cursor = new int[pattern.getSize()];
+        this.bound = new int[pattern.getSize()];
+        this.bound[0] = source.getSize();
+        this.est = Long.MAX_VALUE;
+    }
+
+    /**
+     * Конструктор копии
+     *
+     * @param other копируемый перебор
+     */
+    private PatternSpliterator(PatternSpliterator other) {
+        this.source = other.source;
+        this.pattern = other.pattern;
+        this.domains = other.domains.copy(other.base);
+        this.combination = other.combination.clone();
+        this.cursor = other.cursor.clone();
+        this.bound = other.bound.clone();
+        this.base = other.base;
+        this.depth = other.depth;
+        this.est = other.est;
+    }
+
+    /**
+     * Найти следующую комбинацию и передать её обработчику
+     *
+     * @param action обработчик найденной комбинации
+     * @return флаг, была ли найдена комбинация
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+        // пока не перебраны кандидаты для всех незафиксированных позиций
+        while (depth >= base) {
+            // берём следующего кандидата текущей позиции
+            int i = domains.next(depth, cursor[depth]);
+            // если кандидаты для текущей позиции закончились
+            if (i < 0 || i >= bound[depth]) {
+                // возвращаемся к предыдущей позиции
+                depth--;
+                continue;
+            }
+            cursor[depth] = i + 1;
+            // добавляем индекс точки в комбинацию
+            combination[depth] = i;
+            // если новые элементы подматрицы не совпадают с паттерном
+            if (!FastPatternResolver.checkMatrixEdge(source, pattern, combination, depth + 1))
+                continue;
+            // если получено нужное кол-во элементов комбинации
+            if (depth == pattern.getSize() - 1) {
+                // обрабатываем её в индексах исходного паттерна;
+                // перебор продолжится со следующего кандидата
+                action.accept(pattern.restore(combination));
+                return true;
+            }
+            // если у какой-то из следующих позиций не осталось кандидатов
+            if (!domains.assign(depth, i))
+                continue;
+            // переходим к следующей позиции
+            depth++;
+            cursor[depth] = 0;
+            bound[depth] = source.getSize();
+        }
+        return false;
+    }
+
+    /**
+     * Отделить часть перебора; берётся самая верхняя позиция, у которой
+     * остались ещё не начатые кандидаты; отделяется уже начатое поддерево
+     * вместе с первой половиной этих кандидатов, а этот объект продолжает
+     * перебор со второй половины
+     *
+     * @return отделённый перебор или `null`, если делить нечего
+     */
+    @Override
+    public Spliterator<int[]> trySplit() {
+        // ищем самую верхнюю позицию, у которой остались кандидаты;
+        // у всех позиций выше неё кандидатов нет, поэтому после её
+        // второй половины в порядке перебора ничего не останется
+        int d = base;
+        while (d <= depth && bound[d] <= cursor[d])
+            d++;
+        if (d > depth)
+            return null;
+        int rest = bound[d] - cursor[d];
+        // у текущей позиции нет начатого поддерева, поэтому
+        // один оставшийся кандидат делить не на что
+        if (d == depth && rest < 2)
+            return null;
+
+        int mid = cursor[d] + rest / 2;
+        est >>>= 1;
+        // первая половина вместе с уже начатым поддеревом уходит в копию
+        PatternSpliterator prefix = new PatternSpliterator(this);
+        prefix.bound[d] = mid;
+
+        // этот объект перебирает вторую половину кандидатов позиции `d`,
+        // позиции выше `d` становятся зафиксированными; множества кандидатов
+        // уровня `d` при выборе вершин более глубоких позиций не меняются
+        base = d;
+        depth = d;
+        cursor[d] = mid;
+        return prefix;
+    }
+
+    /**
+     * Оценка кол-ва оставшихся комбинаций
+     *
+     * @return оценка кол-ва оставшихся комбинаций
+     */
+    @Override
+    public long estimateSize() {
+        return est;
+    }
+
+    /**
+     * Характеристики перебора
+     *
+     * @return характеристики перебора
+     */
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,212 @@
+package center.buran.fast.patterns;
+
+import lombok.Getter;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Итеративный поиск паттерна с явным стеком: состояние перебора - это
+ * текущая глубина и кандидаты, выбранные на каждом уровне, поэтому перебор
+ * не расходует стек вызовов при любом размере паттерна и его можно
+ * остановить, сохранить в компактную контрольную точку и продолжить
+ * позже, в том числе в другом процессе. Множества кандидатов при
+ * восстановлении строятся заново повторным выбором сохранённых вершин,
+ * для этого нужно не больше `k` шагов. Комбинации перебираются в том
+ * же порядке, что и у {@link FastPatternResolver#getAllPatterns(SourceIndex, CompiledPattern)}.
+ * Объект не потокобезопасен
+ */
+public class SearchCursor {
+    /**
+     * Сигнатура контрольной точки: `JPSC`
+     */
+    private static final int MAGIC = 0x4A505343;
+    /**
+     * версия формата контрольной точки
+     */
+    private static final int VERSION = 1;
+    /**
+     * Индекс дата-графа
+     */
+    @Getter
+    private final SourceIndex index;
+    /**
+     * Подготовленный паттерн
+     */
+    @Getter
+    private final CompiledPattern pattern;
+    /**
+     * множества вершин-кандидатов для позиций паттерна
+     */
+    private final CandidateDomains domains;
+    /**
+     * кандидаты, выбранные на уровнях `0..depth`; -1 - кандидат
+     * уровня ещё не выбирался
+     */
+    private final int[] combination;
+    /**
+     * текущий уровень перебора; -1, если перебор закончен
+     */
+    private int depth;
+    /**
+     * Кол-во комбинаций, найденных с начала перебора, включая
+     * найденные до восстановления из контрольной точки
+     */
+    @Getter
+    private long matches;
+
+    /**
+     * Конструктор нового перебора
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     */
+    public SearchCursor(SourceIndex index, CompiledPattern pattern) {
+        FastPatternResolver.checkSize(index, pattern);
+        if (pattern.getSize() == 0)
+            throw new AssertionError("паттерн не должен быть пустым");
+        this.index = index;
+        this.pattern = pattern;
+        this.domains = new CandidateDomains(index, pattern, false);
+        this.combination = new int[pattern.getSize()];
+        Arrays.fill(combination, -1);
+        this.depth = 0;
+    }
+
+    /**
+     * Конструктор перебора, продолжающегося с контрольной точки; индекс
+     * должен быть построен по тому же дата-графу, что и при сохранении
+     *
+     * @param index      индекс дата-графа
+     * @param pattern    подготовленный паттерн
+     * @param checkpoint контрольная точка, полученная {@link #checkpoint()}
+     */
+    public SearchCursor(SourceIndex index, CompiledPattern pattern, byte[] checkpoint) {
+        this(index, pattern);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new AssertionError("данные не являются контрольной точкой поиска");
+            if (buffer.getInt() != index.getSize() || buffer.getInt() != pattern.getSize() ||
+                    (buffer.get() != 0) != pattern.isHardCheck() || buffer.getInt() != fingerprint(pattern))
+                throw new AssertionError("контрольная точка сохранена для другого дата-графа или паттерна");
+            matches = buffer.getLong();
+            depth = buffer.getInt();
+            if (depth < -1 || depth >= combination.length)
+                throw new AssertionError("недопустимая глубина перебора: " + depth);
+            for (int d = 0; d <= depth; d++) {
+                int v = buffer.getInt();
+                // кандидат последнего уровня мог ещё не выбираться
+                if (v < (d == depth ? -1 : 0) || v >= index.getSize())
+                    throw new AssertionError("недопустимый индекс вершины: " + v);
+                combination[d] = v;
+            }
+            if (buffer.hasRemaining())
+                throw new AssertionError("лишние данные в контрольной точке");
+        } catch (BufferUnderflowException e) {
+            throw new AssertionError("контрольная точка обрезана");
+        }
+        // восстанавливаем множества кандидатов уровней `1..depth`
+        for (int d = 0; d < depth; d++)
+            if (domains.next(d, combination[d]) != combination[d] ||
+                    !FastPatternResolver.checkMatrixEdge(index.getGraph(), pattern, combination, d + 1) ||
+                    !domains.assign(d, combination[d]))
+                throw new AssertionError("контрольная точка не соответствует дата-графу");
+    }
+
+    /**
+     * Перейти к следующей комбинации
+     *
+     * @return флаг, найдена ли комбинация; если `false`, перебор закончен
+     */
+    public boolean next() {
+        int k = combination.length;
+        while (depth >= 0) {
+            // следующий кандидат текущего уровня
+            int i = domains.next(depth, combination[depth] + 1);
+            if (i < 0) {
+                // кандидаты уровня закончились, возвращаемся на предыдущий
+                combination[depth--] = -1;
+                continue;
+            }
+            combination[depth] = i;
+            if (!FastPatternResolver.checkMatrixEdge(index.getGraph(), pattern, combination, depth + 1) ||
+                    !domains.assign(depth, i))
+                continue;
+            // комбинация собрана; следующий вызов продолжит с этого же уровня
+            if (depth + 1 == k) {
+                matches++;
+                return true;
+            }
+            depth++;
+        }
+        return false;
+    }
+
+    /**
+     * Получить текущую комбинацию, т.е. найденную последним вызовом {@link #next()}
+     *
+     * @return комбинация по вершинам исходного паттерна
+     */
+    public int[] get() {
+        if (depth + 1 != combination.length)
+            throw new AssertionError("текущей комбинации нет");
+        return pattern.restore(combination);
+    }
+
+    /**
+     * Найти следующие комбинации и добавить их в буфер
+     *
+     * @param max максимальное кол-во комбинаций
+     * @param out буфер комбинаций
+     * @return кол-во добавленных комбинаций; меньше `max`, только если перебор закончен
+     */
+    public int next(int max, MatchBuffer out) {
+        if (out.getWidth() != combination.length)
+            throw new AssertionError("размер комбинаций буфера " + out.getWidth() +
+                    " не равен размеру паттерна " + combination.length);
+        int[] order = pattern.getOrder();
+        int cnt = 0;
+        while (cnt < max && next()) {
+            out.addRestored(combination, order);
+            cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * Проверить, закончен ли перебор
+     *
+     * @return флаг, закончен ли перебор
+     */
+    public boolean isDone() {
+        return depth < 0;
+    }
+
+    /**
+     * Сохранить состояние перебора; перебор, продолжившийся с контрольной
+     * точки, начнёт с комбинации, следующей за текущей
+     *
+     * @return контрольная точка размером `33 + 4 * (depth + 1)` байт
+     */
+    public byte[] checkpoint() {
+        ByteBuffer buffer = ByteBuffer.allocate(33 + Integer.BYTES * (depth + 1));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(index.getSize()).putInt(combination.length)
+                .put((byte) (pattern.isHardCheck() ? 1 : 0)).putInt(fingerprint(pattern))
+                .putLong(matches).putInt(depth);
+        for (int d = 0; d <= depth; d++)
+            buffer.putInt(combination[d]);
+        return buffer.array();
+    }
+
+    /**
+     * Получить отпечаток паттерна для проверки контрольной точки
+     *
+     * @param pattern подготовленный паттерн
+     * @return хэш паттерна и порядка сопоставления
+     */
+    private static int fingerprint(CompiledPattern pattern) {
+        return Arrays.deepHashCode(pattern.getOrdered()) * 31 + Arrays.hashCode(pattern.getOrder());
+    }
+}
@@ -0,0 +1,46 @@
+package center.buran.fast.patterns;
+
+import jdk.jfr.*;
+
+/**
+ * Событие JFR со статистикой одной глубины перебора одного поиска;
+ * записывается только при поиске со статистикой {@link SearchStats}
+ */
+@Name("center.buran.fast.patterns.SearchDepth")
+@Label("Pattern Search Depth")
+@Category("Pattern Search")
+@Description("Статистика одной глубины дерева перебора")
+@StackTrace(false)
+class SearchDepthEvent extends Event {
+    /**
+     * позиция паттерна в порядке сопоставления
+     */
+    @Label("Depth")
+    int depth;
+    /**
+     * кол-во вершин, отброшенных фильтром по степеням до перебора
+     */
+    @Label("Filtered")
+    long filtered;
+    /**
+     * кол-во проверенных кандидатов
+     */
+    @Label("Nodes")
+    long nodes;
+    /**
+     * кол-во кандидатов, отброшенных проверкой рёбер
+     */
+    @Label("Edge Rejections")
+    long edgeRejections;
+    /**
+     * кол-во кандидатов, отброшенных после сужения множеств кандидатов
+     */
+    @Label("Domain Rejections")
+    long domainRejections;
+    /**
+     * время перебора на глубине вместе с более глубокими уровнями
+     */
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+}
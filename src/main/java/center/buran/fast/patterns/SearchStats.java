@@ -0,0 +1,249 @@
+package center.buran.fast.patterns;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Статистика дерева перебора по глубинам; собирается только если передана
+ * в поиск, для этого используется отдельный шаг перебора со счётчиками,
+ * поэтому обычный поиск статистикой не замедляется. Статистика нескольких
+ * поисков суммируется. Если запись JFR включена, статистика каждого поиска
+ * дополнительно записывается событиями {@link SearchDepthEvent}.
+ * Объект не потокобезопасен: один объект нельзя передавать в
+ * одновременно выполняющиеся поиски
+ */
+public class SearchStats {
+    /**
+     * Кол-во выполненных поисков
+     */
+    @Getter
+    private long searches;
+    /**
+     * Кол-во найденных комбинаций
+     */
+    @Getter
+    private long matches;
+    /**
+     * кол-во вершин, отброшенных для позиции фильтром по степеням,
+     * сигнатурам и диагональному элементу
+     */
+    private long[] filtered = new long[0];
+    /**
+     * кол-во проверенных кандидатов (узлов дерева перебора)
+     */
+    private long[] nodes = new long[0];
+    /**
+     * кол-во кандидатов, отброшенных проверкой рёбер
+     */
+    private long[] edgeRejections = new long[0];
+    /**
+     * кол-во кандидатов, после выбора которых у следующей позиции
+     * не осталось кандидатов
+     */
+    private long[] domainRejections = new long[0];
+    /**
+     * суммарное время перебора поддеревьев, начинающихся с позиции, в наносекундах
+     */
+    private long[] times = new long[0];
+
+    /**
+     * Получить кол-во позиций, для которых собрана статистика
+     *
+     * @return размер самого большого паттерна среди поисков
+     */
+    public int getDepth() {
+        return nodes.length;
+    }
+
+    /**
+     * Получить кол-во вершин, отброшенных для позиции до перебора
+     * фильтром по степеням, сигнатурам и диагональному элементу
+     *
+     * @param depth позиция паттерна в порядке сопоставления
+     * @return кол-во отброшенных вершин
+     */
+    public long getFiltered(int depth) {
+        return filtered[depth];
+    }
+
+    /**
+     * Получить кол-во проверенных кандидатов позиции
+     *
+     * @param depth позиция паттерна в порядке сопоставления
+     * @return кол-во узлов дерева перебора на этой глубине
+     */
+    public long getNodes(int depth) {
+        return nodes[depth];
+    }
+
+    /**
+     * Получить кол-во кандидатов позиции, отброшенных проверкой рёбер
+     * с уже выбранными вершинами
+     *
+     * @param depth позиция паттерна в порядке сопоставления
+     * @return кол-во отброшенных кандидатов
+     */
+    public long getEdgeRejections(int depth) {
+        return edgeRejections[depth];
+    }
+
+    /**
+     * Получить кол-во кандидатов позиции, после выбора которых у
+     * какой-то из следующих позиций не осталось кандидатов
+     *
+     * @param depth позиция паттерна в порядке сопоставления
+     * @return кол-во отброшенных кандидатов
+     */
+    public long getDomainRejections(int depth) {
+        return domainRejections[depth];
+    }
+
+    /**
+     * Получить время перебора на глубине вместе с более глубокими уровнями
+     *
+     * @param depth позиция паттерна в порядке сопоставления
+     * @return время в наносекундах
+     */
+    public long getTime(int depth) {
+        return times[depth];
+    }
+
+    /**
+     * Обнулить статистику
+     */
+    public void reset() {
+        searches = 0;
+        matches = 0;
+        filtered = new long[0];
+        nodes = new long[0];
+        edgeRejections = new long[0];
+        domainRejections = new long[0];
+        times = new long[0];
+    }
+
+    /**
+     * Подготовить статистику к поиску
+     *
+     * @param domains множества кандидатов поиска
+     * @param size    размер паттерна
+     */
+    void start(CandidateDomains domains, int size) {
+        grow(size);
+        searches++;
+        for (int d = 0; d < size; d++)
+            filtered[d] += domains.getSourceSize() - domains.getInitialSize(d);
+    }
+
+    /**
+     * Учесть проверенного кандидата
+     *
+     * @param depth позиция
+     */
+    void node(int depth) {
+        nodes[depth]++;
+    }
+
+    /**
+     * Учесть кандидата, отброшенного проверкой рёбер
+     *
+     * @param depth позиция
+     */
+    void edgeRejection(int depth) {
+        edgeRejections[depth]++;
+    }
+
+    /**
+     * Учесть кандидата, отброшенного после сужения множеств кандидатов
+     *
+     * @param depth позиция
+     */
+    void domainRejection(int depth) {
+        domainRejections[depth]++;
+    }
+
+    /**
+     * Учесть найденную комбинацию
+     */
+    void match() {
+        matches++;
+    }
+
+    /**
+     * Учесть время перебора
+     *
+     * @param depth позиция
+     * @param nanos время в наносекундах
+     */
+    void time(int depth, long nanos) {
+        times[depth] += nanos;
+    }
+
+    /**
+     * Добавить статистику другого поиска
+     *
+     * @param other статистика другого поиска
+     */
+    void add(SearchStats other) {
+        grow(other.nodes.length);
+        searches += other.searches;
+        matches += other.matches;
+        for (int d = 0; d < other.nodes.length; d++) {
+            filtered[d] += other.filtered[d];
+            nodes[d] += other.nodes[d];
+            edgeRejections[d] += other.edgeRejections[d];
+            domainRejections[d] += other.domainRejections[d];
+            times[d] += other.times[d];
+        }
+    }
+
+    /**
+     * Записать статистику событиями JFR, по одному на глубину
+     */
+    void commit() {
+        for (int d = 0; d < nodes.length; d++) {
+            SearchDepthEvent event = new SearchDepthEvent();
+            if (!event.shouldCommit())
+                return;
+            event.depth = d;
+            event.filtered = filtered[d];
+            event.nodes = nodes[d];
+            event.edgeRejections = edgeRejections[d];
+            event.domainRejections = domainRejections[d];
+            event.time = times[d];
+            event.commit();
+        }
+    }
+
+    /**
+     * Увеличить массивы до заданного кол-ва позиций
+     *
+     * @param size кол-во позиций
+     */
+    private void grow(int size) {
+        if (size <= nodes.length)
+            return;
+        filtered = Arrays.copyOf(filtered, size);
+        nodes = Arrays.copyOf(nodes, size);
+        edgeRejections = Arrays.copyOf(edgeRejections, size);
+        domainRejections = Arrays.copyOf(domainRejections, size);
+        times = Arrays.copyOf(times, size);
+    }
+
+    /**
+     * Таблица статистики по глубинам
+     *
+     * @return строковое представление статистики
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("searches: ").append(searches).append(", matches: ").append(matches).append('\n');
+        sb.append("depth\tfiltered\tnodes\tedge\tdomain\ttime, ms\n");
+        for (int d = 0; d < nodes.length; d++)
+            sb.append(d).append('\t').append(filtered[d]).append('\t').append(nodes[d]).append('\t')
+                    .append(edgeRejections[d]).append('\t').append(domainRejections[d]).append('\t')
+                    .append(times[d] / 1_000_000.0).append('\n');
+        return sb.toString();
+    }
+}
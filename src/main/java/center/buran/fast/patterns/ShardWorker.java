@@ -0,0 +1,202 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.GraphFile;
+
+import java.io.*;
+import java.nio.file.Paths;
+
+/**
+ * Рабочий процесс шардированного поиска, см. {@link ShardedSearch}.
+ * Запускается с путём к файлу плотного графа в формате {@link GraphFile}
+ * в качестве единственного аргумента, отображает граф в память и получает
+ * команды через стандартный ввод, а результаты отдаёт через стандартный
+ * вывод. Все числа передаются в формате {@link DataOutputStream}.
+ * <p>
+ * Команды:
+ * <pre>
+ * PATTERN k, k * k чисел паттерна, byte hardCheck - подготовить паттерн
+ * FIND    from, to - найти комбинации с первой позицией в [from, to)
+ * COUNT   from, to - подсчитать такие комбинации
+ * EXIT             - завершить процесс
+ * </pre>
+ * Ответ на FIND - порции из кол-ва комбинаций и самих комбинаций
+ * по `k` чисел, заканчивающиеся порцией нулевого размера; ответ на
+ * COUNT - одно число `long`. Если команда завершилась ошибкой,
+ * вместо ответа передаётся -1 и текст ошибки
+ */
+public class ShardWorker {
+    /**
+     * Команда подготовки паттерна
+     */
+    static final int PATTERN = 1;
+    /**
+     * Команда поиска комбинаций
+     */
+    static final int FIND = 2;
+    /**
+     * Команда подсчёта комбинаций
+     */
+    static final int COUNT = 3;
+    /**
+     * Команда завершения процесса
+     */
+    static final int EXIT = 0;
+    /**
+     * Признак ошибки в ответе
+     */
+    static final int ERROR = -1;
+    /**
+     * максимальное кол-во комбинаций в одной порции ответа
+     */
+    private static final int PORTION = 1024;
+
+    /**
+     * Точка входа рабочего процесса
+     *
+     * @param args путь к файлу плотного графа
+     * @throws IOException ошибка чтения графа или обмена с координатором
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1)
+            throw new AssertionError("нужен путь к файлу графа");
+        SourceIndex index = new SourceIndex(GraphFile.mapDense(Paths.get(args[0])));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        CompiledPattern pattern = null;
+        while (true) {
+            int command;
+            try {
+                command = in.readInt();
+            } catch (EOFException e) {
+                // координатор завершился, не отправив EXIT
+                return;
+            }
+            if (command == EXIT)
+                return;
+            try {
+                switch (command) {
+                    case PATTERN:
+                        pattern = readPattern(in);
+                        break;
+                    case FIND:
+                        find(index, pattern, in.readInt(), in.readInt(), out);
+                        break;
+                    case COUNT:
+                        out.writeLong(count(index, pattern, in.readInt(), in.readInt()));
+                        break;
+                    default:
+                        throw new AssertionError("неизвестная команда: " + command);
+                }
+            } catch (AssertionError | RuntimeException e) {
+                // часть ответа FIND могла уйти, но признак ошибки отрицательный
+                // и не путается с размером порции
+                out.writeInt(ERROR);
+                out.writeUTF(String.valueOf(e.getMessage()));
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Прочитать паттерн
+     *
+     * @param in входной поток
+     * @return подготовленный паттерн
+     * @throws IOException ошибка чтения
+     */
+    private static CompiledPattern readPattern(DataInputStream in) throws IOException {
+        int k = in.readInt();
+        int[][] matrix = new int[k][k];
+        for (int i = 0; i < k; i++)
+            for (int j = 0; j < k; j++)
+                matrix[i][j] = in.readInt();
+        return new CompiledPattern(matrix, in.readByte() != 0);
+    }
+
+    /**
+     * Найти комбинации диапазона и передать их порциями
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param from    первая вершина диапазона
+     * @param to      вершина, следующая за последней вершиной диапазона
+     * @param out     выходной поток
+     * @throws IOException ошибка записи
+     */
+    private static void find(SourceIndex index, CompiledPattern pattern, int from, int to, DataOutputStream out)
+            throws IOException {
+        checkPattern(pattern);
+        int k = pattern.getSize();
+        int[] order = pattern.getOrder();
+        MatchBuffer buffer = new MatchBuffer(k, PORTION * k);
+        IOException[] error = new IOException[1];
+        FastPatternResolver.runSearch(index, pattern, from, to, c -> {
+            buffer.addRestored(c, order);
+            if (buffer.getSize() < PORTION)
+                return true;
+            try {
+                writePortion(buffer, out);
+                return true;
+            } catch (IOException e) {
+                error[0] = e;
+                return false;
+            }
+        });
+        if (error[0] != null)
+            throw error[0];
+        if (buffer.getSize() > 0)
+            writePortion(buffer, out);
+        out.writeInt(0);
+    }
+
+    /**
+     * Подсчитать комбинации диапазона
+     *
+     * @param index   индекс дата-графа
+     * @param pattern подготовленный паттерн
+     * @param from    первая вершина диапазона
+     * @param to      вершина, следующая за последней вершиной диапазона
+     * @return кол-во комбинаций
+     */
+    private static long count(SourceIndex index, CompiledPattern pattern, int from, int to) {
+        checkPattern(pattern);
+        long[] cnt = new long[1];
+        FastPatternResolver.runSearch(index, pattern, from, to, c -> {
+            cnt[0]++;
+            return true;
+        });
+        return cnt[0];
+    }
+
+    /**
+     * Записать порцию комбинаций и очистить буфер
+     *
+     * @param buffer буфер комбинаций
+     * @param out    выходной поток
+     * @throws IOException ошибка записи
+     */
+    private static void writePortion(MatchBuffer buffer, DataOutputStream out) throws IOException {
+        out.writeInt(buffer.getSize());
+        for (int m = 0; m < buffer.getSize(); m++)
+            for (int i = 0; i < buffer.getWidth(); i++)
+                out.writeInt(buffer.get(m, i));
+        buffer.clear();
+    }
+
+    /**
+     * Проверить, что паттерн подготовлен
+     *
+     * @param pattern подготовленный паттерн
+     */
+    private static void checkPattern(CompiledPattern pattern) {
+        if (pattern == null)
+            throw new AssertionError("паттерн не передан");
+    }
+
+    /**
+     * Запрещённый конструктор
+     */
+    private ShardWorker() {
+        throw new AssertionError("Этот конструктор вызывать нельзя");
+    }
+}
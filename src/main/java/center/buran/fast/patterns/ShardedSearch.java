@@ -0,0 +1,319 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.GraphFile;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Координатор поиска в нескольких рабочих процессах {@link ShardWorker}
+ * на одной машине. Запрос делится на шарды по диапазонам вершин первой
+ * позиции переставленного паттерна, т.е. по внешнему циклу перебора.
+ * Шардов больше, чем процессов, и процесс, закончивший свой шард,
+ * сразу берёт следующий, поэтому процессы, которым достались лёгкие
+ * диапазоны, забирают оставшуюся работу у остальных. Результаты шардов
+ * собираются в порядке диапазонов, поэтому совпадают с результатом
+ * {@link FastPatternResolver#getAllPatterns(SourceIndex, CompiledPattern)}.
+ * Процессы запускаются один раз и обслуживают запросы, пока координатор
+ * не закрыт; граф каждый процесс отображает в память из общего файла
+ * в формате {@link GraphFile}. Запросы выполняются по одному
+ */
+public class ShardedSearch implements AutoCloseable {
+    /**
+     * Кол-во вершин дата-графа
+     */
+    @Getter
+    private final int size;
+    /**
+     * Кол-во шардов одного запроса
+     */
+    @Getter
+    private final int shardCount;
+    /**
+     * рабочие процессы
+     */
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * Рабочий процесс и каналы обмена с ним
+     */
+    private static class Worker {
+        /**
+         * процесс
+         */
+        private final Process process;
+        /**
+         * команды процессу
+         */
+        private final DataOutputStream out;
+        /**
+         * ответы процесса
+         */
+        private final DataInputStream in;
+
+        /**
+         * Конструктор
+         *
+         * @param process запущенный процесс
+         */
+        Worker(Process process) {
+            this.process = process;
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+    }
+
+    /**
+     * Обработчик одного шарда в потоке, обслуживающем рабочий процесс
+     */
+    @FunctionalInterface
+    private interface ShardHandler {
+        /**
+         * Выполнить шард
+         *
+         * @param worker рабочий процесс
+         * @param shard  номер шарда
+         * @param from   первая вершина диапазона
+         * @param to     вершина, следующая за последней вершиной диапазона
+         * @throws IOException ошибка обмена с процессом
+         */
+        void run(Worker worker, int shard, int from, int to) throws IOException;
+    }
+
+    /**
+     * Конструктор; процессы запускаются той же JVM с тем же classpath
+     *
+     * @param graphFile   файл плотного графа в формате {@link GraphFile}
+     * @param workerCount кол-во рабочих процессов
+     * @param shardCount  кол-во шардов одного запроса
+     * @throws IOException ошибка чтения графа или запуска процессов
+     */
+    public ShardedSearch(Path graphFile, int workerCount, int shardCount) throws IOException {
+        if (workerCount <= 0)
+            throw new AssertionError("кол-во процессов должно быть положительным: " + workerCount);
+        if (shardCount <= 0)
+            throw new AssertionError("кол-во шардов должно быть положительным: " + shardCount);
+        this.size = GraphFile.mapDense(graphFile).getSize();
+        this.shardCount = shardCount;
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                Process process = new ProcessBuilder(
+                        java, "-cp", System.getProperty("java.class.path"),
+                        ShardWorker.class.getName(), graphFile.toAbsolutePath().toString()
+                ).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                workers.add(new Worker(process));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Получить кол-во рабочих процессов
+     *
+     * @return кол-во процессов
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * Найти все комбинации
+     *
+     * @param pattern подготовленный паттерн
+     * @return список комбинаций в том же порядке, что и у
+     * {@link FastPatternResolver#getAllPatterns(SourceIndex, CompiledPattern)}
+     * @throws IOException ошибка обмена с процессами
+     */
+    public synchronized List<CombinatoricsData> getAllPatterns(CompiledPattern pattern) throws IOException {
+        List<List<CombinatoricsData>> results = new ArrayList<>();
+        for (int s = 0; s < shardCount; s++)
+            results.add(null);
+        int k = pattern.getSize();
+        run(pattern, (worker, shard, from, to) -> {
+            worker.out.writeInt(ShardWorker.FIND);
+            worker.out.writeInt(from);
+            worker.out.writeInt(to);
+            worker.out.flush();
+            List<CombinatoricsData> res = new ArrayList<>();
+            // порции комбинаций до порции нулевого размера
+            for (int cnt = readResponse(worker); cnt > 0; cnt = readResponse(worker))
+                for (int m = 0; m < cnt; m++) {
+                    int[] combination = new int[k];
+                    for (int i = 0; i < k; i++)
+                        combination[i] = worker.in.readInt();
+                    res.add(new CombinatoricsData(combination));
+                }
+            synchronized (results) {
+                results.set(shard, res);
+            }
+        });
+        // склеиваем результаты в порядке диапазонов
+        List<CombinatoricsData> res = new ArrayList<>();
+        for (List<CombinatoricsData> shardResult : results)
+            res.addAll(shardResult);
+        return res;
+    }
+
+    /**
+     * Подсчитать кол-во комбинаций
+     *
+     * @param pattern подготовленный паттерн
+     * @return кол-во комбинаций
+     * @throws IOException ошибка обмена с процессами
+     */
+    public synchronized long count(CompiledPattern pattern) throws IOException {
+        long[] total = new long[1];
+        run(pattern, (worker, shard, from, to) -> {
+            worker.out.writeInt(ShardWorker.COUNT);
+            worker.out.writeInt(from);
+            worker.out.writeInt(to);
+            worker.out.flush();
+            // у ответа COUNT признак ошибки - старшие 4 байта числа
+            int high = readResponse(worker);
+            long cnt = ((long) high << 32) | (worker.in.readInt() & 0xFFFFFFFFL);
+            synchronized (total) {
+                total[0] += cnt;
+            }
+        });
+        return total[0];
+    }
+
+    /**
+     * Завершить рабочие процессы
+     */
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            try {
+                worker.out.writeInt(ShardWorker.EXIT);
+                worker.out.flush();
+            } catch (IOException ignored) {
+                // процесс уже завершился
+            }
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.process.waitFor();
+            } catch (InterruptedException e) {
+                worker.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+    }
+
+    /**
+     * Выполнить запрос: передать паттерн всем процессам и раздать
+     * шарды; каждый процесс обслуживается своим потоком, который
+     * берёт следующий шард, как только закончен предыдущий
+     *
+     * @param pattern подготовленный паттерн
+     * @param handler обработчик шарда
+     * @throws IOException ошибка обмена с процессами
+     */
+    private void run(CompiledPattern pattern, ShardHandler handler) throws IOException {
+        if (pattern.getSize() > size)
+            throw new AssertionError("размер паттерна: " + pattern.getSize() + " превышает " +
+                    "размер дата-графа " + size);
+        if (workers.isEmpty())
+            throw new AssertionError("координатор закрыт");
+        int[][] matrix = pattern.getPattern();
+        AtomicInteger nextShard = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        Throwable[] error = new Throwable[1];
+        for (Worker worker : workers) {
+            Thread thread = new Thread(() -> {
+                try {
+                    writePattern(worker, matrix, pattern.isHardCheck());
+                    for (int s = nextShard.getAndIncrement(); s < shardCount; s = nextShard.getAndIncrement()) {
+                        // прекращаем раздачу, если другой поток уже получил ошибку
+                        synchronized (error) {
+                            if (error[0] != null)
+                                return;
+                        }
+                        handler.run(worker, s, getShardBegin(s), getShardBegin(s + 1));
+                    }
+                } catch (Throwable e) {
+                    synchronized (error) {
+                        if (error[0] == null)
+                            error[0] = e;
+                    }
+                }
+            }, "shard-coordinator-" + threads.size());
+            threads.add(thread);
+            thread.start();
+        }
+        // потоки дожидаемся даже после прерывания: иначе они продолжат
+        // обмен с процессами, и следующий запрос прочитает чужие ответы
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (error[0] instanceof IOException)
+            throw (IOException) error[0];
+        if (error[0] instanceof Error)
+            throw (Error) error[0];
+        if (error[0] != null)
+            throw new AssertionError(error[0]);
+    }
+
+    /**
+     * Получить первую вершину диапазона шарда; диапазоны делят
+     * вершины на почти равные части
+     *
+     * @param shard номер шарда, `shardCount` - конец последнего диапазона
+     * @return индекс вершины
+     */
+    private int getShardBegin(int shard) {
+        return (int) ((long) size * shard / shardCount);
+    }
+
+    /**
+     * Передать процессу паттерн
+     *
+     * @param worker    рабочий процесс
+     * @param matrix    матрица паттерна
+     * @param hardCheck флаг, нужна ли жёсткая проверка
+     * @throws IOException ошибка записи
+     */
+    private static void writePattern(Worker worker, int[][] matrix, boolean hardCheck) throws IOException {
+        worker.out.writeInt(ShardWorker.PATTERN);
+        worker.out.writeInt(matrix.length);
+        for (int[] row : matrix)
+            for (int value : row)
+                worker.out.writeInt(value);
+        worker.out.writeByte(hardCheck ? 1 : 0);
+    }
+
+    /**
+     * Прочитать первое число ответа, проверив признак ошибки
+     *
+     * @param worker рабочий процесс
+     * @return первое число ответа
+     * @throws IOException ошибка чтения или ошибка в процессе
+     */
+    private static int readResponse(Worker worker) throws IOException {
+        int value = worker.in.readInt();
+        if (value == ShardWorker.ERROR)
+            throw new IOException("ошибка в рабочем процессе: " + worker.in.readUTF());
+        return value;
+    }
+}
@@ -0,0 +1,337 @@
+package center.buran.fast.patterns;
+
+import center.buran.fast.patterns.graph.DenseGraph;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Индекс дата-графа: для каждой вершины хранятся полустепени исхода
+ * и захода, гистограммы значений исходящих и входящих рёбер и битовые
+ * маски соседей. Индекс строится один раз и после этого не меняется,
+ * поэтому его можно использовать из разных потоков для поиска
+ * любого кол-ва паттернов в одном и том же дата-графе
+ */
+public class SourceIndex {
+    /**
+     * Дата-граф
+     */
+    @Getter
+    private final DenseGraph graph;
+    /**
+     * полустепени исхода
+     */
+    private final int[] outDegrees;
+    /**
+     * полустепени захода
+     */
+    private final int[] inDegrees;
+    /**
+     * начала гистограмм исходящих рёбер, `n + 1` элементов
+     */
+    private final int[] outHistOffsets;
+    /**
+     * значения исходящих рёбер в гистограммах, по возрастанию внутри вершины
+     */
+    private final int[] outHistValues;
+    /**
+     * кол-ва исходящих рёбер с соответствующим значением
+     */
+    private final int[] outHistCounts;
+    /**
+     * начала гистограмм входящих рёбер, `n + 1` элементов
+     */
+    private final int[] inHistOffsets;
+    /**
+     * значения входящих рёбер в гистограммах, по возрастанию внутри вершины
+     */
+    private final int[] inHistValues;
+    /**
+     * кол-ва входящих рёбер с соответствующим значением
+     */
+    private final int[] inHistCounts;
+    /**
+     * маски концов исходящих рёбер каждой вершины
+     */
+    private final long[][] outBits;
+    /**
+     * маски начал входящих рёбер каждой вершины
+     */
+    private final long[][] inBits;
+
+    /**
+     * Конструктор; матрица связности копируется в плотный граф
+     *
+     * @param source матрица связности дата-графа
+     */
+    public SourceIndex(int[][] source) {
+        this(new DenseGraph(source));
+    }
+
+    /**
+     * Построить индекс для разового поиска: матрица связности не копируется,
+     * а читается через {@link DenseGraph#wrap(int[][])}, поэтому её нельзя
+     * менять до конца поиска
+     *
+     * @param source матрица связности дата-графа
+     * @return индекс над той же матрицей
+     */
+    static SourceIndex wrap(int[][] source) {
+        return new SourceIndex(DenseGraph.wrap(source));
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param graph дата-граф
+     */
+    public SourceIndex(DenseGraph graph) {
+        int n = graph.getSize();
+        int words = (n + 63) >>> 6;
+        this.graph = graph;
+        this.outDegrees = new int[n];
+        this.inDegrees = new int[n];
+        this.outBits = new long[n][words];
+        this.inBits = new long[n][words];
+
+        // полустепени и маски соседей
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                if (graph.get(i, j) != 0) {
+                    outBits[i][j >>> 6] |= 1L << j;
+                    inBits[j][i >>> 6] |= 1L << i;
+                    outDegrees[i]++;
+                    inDegrees[j]++;
+                }
+
+        // гистограммы значений рёбер; в каждой из них
+        // элементов не больше, чем рёбер в графе
+        int total = 0;
+        for (int d : outDegrees)
+            total += d;
+        outHistOffsets = new int[n + 1];
+        outHistValues = new int[total];
+        outHistCounts = new int[total];
+        inHistOffsets = new int[n + 1];
+        inHistValues = new int[total];
+        inHistCounts = new int[total];
+
+        int[] row = new int[n];
+        int outPos = 0;
+        int inPos = 0;
+        for (int v = 0; v < n; v++) {
+            // значения исходящих рёбер v-й вершины
+            int len = 0;
+            for (int j = 0; j < n; j++)
+                if (graph.get(v, j) != 0)
+                    row[len++] = graph.get(v, j);
+            outPos = putHistogram(row, len, outHistValues, outHistCounts, outPos);
+            outHistOffsets[v + 1] = outPos;
+
+            // значения входящих рёбер v-й вершины
+            len = 0;
+            for (int i = 0; i < n; i++)
+                if (graph.getReverse(v, i) != 0)
+                    row[len++] = graph.getReverse(v, i);
+            inPos = putHistogram(row, len, inHistValues, inHistCounts, inPos);
+            inHistOffsets[v + 1] = inPos;
+        }
+    }
+
+    /**
+     * Получить кол-во вершин
+     *
+     * @return кол-во вершин
+     */
+    public int getSize() {
+        return graph.getSize();
+    }
+
+    /**
+     * Получить полустепень исхода вершины
+     *
+     * @param v индекс вершины
+     * @return кол-во исходящих рёбер
+     */
+    public int getOutDegree(int v) {
+        return outDegrees[v];
+    }
+
+    /**
+     * Получить полустепень захода вершины
+     *
+     * @param v индекс вершины
+     * @return кол-во входящих рёбер
+     */
+    public int getInDegree(int v) {
+        return inDegrees[v];
+    }
+
+    /**
+     * Получить кол-во исходящих рёбер вершины с заданным значением
+     *
+     * @param v     индекс вершины
+     * @param value значение ребра
+     * @return кол-во исходящих рёбер с таким значением
+     */
+    public int getOutValueCount(int v, int value) {
+        return findCount(outHistValues, outHistCounts, outHistOffsets[v], outHistOffsets[v + 1], value);
+    }
+
+    /**
+     * Получить кол-во входящих рёбер вершины с заданным значением
+     *
+     * @param v     индекс вершины
+     * @param value значение ребра
+     * @return кол-во входящих рёбер с таким значением
+     */
+    public int getInValueCount(int v, int value) {
+        return findCount(inHistValues, inHistCounts, inHistOffsets[v], inHistOffsets[v + 1], value);
+    }
+
+    /**
+     * Проверить, что сигнатура вершины дата-графа доминирует над сигнатурой
+     * вершины паттерна: полустепени и кол-ва рёбер с каждым значением
+     * у вершины дата-графа не меньше, чем у вершины паттерна.
+     * Ненулевые рёбра паттерна при любом сопоставлении переходят
+     * в разные рёбра дата-графа с тем же значением, поэтому
+     * вершина без доминирующей сигнатуры кандидатом быть не может
+     *
+     * @param v         индекс вершины дата-графа
+     * @param signature сигнатура вершины паттерна
+     * @return флаг, доминирует ли сигнатура
+     */
+    public boolean dominates(int v, Signature signature) {
+        if (outDegrees[v] < signature.outDegree || inDegrees[v] < signature.inDegree)
+            return false;
+        for (int i = 0; i < signature.outValues.length; i++)
+            if (getOutValueCount(v, signature.outValues[i]) < signature.outCounts[i])
+                return false;
+        for (int i = 0; i < signature.inValues.length; i++)
+            if (getInValueCount(v, signature.inValues[i]) < signature.inCounts[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Получить маску концов исходящих рёбер вершины
+     *
+     * @param v индекс вершины
+     * @return маска соседей, изменять её нельзя
+     */
+    long[] getOutBits(int v) {
+        return outBits[v];
+    }
+
+    /**
+     * Получить маску начал входящих рёбер вершины
+     *
+     * @param v индекс вершины
+     * @return маска соседей, изменять её нельзя
+     */
+    long[] getInBits(int v) {
+        return inBits[v];
+    }
+
+    /**
+     * Записать гистограмму значений в массивы
+     *
+     * @param row    значения рёбер, массив переупорядочивается
+     * @param len    кол-во значений
+     * @param values массив значений гистограммы
+     * @param counts массив кол-в гистограммы
+     * @param pos    позиция, с которой нужно записывать
+     * @return позиция, следующая за записанной гистограммой
+     */
+    private static int putHistogram(int[] row, int len, int[] values, int[] counts, int pos) {
+        Arrays.sort(row, 0, len);
+        for (int i = 0; i < len; i++) {
+            if (i > 0 && row[i] == row[i - 1]) {
+                counts[pos - 1]++;
+            } else {
+                values[pos] = row[i];
+                counts[pos++] = 1;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Найти кол-во рёбер с заданным значением в гистограмме
+     *
+     * @param values значения гистограмм
+     * @param counts кол-ва гистограмм
+     * @param from   начало гистограммы
+     * @param to     конец гистограммы (не включительно)
+     * @param value  значение
+     * @return кол-во рёбер с этим значением
+     */
+    private static int findCount(int[] values, int[] counts, int from, int to, int value) {
+        int pos = Arrays.binarySearch(values, from, to, value);
+        return pos >= 0 ? counts[pos] : 0;
+    }
+
+    /**
+     * Сигнатура вершины паттерна: полустепени и гистограммы
+     * значений исходящих и входящих рёбер
+     */
+    public static class Signature {
+        /**
+         * полустепень исхода
+         */
+        private final int outDegree;
+        /**
+         * полустепень захода
+         */
+        private final int inDegree;
+        /**
+         * различные значения исходящих рёбер
+         */
+        private final int[] outValues;
+        /**
+         * кол-ва исходящих рёбер с соответствующим значением
+         */
+        private final int[] outCounts;
+        /**
+         * различные значения входящих рёбер
+         */
+        private final int[] inValues;
+        /**
+         * кол-ва входящих рёбер с соответствующим значением
+         */
+        private final int[] inCounts;
+
+        /**
+         * Конструктор
+         *
+         * @param pattern паттерн
+         * @param u       индекс вершины паттерна
+         */
+        public Signature(int[][] pattern, int u) {
+            int k = pattern.length;
+            // значения исходящих и входящих рёбер вершины
+            int[] out = new int[k];
+            int[] in = new int[k];
+            int outLen = 0;
+            int inLen = 0;
+            for (int j = 0; j < k; j++) {
+                if (pattern[u][j] != 0)
+                    out[outLen++] = pattern[u][j];
+                if (pattern[j][u] != 0)
+                    in[inLen++] = pattern[j][u];
+            }
+            this.outDegree = outLen;
+            this.inDegree = inLen;
+
+            // строим гистограммы и обрезаем массивы по их длине
+            int[] values = new int[k];
+            int[] counts = new int[k];
+            int len = putHistogram(out, outLen, values, counts, 0);
+            this.outValues = Arrays.copyOf(values, len);
+            this.outCounts = Arrays.copyOf(counts, len);
+            len = putHistogram(in, inLen, values, counts, 0);
+            this.inValues = Arrays.copyOf(values, len);
+            this.inCounts = Arrays.copyOf(counts, len);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package center.buran.fast.patterns.graph;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Плотный граф: матрица связности хранится одним непрерывным массивом
+ * по строкам, тип элементов (`byte`, `short` или `int`) выбирается
+ * по диапазону значений. Дополнительно хранится транспонированная
+ * копия, поэтому и строку, и столбец вершины можно читать подряд.
+ * Вместо массивов матрица может читаться из отображённого в память
+ * файла, см. {@link GraphFile}, или прямо из строк матрицы связности
+ * без копирования, см. {@link #wrap(int[][])}
+ */
+public class DenseGraph {
+    /**
+     * матрица хранится в массиве `byte`
+     */
+    private static final int BYTES = 0;
+    /**
+     * матрица хранится в массиве `short`
+     */
+    private static final int SHORTS = 1;
+    /**
+     * матрица хранится в массиве `int`
+     */
+    private static final int INTS = 2;
+    /**
+     * матрица читается из буфера с элементами `byte`
+     */
+    private static final int MAPPED_BYTES = 3;
+    /**
+     * матрица читается из буфера с элементами `short`
+     */
+    private static final int MAPPED_SHORTS = 4;
+    /**
+     * матрица читается из буфера с элементами `int`
+     */
+    private static final int MAPPED_INTS = 5;
+    /**
+     * матрица читается из строк исходного массива без копирования,
+     * транспонированной копии нет
+     */
+    private static final int ROWS = 6;
+
+    /**
+     * Кол-во вершин
+     */
+    @Getter
+    private final int size;
+    /**
+     * Размер элемента матрицы в байтах: 1, 2 или 4
+     */
+    @Getter
+    private final int width;
+    /**
+     * способ хранения матрицы, одна из констант `BYTES`, ..., `ROWS`
+     */
+    private final int layout;
+    /**
+     * матрица с элементами `byte`
+     */
+    private final byte[] bytes;
+    /**
+     * транспонированная матрица с элементами `byte`
+     */
+    private final byte[] bytesT;
+    /**
+     * матрица с элементами `short`
+     */
+    private final short[] shorts;
+    /**
+     * транспонированная матрица с элементами `short`
+     */
+    private final short[] shortsT;
+    /**
+     * матрица с элементами `int`
+     */
+    private final int[] ints;
+    /**
+     * транспонированная матрица с элементами `int`
+     */
+    private final int[] intsT;
+    /**
+     * буфер матрицы, если она читается из файла
+     */
+    private final ByteBuffer mapped;
+    /**
+     * буфер транспонированной матрицы; у симметричной матрицы совпадает с `mapped`
+     */
+    private final ByteBuffer mappedT;
+    /**
+     * строки исходной матрицы связности
+     */
+    private final int[][] rows;
+
+    /**
+     * Конструктор
+     *
+     * @param matrix матрица связности
+     */
+    public DenseGraph(int[][] matrix) {
+        this.size = matrix.length;
+        if ((long) size * size > Integer.MAX_VALUE)
+            throw new AssertionError("размер графа " + size + " слишком велик для плотного хранения");
+
+        // находим диапазон значений
+        int min = 0;
+        int max = 0;
+        for (int[] row : matrix) {
+            if (row.length != size)
+                throw new AssertionError("матрица связности должна быть квадратной");
+            for (int value : row) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+
+        // выбираем самый узкий подходящий тип
+        if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE)
+            width = Byte.BYTES;
+        else if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE)
+            width = Short.BYTES;
+        else
+            width = Integer.BYTES;
+        layout = width == Byte.BYTES ? BYTES : width == Short.BYTES ? SHORTS : INTS;
+        mapped = null;
+        mappedT = null;
+        rows = null;
+
+        int len = size * size;
+        bytes = width == Byte.BYTES ? new byte[len] : null;
+        bytesT = width == Byte.BYTES ? new byte[len] : null;
+        shorts = width == Short.BYTES ? new short[len] : null;
+        shortsT = width == Short.BYTES ? new short[len] : null;
+        ints = width == Integer.BYTES ? new int[len] : null;
+        intsT = width == Integer.BYTES ? new int[len] : null;
+
+        // заполняем матрицу и её транспонированную копию
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++) {
+                int p = i * size + j;
+                int t = j * size + i;
+                switch (width) {
+                    case Byte.BYTES:
+                        bytes[p] = (byte) matrix[i][j];
+                        bytesT[t] = (byte) matrix[i][j];
+                        break;
+                    case Short.BYTES:
+                        shorts[p] = (short) matrix[i][j];
+                        shortsT[t] = (short) matrix[i][j];
+                        break;
+                    default:
+                        ints[p] = matrix[i][j];
+                        intsT[t] = matrix[i][j];
+                }
+            }
+    }
+
+    /**
+     * Конструктор графа, матрица которого читается из буферов без копирования
+     *
+     * @param size    кол-во вершин
+     * @param width   размер элемента в байтах: 1, 2 или 4
+     * @param mapped  буфер матрицы по строкам
+     * @param mappedT буфер транспонированной матрицы
+     */
+    DenseGraph(int size, int width, ByteBuffer mapped, ByteBuffer mappedT) {
+        if ((long) size * size * width > Integer.MAX_VALUE)
+            throw new AssertionError("размер графа " + size + " слишком велик для плотного хранения");
+        this.size = size;
+        this.width = width;
+        switch (width) {
+            case Byte.BYTES:
+                layout = MAPPED_BYTES;
+                break;
+            case Short.BYTES:
+                layout = MAPPED_SHORTS;
+                break;
+            case Integer.BYTES:
+                layout = MAPPED_INTS;
+                break;
+            default:
+                throw new AssertionError("недопустимый размер элемента: " + width);
+        }
+        this.mapped = mapped;
+        this.mappedT = mappedT;
+        rows = null;
+        bytes = null;
+        bytesT = null;
+        shorts = null;
+        shortsT = null;
+        ints = null;
+        intsT = null;
+    }
+
+    /**
+     * Конструктор графа, матрица которого читается из строк без копирования
+     *
+     * @param size кол-во вершин
+     * @param rows строки квадратной матрицы связности
+     */
+    private DenseGraph(int size, int[][] rows) {
+        this.size = size;
+        for (int[] row : rows)
+            if (row.length != size)
+                throw new AssertionError("матрица связности должна быть квадратной");
+        this.width = Integer.BYTES;
+        this.layout = ROWS;
+        this.rows = rows;
+        mapped = null;
+        mappedT = null;
+        bytes = null;
+        bytesT = null;
+        shorts = null;
+        shortsT = null;
+        ints = null;
+        intsT = null;
+    }
+
+    /**
+     * Построить граф, читающий матрицу связности без копирования; памяти
+     * дополнительно не требуется, но столбцы читаются не подряд, поэтому
+     * такой граф подходит для разовых поисков. Матрицу нельзя менять,
+     * пока граф используется
+     *
+     * @param matrix квадратная матрица связности
+     * @return граф над той же матрицей
+     */
+    public static DenseGraph wrap(int[][] matrix) {
+        return new DenseGraph(matrix.length, matrix);
+    }
+
+    /**
+     * Получить значение ребра
+     *
+     * @param i начало ребра
+     * @param j конец ребра
+     * @return значение ребра или 0, если ребра нет
+     */
+    public int get(int i, int j) {
+        int p = i * size + j;
+        switch (layout) {
+            case BYTES:
+                return bytes[p];
+            case SHORTS:
+                return shorts[p];
+            case INTS:
+                return ints[p];
+            case MAPPED_BYTES:
+                return mapped.get(p);
+            case MAPPED_SHORTS:
+                return mapped.getShort(p << 1);
+            case ROWS:
+                return rows[i][j];
+            default:
+                return mapped.getInt(p << 2);
+        }
+    }
+
+    /**
+     * Получить значение обратного ребра из транспонированной копии;
+     * при переборе `j` читается строка `i` транспонированной матрицы,
+     * то есть столбец `i` исходной
+     *
+     * @param i конец ребра
+     * @param j начало ребра
+     * @return значение ребра от `j` к `i` или 0, если ребра нет
+     */
+    public int getReverse(int i, int j) {
+        int p = i * size + j;
+        switch (layout) {
+            case BYTES:
+                return bytesT[p];
+            case SHORTS:
+                return shortsT[p];
+            case INTS:
+                return intsT[p];
+            case MAPPED_BYTES:
+                return mappedT.get(p);
+            case MAPPED_SHORTS:
+                return mappedT.getShort(p << 1);
+            case ROWS:
+                return rows[j][i];
+            default:
+                return mappedT.getInt(p << 2);
+        }
+    }
+
+    /**
+     * Проверить, что элементы строки вершины (или столбца, если читается
+     * транспонированная копия) в столбцах `combination[positions[t]]` равны
+     * `values[t]`. Способ хранения выбирается один раз на вызов, а не на
+     * каждый элемент, как у {@link #get(int, int)}; элементы сравниваются
+     * без ветвлений исключающим ИЛИ, и результат проверяется раз на четыре
+     * элемента. Для отображённых в память матриц элементы читаются по одному
+     *
+     * @param i           вершина
+     * @param combination комбинация вершин
+     * @param positions   позиции комбинации, элементы которых проверяются
+     * @param values      ожидаемые значения элементов
+     * @param reverse     флаг, проверяется ли столбец вершины по транспонированной копии
+     * @return флаг, совпали ли все элементы
+     */
+    public boolean rowEquals(int i, int[] combination, int[] positions, int[] values, boolean reverse) {
+        int base = i * size;
+        int n = positions.length;
+        int t = 0;
+        int diff = 0;
+        switch (layout) {
+            case BYTES: {
+                byte[] m = reverse ? bytesT : bytes;
+                for (; t + 4 <= n; t += 4)
+                    if (((m[base + combination[positions[t]]] ^ values[t])
+                            | (m[base + combination[positions[t + 1]]] ^ values[t + 1])
+                            | (m[base + combination[positions[t + 2]]] ^ values[t + 2])
+                            | (m[base + combination[positions[t + 3]]] ^ values[t + 3])) != 0)
+                        return false;
+                for (; t < n; t++)
+                    diff |= m[base + combination[positions[t]]] ^ values[t];
+                return diff == 0;
+            }
+            case SHORTS: {
+                short[] m = reverse ? shortsT : shorts;
+                for (; t + 4 <= n; t += 4)
+                    if (((m[base + combination[positions[t]]] ^ values[t])
+                            | (m[base + combination[positions[t + 1]]] ^ values[t + 1])
+                            | (m[base + combination[positions[t + 2]]] ^ values[t + 2])
+                            | (m[base + combination[positions[t + 3]]] ^ values[t + 3])) != 0)
+                        return false;
+                for (; t < n; t++)
+                    diff |= m[base + combination[positions[t]]] ^ values[t];
+                return diff == 0;
+            }
+            case INTS: {
+                int[] m = reverse ? intsT : ints;
+                for (; t + 4 <= n; t += 4)
+                    if (((m[base + combination[positions[t]]] ^ values[t])
+                            | (m[base + combination[positions[t + 1]]] ^ values[t + 1])
+                            | (m[base + combination[positions[t + 2]]] ^ values[t + 2])
+                            | (m[base + combination[positions[t + 3]]] ^ values[t + 3])) != 0)
+                        return false;
+                for (; t < n; t++)
+                    diff |= m[base + combination[positions[t]]] ^ values[t];
+                return diff == 0;
+            }
+            case ROWS: {
+                if (reverse) {
+                    // транспонированной копии нет, столбец читается по строкам
+                    for (; t < n; t++)
+                        diff |= rows[combination[positions[t]]][i] ^ values[t];
+                    return diff == 0;
+                }
+                int[] row = rows[i];
+                for (; t + 4 <= n; t += 4)
+                    if (((row[combination[positions[t]]] ^ values[t])
+                            | (row[combination[positions[t + 1]]] ^ values[t + 1])
+                            | (row[combination[positions[t + 2]]] ^ values[t + 2])
+                            | (row[combination[positions[t + 3]]] ^ values[t + 3])) != 0)
+                        return false;
+                for (; t < n; t++)
+                    diff |= row[combination[positions[t]]] ^ values[t];
+                return diff == 0;
+            }
+            default:
+                for (; t < n; t++) {
+                    int j = combination[positions[t]];
+                    if ((reverse ? getReverse(i, j) : get(i, j)) != values[t])
+                        return false;
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Получить подматрицу по массиву используемых индексов
+     *
+     * @param select массив используемых индексов
+     * @return подматрица
+     */
+    public int[][] getSubMatrix(int[] select) {
+        int[][] res = new int[select.length][select.length];
+
+        for (int i = 0; i < select.length; i++)
+            for (int j = 0; j < select.length; j++)
+                res[i][j] = get(select[i], select[j]);
+
+        return res;
+    }
+}
@@ -0,0 +1,338 @@
+package center.buran.fast.patterns.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Двоичный формат файла графа и его чтение через отображение в память.
+ * Все числа записываются в порядке little-endian. Заголовок занимает
+ * {@link #HEADER_SIZE} байт:
+ * <pre>
+ * 0   int  MAGIC
+ * 4   int  VERSION
+ * 8   int  способ хранения: DENSE или CSR
+ * 12  int  размер элемента в байтах: 1, 2 или 4 (у CSR всегда 4)
+ * 16  int  1, если матрица симметрична, иначе 0
+ * 20  int  кол-во вершин n
+ * 24  long кол-во рёбер m (у DENSE - 0)
+ * </pre>
+ * За заголовком у DENSE лежит матрица по строкам, а если матрица
+ * несимметрична - ещё и транспонированная матрица. У CSR лежат массивы
+ * `outOffsets` (n + 1), `outTargets` (m) и `outValues` (m), а если
+ * матрица несимметрична - ещё `inOffsets`, `inSources` и `inValues`;
+ * у симметричной матрицы списки входящих рёбер совпадают с исходящими.
+ * При чтении файл не копируется в кучу: граф обращается к страницам файла
+ * через отображённые буферы, поэтому загрузка не зависит от размера графа,
+ * а граф может быть больше кучи. Каждый массив отображается отдельно,
+ * поэтому его размер не должен превышать 2 ГБ
+ */
+public class GraphFile {
+    /**
+     * Сигнатура файла: `JPGF`
+     */
+    public static final int MAGIC = 0x4A504746;
+    /**
+     * Версия формата
+     */
+    public static final int VERSION = 1;
+    /**
+     * Матрица связности по строкам
+     */
+    public static final int DENSE = 0;
+    /**
+     * Списки рёбер в формате CSR
+     */
+    public static final int CSR = 1;
+    /**
+     * Размер заголовка в байтах
+     */
+    public static final int HEADER_SIZE = 32;
+    /**
+     * размер буфера записи в байтах
+     */
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /**
+     * Записать плотный граф
+     *
+     * @param path  путь к файлу
+     * @param graph плотный граф
+     * @throws IOException ошибка записи
+     */
+    public static void write(Path path, DenseGraph graph) throws IOException {
+        int n = graph.getSize();
+        int width = graph.getWidth();
+        boolean symmetric = isSymmetric(graph);
+        try (FileChannel channel = openForWrite(path)) {
+            ByteBuffer buffer = newWriteBuffer();
+            putHeader(buffer, DENSE, width, symmetric, n, 0);
+            // матрица по строкам, затем транспонированная
+            for (int copy = 0; copy < (symmetric ? 1 : 2); copy++)
+                for (int i = 0; i < n; i++)
+                    for (int j = 0; j < n; j++) {
+                        if (buffer.remaining() < Integer.BYTES)
+                            flush(channel, buffer);
+                        int value = copy == 0 ? graph.get(i, j) : graph.getReverse(i, j);
+                        switch (width) {
+                            case Byte.BYTES:
+                                buffer.put((byte) value);
+                                break;
+                            case Short.BYTES:
+                                buffer.putShort((short) value);
+                                break;
+                            default:
+                                buffer.putInt(value);
+                        }
+                    }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Записать разреженный граф
+     *
+     * @param path  путь к файлу
+     * @param graph разреженный граф
+     * @throws IOException ошибка записи
+     */
+    public static void write(Path path, SparseGraph graph) throws IOException {
+        int n = graph.getSize();
+        int m = graph.getEdgeCount();
+        boolean symmetric = isSymmetric(graph);
+        try (FileChannel channel = openForWrite(path)) {
+            ByteBuffer buffer = newWriteBuffer();
+            putHeader(buffer, CSR, Integer.BYTES, symmetric, n, m);
+            for (int copy = 0; copy < (symmetric ? 1 : 2); copy++) {
+                boolean out = copy == 0;
+                // начала списков и общее кол-во рёбер в конце
+                for (int i = 0; i < n; i++)
+                    putInt(channel, buffer, out ? graph.getOutBegin(i) : graph.getInBegin(i));
+                putInt(channel, buffer, m);
+                // вершины на других концах рёбер
+                for (int e = 0; e < m; e++)
+                    putInt(channel, buffer, out ? graph.getOutTarget(e) : graph.getInSource(e));
+                // значения рёбер
+                for (int e = 0; e < m; e++)
+                    putInt(channel, buffer, out ? graph.getOutValue(e) : graph.getInValue(e));
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Отобразить в память файл плотного графа
+     *
+     * @param path путь к файлу
+     * @return плотный граф, который читает матрицу из файла
+     * @throws IOException ошибка чтения
+     */
+    public static DenseGraph mapDense(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, DENSE);
+            int width = header.getInt(12);
+            boolean symmetric = header.getInt(16) != 0;
+            int n = header.getInt(20);
+
+            long len = (long) n * n * width;
+            ByteBuffer matrix = map(channel, HEADER_SIZE, len);
+            ByteBuffer transposed = symmetric ? matrix : map(channel, HEADER_SIZE + len, len);
+            // после закрытия канала отображение остаётся действительным
+            return new DenseGraph(n, width, matrix, transposed);
+        }
+    }
+
+    /**
+     * Отобразить в память файл разреженного графа
+     *
+     * @param path путь к файлу
+     * @return разреженный граф, который читает массивы CSR из файла
+     * @throws IOException ошибка чтения
+     */
+    public static SparseGraph mapSparse(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, CSR);
+            if (header.getInt(12) != Integer.BYTES)
+                throw new AssertionError("недопустимый размер элемента CSR: " + header.getInt(12));
+            boolean symmetric = header.getInt(16) != 0;
+            int n = header.getInt(20);
+            long m = header.getLong(24);
+
+            long pos = HEADER_SIZE;
+            IntBuffer outOffsets = mapInts(channel, pos, n + 1);
+            pos += (n + 1) * (long) Integer.BYTES;
+            IntBuffer outTargets = mapInts(channel, pos, m);
+            pos += m * Integer.BYTES;
+            IntBuffer outValues = mapInts(channel, pos, m);
+            pos += m * Integer.BYTES;
+            if (symmetric)
+                return new SparseGraph(n, outOffsets, outTargets, outValues, outOffsets, outTargets, outValues);
+
+            IntBuffer inOffsets = mapInts(channel, pos, n + 1);
+            pos += (n + 1) * (long) Integer.BYTES;
+            IntBuffer inSources = mapInts(channel, pos, m);
+            pos += m * Integer.BYTES;
+            IntBuffer inValues = mapInts(channel, pos, m);
+            return new SparseGraph(n, outOffsets, outTargets, outValues, inOffsets, inSources, inValues);
+        }
+    }
+
+    /**
+     * Прочитать и проверить заголовок
+     *
+     * @param channel канал файла
+     * @param layout  ожидаемый способ хранения
+     * @return буфер заголовка
+     * @throws IOException ошибка чтения
+     */
+    private static ByteBuffer readHeader(FileChannel channel, int layout) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0)
+                throw new AssertionError("файл графа короче заголовка");
+        if (header.getInt(0) != MAGIC)
+            throw new AssertionError("файл не является файлом графа");
+        if (header.getInt(4) != VERSION)
+            throw new AssertionError("неподдерживаемая версия формата: " + header.getInt(4));
+        if (header.getInt(8) != layout)
+            throw new AssertionError("способ хранения " + header.getInt(8) + " не совпадает с ожидаемым " + layout);
+        return header;
+    }
+
+    /**
+     * Отобразить участок файла в память
+     *
+     * @param channel канал файла
+     * @param pos     начало участка
+     * @param len     длина участка в байтах
+     * @return буфер участка
+     * @throws IOException ошибка чтения
+     */
+    private static ByteBuffer map(FileChannel channel, long pos, long len) throws IOException {
+        if (len > Integer.MAX_VALUE)
+            throw new AssertionError("участок файла длиной " + len + " байт слишком велик для отображения");
+        if (pos + len > channel.size())
+            throw new AssertionError("файл графа короче, чем указано в заголовке");
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos, len).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Отобразить в память массив `int`
+     *
+     * @param channel канал файла
+     * @param pos     начало массива
+     * @param cnt     кол-во элементов
+     * @return буфер массива
+     * @throws IOException ошибка чтения
+     */
+    private static IntBuffer mapInts(FileChannel channel, long pos, long cnt) throws IOException {
+        return map(channel, pos, cnt * Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Проверить, симметрична ли матрица плотного графа
+     *
+     * @param graph плотный граф
+     * @return флаг, симметрична ли матрица
+     */
+    private static boolean isSymmetric(DenseGraph graph) {
+        for (int i = 0; i < graph.getSize(); i++)
+            for (int j = 0; j < i; j++)
+                if (graph.get(i, j) != graph.get(j, i))
+                    return false;
+        return true;
+    }
+
+    /**
+     * Проверить, симметрична ли матрица разреженного графа; списки
+     * отсортированы, поэтому у симметричной матрицы списки исходящих
+     * и входящих рёбер совпадают поэлементно
+     *
+     * @param graph разреженный граф
+     * @return флаг, симметрична ли матрица
+     */
+    private static boolean isSymmetric(SparseGraph graph) {
+        for (int i = 0; i < graph.getSize(); i++)
+            if (graph.getOutBegin(i) != graph.getInBegin(i))
+                return false;
+        for (int e = 0; e < graph.getEdgeCount(); e++)
+            if (graph.getOutTarget(e) != graph.getInSource(e) || graph.getOutValue(e) != graph.getInValue(e))
+                return false;
+        return true;
+    }
+
+    /**
+     * Записать заголовок в буфер
+     *
+     * @param buffer    буфер
+     * @param layout    способ хранения
+     * @param width     размер элемента
+     * @param symmetric флаг, симметрична ли матрица
+     * @param n         кол-во вершин
+     * @param m         кол-во рёбер
+     */
+    private static void putHeader(ByteBuffer buffer, int layout, int width, boolean symmetric, int n, long m) {
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(layout).putInt(width).putInt(symmetric ? 1 : 0)
+                .putInt(n).putLong(m);
+    }
+
+    /**
+     * Записать число в буфер, сбросив его в файл, если он заполнен
+     *
+     * @param channel канал файла
+     * @param buffer  буфер
+     * @param value   число
+     * @throws IOException ошибка записи
+     */
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES)
+            flush(channel, buffer);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Сбросить буфер в файл
+     *
+     * @param channel канал файла
+     * @param buffer  буфер
+     * @throws IOException ошибка записи
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Создать буфер записи
+     *
+     * @return буфер записи
+     */
+    private static ByteBuffer newWriteBuffer() {
+        return ByteBuffer.allocate(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Открыть файл для записи, обрезав его
+     *
+     * @param path путь к файлу
+     * @return канал файла
+     * @throws IOException ошибка открытия
+     */
+    private static FileChannel openForWrite(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Запрещённый конструктор
+     */
+    private GraphFile() {
+        throw new AssertionError("Этот конструктор вызывать нельзя");
+    }
+}
@@ -0,0 +1,447 @@
+package center.buran.fast.patterns.graph;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор больших случайных разреженных графов для нагрузочных тестов:
+ * рёбра накапливаются в хэш-таблице без матрицы связности, поэтому
+ * память и время линейны по кол-ву рёбер. Генератор детерминирован:
+ * при одинаковых начальном значении и последовательности вызовов
+ * получается один и тот же граф. Поддерживаются модели Эрдёша-Реньи,
+ * Чунга-Лу со степенным распределением степеней и модель сообществ,
+ * а также вставка копий паттерна, комбинации которых запоминаются
+ * как заведомо существующие вхождения. Вызовы можно сочетать: каждый
+ * добавляет рёбра к уже имеющимся, а вставленные паттерны имеют
+ * приоритет над случайными рёбрами
+ */
+public class GraphGenerator {
+    /**
+     * пустая ячейка хэш-таблицы
+     */
+    private static final long EMPTY = -1;
+    /**
+     * Кол-во вершин
+     */
+    @Getter
+    private final int size;
+    /**
+     * генератор случайных чисел
+     */
+    private final SplittableRandom random;
+    /**
+     * ключи хэш-таблицы рёбер: `from * size + to`
+     */
+    private long[] keys;
+    /**
+     * значения рёбер; у вставленных паттернов могут быть нулевыми
+     */
+    private int[] values;
+    /**
+     * флаги, задано ли ребро вставленным паттерном
+     */
+    private boolean[] planted;
+    /**
+     * кол-во занятых ячеек хэш-таблицы
+     */
+    private int used;
+    /**
+     * комбинации вставленных паттернов
+     */
+    private final List<int[]> plantedCombinations = new ArrayList<>();
+
+    /**
+     * Конструктор
+     *
+     * @param size кол-во вершин
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public GraphGenerator(int size, long seed) {
+        if (size <= 0)
+            throw new AssertionError("кол-во вершин должно быть положительным: " + size);
+        this.size = size;
+        this.random = new SplittableRandom(seed);
+        allocate(1 << 10);
+    }
+
+    /**
+     * Добавить рёбра по модели Эрдёша-Реньи: `size * degree` рёбер
+     * между случайными парами различных вершин
+     *
+     * @param degree средняя исходящая степень вершины
+     * @param minVal минимальное значение ребра
+     * @param maxVal максимальное значение ребра, не включительно
+     * @return этот же генератор
+     */
+    public GraphGenerator erdosRenyi(double degree, int minVal, int maxVal) {
+        long cnt = edgeCount(degree);
+        for (long e = 0; e < cnt; e++)
+            addRandomEdge(random.nextInt(size), random.nextInt(size), minVal, maxVal);
+        return this;
+    }
+
+    /**
+     * Добавить рёбра по модели Чунга-Лу: вероятность выбрать вершину
+     * концом ребра пропорциональна её весу, веса убывают по степенному
+     * закону `(i + 1)^(-1 / (exponent - 1))`, поэтому распределение
+     * степеней - степенное с показателем `exponent`; веса раздаются
+     * вершинам в случайном порядке
+     *
+     * @param degree   средняя исходящая степень вершины
+     * @param exponent показатель степенного закона, больше 1
+     * @param minVal   минимальное значение ребра
+     * @param maxVal   максимальное значение ребра, не включительно
+     * @return этот же генератор
+     */
+    public GraphGenerator chungLu(double degree, double exponent, int minVal, int maxVal) {
+        if (exponent <= 1)
+            throw new AssertionError("показатель степенного закона должен быть больше 1: " + exponent);
+        // накопленные веса для выбора вершины двоичным поиском
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += Math.pow(i + 1, -1 / (exponent - 1));
+            cumulative[i] = total;
+        }
+        // самые тяжёлые вершины не должны получить младшие индексы
+        int[] vertices = randomPermutation(size);
+        long cnt = edgeCount(degree);
+        for (long e = 0; e < cnt; e++)
+            addRandomEdge(
+                    vertices[pick(cumulative, random.nextDouble() * total)],
+                    vertices[pick(cumulative, random.nextDouble() * total)],
+                    minVal, maxVal
+            );
+        return this;
+    }
+
+    /**
+     * Добавить рёбра по модели сообществ: вершины случайным образом делятся
+     * на `count` сообществ почти равного размера, у каждой вершины в среднем
+     * `inDegree` исходящих рёбер внутри своего сообщества и `outDegree`
+     * рёбер к случайным вершинам всего графа
+     *
+     * @param count     кол-во сообществ
+     * @param inDegree  средняя исходящая степень внутри сообщества
+     * @param outDegree средняя исходящая степень между сообществами
+     * @param minVal    минимальное значение ребра
+     * @param maxVal    максимальное значение ребра, не включительно
+     * @return этот же генератор
+     */
+    public GraphGenerator communities(int count, double inDegree, double outDegree, int minVal, int maxVal) {
+        if (count <= 0 || count > size)
+            throw new AssertionError("недопустимое кол-во сообществ: " + count);
+        // сообщество `c` - это вершины `members[begin(c)..begin(c + 1))`
+        int[] members = randomPermutation(size);
+        int[] community = new int[size];
+        for (int c = 0; c < count; c++)
+            for (int i = communityBegin(c, count); i < communityBegin(c + 1, count); i++)
+                community[members[i]] = c;
+
+        long cnt = edgeCount(inDegree);
+        for (long e = 0; e < cnt; e++) {
+            int from = random.nextInt(size);
+            int c = community[from];
+            int begin = communityBegin(c, count);
+            int to = members[begin + random.nextInt(communityBegin(c + 1, count) - begin)];
+            addRandomEdge(from, to, minVal, maxVal);
+        }
+        return erdosRenyi(outDegree, minVal, maxVal);
+    }
+
+    /**
+     * Вставить паттерн в заданную комбинацию вершин, как
+     * {@link center.buran.fast.patterns.misc.PatternBuilder#putPattern}:
+     * все элементы подматрицы, включая нулевые, заменяются элементами
+     * паттерна, а если какой-то из них уже задан другим паттерном
+     * и отличается, паттерн не вставляется
+     *
+     * @param pattern     паттерн
+     * @param combination комбинация различных вершин
+     * @return флаг, получилось ли вставить
+     */
+    public boolean putPattern(int[][] pattern, int[] combination) {
+        if (pattern.length != combination.length)
+            throw new AssertionError("размер паттерна " + pattern.length + " не равен" +
+                    " размеру комбинации " + combination.length);
+        for (int i = 0; i < combination.length; i++)
+            for (int j = 0; j < combination.length; j++) {
+                int slot = find(key(combination[i], combination[j]));
+                if (slot >= 0 && planted[slot] && values[slot] != pattern[i][j])
+                    return false;
+            }
+        for (int i = 0; i < combination.length; i++)
+            for (int j = 0; j < combination.length; j++)
+                put(key(combination[i], combination[j]), pattern[i][j], true);
+        plantedCombinations.add(combination.clone());
+        return true;
+    }
+
+    /**
+     * Вставить копии паттерна в случайные комбинации вершин
+     *
+     * @param pattern паттерн
+     * @param copies  кол-во копий
+     * @return кол-во вставленных копий; копии, пересекающиеся с уже
+     * вставленными паттернами по несовпадающим элементам, пропускаются
+     */
+    public int plant(int[][] pattern, int copies) {
+        if (pattern.length > size)
+            throw new AssertionError("размер паттерна: " + pattern.length + " превышает " +
+                    "размер графа " + size);
+        int res = 0;
+        for (int c = 0; c < copies; c++)
+            if (putPattern(pattern, randomCombination(pattern.length)))
+                res++;
+        return res;
+    }
+
+    /**
+     * Получить комбинации вставленных паттернов
+     *
+     * @return список комбинаций в порядке вставки; i-й элемент комбинации -
+     * вершина, в которую вставлена i-я вершина паттерна
+     */
+    public List<int[]> getPlanted() {
+        List<int[]> res = new ArrayList<>(plantedCombinations.size());
+        for (int[] combination : plantedCombinations)
+            res.add(combination.clone());
+        return res;
+    }
+
+    /**
+     * Получить кол-во ненулевых рёбер
+     *
+     * @return кол-во рёбер
+     */
+    public int getEdgeCount() {
+        int res = 0;
+        for (int slot = 0; slot < keys.length; slot++)
+            if (keys[slot] != EMPTY && values[slot] != 0)
+                res++;
+        return res;
+    }
+
+    /**
+     * Построить разреженный граф
+     *
+     * @return граф с текущими рёбрами
+     */
+    public SparseGraph build() {
+        int cnt = getEdgeCount();
+        int[] from = new int[cnt];
+        int[] to = new int[cnt];
+        int[] edgeValues = new int[cnt];
+        int e = 0;
+        for (int slot = 0; slot < keys.length; slot++)
+            if (keys[slot] != EMPTY && values[slot] != 0) {
+                from[e] = (int) (keys[slot] / size);
+                to[e] = (int) (keys[slot] % size);
+                edgeValues[e++] = values[slot];
+            }
+        return new SparseGraph(size, from, to, edgeValues);
+    }
+
+    /**
+     * Добавить случайное ребро, если это не петля и ребро ещё не задано
+     *
+     * @param from   начало ребра
+     * @param to     конец ребра
+     * @param minVal минимальное значение ребра
+     * @param maxVal максимальное значение ребра, не включительно
+     */
+    private void addRandomEdge(int from, int to, int minVal, int maxVal) {
+        if (from == to)
+            return;
+        long key = key(from, to);
+        if (find(key) >= 0)
+            return;
+        put(key, randomValue(minVal, maxVal), false);
+    }
+
+    /**
+     * Получить случайное ненулевое значение ребра
+     *
+     * @param minVal минимальное значение
+     * @param maxVal максимальное значение, не включительно
+     * @return значение ребра
+     */
+    private int randomValue(int minVal, int maxVal) {
+        if (minVal >= maxVal || (minVal == 0 && maxVal == 1))
+            throw new AssertionError("в диапазоне [" + minVal + ", " + maxVal + ") нет ненулевых значений");
+        while (true) {
+            int value = random.nextInt(minVal, maxVal);
+            if (value != 0)
+                return value;
+        }
+    }
+
+    /**
+     * Получить кол-во рёбер для заданной средней степени
+     *
+     * @param degree средняя исходящая степень вершины
+     * @return кол-во рёбер
+     */
+    private long edgeCount(double degree) {
+        if (degree < 0 || degree > size - 1)
+            throw new AssertionError("недопустимая средняя степень: " + degree);
+        return Math.round(size * degree);
+    }
+
+    /**
+     * Получить первую вершину сообщества в массиве вершин сообществ
+     *
+     * @param c     номер сообщества, `count` - конец последнего сообщества
+     * @param count кол-во сообществ
+     * @return индекс в массиве вершин сообществ
+     */
+    private int communityBegin(int c, int count) {
+        return (int) ((long) size * c / count);
+    }
+
+    /**
+     * Найти вершину по накопленному весу
+     *
+     * @param cumulative накопленные веса
+     * @param value      случайное значение от 0 до суммы весов
+     * @return первая вершина, накопленный вес которой больше `value`
+     */
+    private static int pick(double[] cumulative, double value) {
+        int i = Arrays.binarySearch(cumulative, value);
+        return Math.min(i >= 0 ? i + 1 : -i - 1, cumulative.length - 1);
+    }
+
+    /**
+     * Получить случайную перестановку перемешиванием Фишера-Йетса
+     *
+     * @param n кол-во элементов
+     * @return перестановка
+     */
+    private int[] randomPermutation(int n) {
+        int[] res = new int[n];
+        for (int i = 0; i < n; i++)
+            res[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = res[i];
+            res[i] = res[j];
+            res[j] = tmp;
+        }
+        return res;
+    }
+
+    /**
+     * Получить случайную комбинацию различных вершин
+     *
+     * @param k размер комбинации
+     * @return комбинация в случайном порядке
+     */
+    private int[] randomCombination(int k) {
+        // вершин обычно намного больше, чем элементов комбинации,
+        // поэтому повторы просто выбираются заново
+        if ((long) k * k > size)
+            return Arrays.copyOf(randomPermutation(size), k);
+        int[] res = new int[k];
+        for (int pos = 0; pos < k; ) {
+            int v = random.nextInt(size);
+            boolean repeated = false;
+            for (int i = 0; i < pos && !repeated; i++)
+                repeated = res[i] == v;
+            if (!repeated)
+                res[pos++] = v;
+        }
+        return res;
+    }
+
+    /**
+     * Получить ключ ребра
+     *
+     * @param from начало ребра
+     * @param to   конец ребра
+     * @return ключ
+     */
+    private long key(int from, int to) {
+        return (long) from * size + to;
+    }
+
+    /**
+     * Найти ячейку хэш-таблицы с ключом
+     *
+     * @param key ключ ребра
+     * @return индекс ячейки или -1, если ребра нет
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return slot;
+            if (keys[slot] == EMPTY)
+                return -1;
+        }
+    }
+
+    /**
+     * Записать ребро в хэш-таблицу, заменив имеющееся
+     *
+     * @param key       ключ ребра
+     * @param value     значение ребра
+     * @param isPlanted флаг, задано ли ребро паттерном
+     */
+    private void put(long key, int value, boolean isPlanted) {
+        // заполняем таблицу не больше чем на 3/4
+        if ((used + 1) * 4L > keys.length * 3L)
+            resize();
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        if (keys[slot] == EMPTY)
+            used++;
+        keys[slot] = key;
+        values[slot] = value;
+        planted[slot] = isPlanted;
+    }
+
+    /**
+     * Увеличить хэш-таблицу вдвое
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldPlanted = planted;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++)
+            if (oldKeys[slot] != EMPTY)
+                put(oldKeys[slot], oldValues[slot], oldPlanted[slot]);
+    }
+
+    /**
+     * Выделить пустую хэш-таблицу
+     *
+     * @param capacity кол-во ячеек, степень двойки
+     */
+    private void allocate(int capacity) {
+        if (capacity <= 0)
+            throw new AssertionError("слишком много рёбер");
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        planted = new boolean[capacity];
+        used = 0;
+    }
+
+    /**
+     * Перемешать биты ключа
+     *
+     * @param key ключ ребра
+     * @return хэш ключа
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
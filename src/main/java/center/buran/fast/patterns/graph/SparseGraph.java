@@ -0,0 +1,357 @@
+package center.buran.fast.patterns.graph;
+
+import lombok.Getter;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Разреженный граф в формате CSR (compressed sparse row);
+ * для каждой вершины хранятся отсортированные по индексу
+ * списки исходящих и входящих рёбер вместе с их значениями.
+ * Нулевые значения рёбрами не считаются. Массивы CSR хранятся в буферах,
+ * поэтому граф может читаться из отображённого в память файла без
+ * копирования, см. {@link GraphFile}
+ */
+public class SparseGraph {
+    /**
+     * Кол-во вершин
+     */
+    @Getter
+    private final int size;
+    /**
+     * Начала списков исходящих рёбер, `size + 1` элементов
+     */
+    private final IntBuffer outOffsets;
+    /**
+     * Концы исходящих рёбер
+     */
+    private final IntBuffer outTargets;
+    /**
+     * Значения исходящих рёбер
+     */
+    private final IntBuffer outValues;
+    /**
+     * Начала списков входящих рёбер, `size + 1` элементов
+     */
+    private final IntBuffer inOffsets;
+    /**
+     * Начала входящих рёбер
+     */
+    private final IntBuffer inSources;
+    /**
+     * Значения входящих рёбер
+     */
+    private final IntBuffer inValues;
+
+    /**
+     * Конструктор по списку рёбер; рёбра с нулевым значением пропускаются
+     *
+     * @param size   кол-во вершин
+     * @param from   начала рёбер
+     * @param to     концы рёбер
+     * @param values значения рёбер
+     */
+    public SparseGraph(int size, int[] from, int[] to, int[] values) {
+        if (from.length != to.length || from.length != values.length)
+            throw new AssertionError("размеры массивов рёбер не совпадают: " + from.length + ", " +
+                    to.length + ", " + values.length);
+
+        this.size = size;
+        // считаем степени вершин
+        int edgeCnt = 0;
+        int[] outOffsets = new int[size + 1];
+        int[] inOffsets = new int[size + 1];
+        for (int e = 0; e < from.length; e++) {
+            if (from[e] < 0 || from[e] >= size || to[e] < 0 || to[e] >= size)
+                throw new AssertionError("ребро " + from[e] + "->" + to[e] + " выходит за пределы графа " +
+                        "размера " + size);
+            if (values[e] == 0)
+                continue;
+            outOffsets[from[e] + 1]++;
+            inOffsets[to[e] + 1]++;
+            edgeCnt++;
+        }
+        // переводим степени в начала списков
+        for (int i = 0; i < size; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+
+        int[] outTargets = new int[edgeCnt];
+        int[] outValues = new int[edgeCnt];
+        int[] inSources = new int[edgeCnt];
+        int[] inValues = new int[edgeCnt];
+        // раскладываем рёбра по спискам входящих в исходном порядке
+        int[] pos = new int[size];
+        for (int e = 0; e < from.length; e++) {
+            if (values[e] == 0)
+                continue;
+            int in = inOffsets[to[e]] + pos[to[e]]++;
+            inSources[in] = from[e];
+            inValues[in] = values[e];
+        }
+        // перебирая концы рёбер по возрастанию, получаем
+        // отсортированные списки исходящих рёбер
+        Arrays.fill(pos, 0);
+        for (int t = 0; t < size; t++)
+            for (int in = inOffsets[t]; in < inOffsets[t + 1]; in++) {
+                int f = inSources[in];
+                int o = outOffsets[f] + pos[f]++;
+                // в отсортированном списке повтор ребра стоит рядом
+                if (o > outOffsets[f] && outTargets[o - 1] == t)
+                    throw new AssertionError("ребро " + f + "->" + t + " задано несколько раз");
+                outTargets[o] = t;
+                outValues[o] = inValues[in];
+            }
+        // аналогично, перебирая начала рёбер по возрастанию, получаем
+        // отсортированные списки входящих рёбер
+        Arrays.fill(pos, 0);
+        for (int f = 0; f < size; f++)
+            for (int o = outOffsets[f]; o < outOffsets[f + 1]; o++) {
+                int t = outTargets[o];
+                int in = inOffsets[t] + pos[t]++;
+                inSources[in] = f;
+                inValues[in] = outValues[o];
+            }
+
+        this.outOffsets = IntBuffer.wrap(outOffsets);
+        this.outTargets = IntBuffer.wrap(outTargets);
+        this.outValues = IntBuffer.wrap(outValues);
+        this.inOffsets = IntBuffer.wrap(inOffsets);
+        this.inSources = IntBuffer.wrap(inSources);
+        this.inValues = IntBuffer.wrap(inValues);
+    }
+
+    /**
+     * Конструктор графа, массивы CSR которого читаются из буферов без копирования
+     *
+     * @param size       кол-во вершин
+     * @param outOffsets начала списков исходящих рёбер
+     * @param outTargets концы исходящих рёбер
+     * @param outValues  значения исходящих рёбер
+     * @param inOffsets  начала списков входящих рёбер
+     * @param inSources  начала входящих рёбер
+     * @param inValues   значения входящих рёбер
+     */
+    SparseGraph(
+            int size, IntBuffer outOffsets, IntBuffer outTargets, IntBuffer outValues,
+            IntBuffer inOffsets, IntBuffer inSources, IntBuffer inValues
+    ) {
+        this.size = size;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outValues = outValues;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inValues = inValues;
+    }
+
+    /**
+     * Получить граф на тех же вершинах только из рёбер с заданным значением;
+     * его списки соседей отсортированы по индексу и содержат только такие
+     * рёбра. Строится за `O(size + m)`
+     *
+     * @param value значение рёбер, не ноль
+     * @return граф из рёбер с заданным значением или этот же граф,
+     * если у всех рёбер оно одно
+     */
+    public SparseGraph filter(int value) {
+        if (value == 0)
+            throw new AssertionError("нулевые значения рёбрами не считаются");
+        int cnt = 0;
+        for (int e = 0; e < getEdgeCount(); e++)
+            if (outValues.get(e) == value)
+                cnt++;
+        if (cnt == getEdgeCount())
+            return this;
+
+        int[] from = new int[cnt];
+        int[] to = new int[cnt];
+        int[] values = new int[cnt];
+        int pos = 0;
+        for (int i = 0; i < size; i++)
+            for (int e = getOutBegin(i); e < getOutEnd(i); e++)
+                if (outValues.get(e) == value) {
+                    from[pos] = i;
+                    to[pos] = outTargets.get(e);
+                    values[pos++] = value;
+                }
+        return new SparseGraph(size, from, to, values);
+    }
+
+    /**
+     * Построить разреженный граф по матрице связности
+     *
+     * @param matrix матрица связности
+     * @return разреженный граф
+     */
+    public static SparseGraph fromMatrix(int[][] matrix) {
+        // считаем кол-во ненулевых элементов
+        int edgeCnt = 0;
+        for (int[] row : matrix)
+            for (int value : row)
+                if (value != 0)
+                    edgeCnt++;
+
+        // составляем список рёбер
+        int[] from = new int[edgeCnt];
+        int[] to = new int[edgeCnt];
+        int[] values = new int[edgeCnt];
+        int pos = 0;
+        for (int i = 0; i < matrix.length; i++)
+            for (int j = 0; j < matrix.length; j++)
+                if (matrix[i][j] != 0) {
+                    from[pos] = i;
+                    to[pos] = j;
+                    values[pos++] = matrix[i][j];
+                }
+
+        return new SparseGraph(matrix.length, from, to, values);
+    }
+
+    /**
+     * Получить значение ребра
+     *
+     * @param i начало ребра
+     * @param j конец ребра
+     * @return значение ребра или 0, если ребра нет
+     */
+    public int get(int i, int j) {
+        // двоичный поиск в отсортированном списке исходящих рёбер
+        int l = outOffsets.get(i);
+        int r = outOffsets.get(i + 1) - 1;
+        while (l <= r) {
+            int m = (l + r) >>> 1;
+            if (outTargets.get(m) < j)
+                l = m + 1;
+            else if (outTargets.get(m) > j)
+                r = m - 1;
+            else
+                return outValues.get(m);
+        }
+        return 0;
+    }
+
+    /**
+     * Получить кол-во рёбер
+     *
+     * @return кол-во рёбер
+     */
+    public int getEdgeCount() {
+        return outTargets.capacity();
+    }
+
+    /**
+     * Получить полустепень исхода вершины
+     *
+     * @param i индекс вершины
+     * @return кол-во исходящих рёбер
+     */
+    public int getOutDegree(int i) {
+        return outOffsets.get(i + 1) - outOffsets.get(i);
+    }
+
+    /**
+     * Получить полустепень захода вершины
+     *
+     * @param i индекс вершины
+     * @return кол-во входящих рёбер
+     */
+    public int getInDegree(int i) {
+        return inOffsets.get(i + 1) - inOffsets.get(i);
+    }
+
+    /**
+     * Получить массив степеней вершин; степень считается так же,
+     * как у матрицы связности: сумма полустепеней исхода и захода
+     *
+     * @return массив степеней вершин
+     */
+    public int[] getPowers() {
+        int[] powers = new int[size];
+        for (int i = 0; i < size; i++)
+            powers[i] = getOutDegree(i) + getInDegree(i);
+        return powers;
+    }
+
+    /**
+     * Получить номер первого исходящего ребра вершины
+     *
+     * @param i индекс вершины
+     * @return номер первого исходящего ребра
+     */
+    public int getOutBegin(int i) {
+        return outOffsets.get(i);
+    }
+
+    /**
+     * Получить номер, следующий за последним исходящим ребром вершины
+     *
+     * @param i индекс вершины
+     * @return номер, следующий за последним исходящим ребром
+     */
+    public int getOutEnd(int i) {
+        return outOffsets.get(i + 1);
+    }
+
+    /**
+     * Получить конец исходящего ребра
+     *
+     * @param e номер исходящего ребра
+     * @return индекс конца ребра
+     */
+    public int getOutTarget(int e) {
+        return outTargets.get(e);
+    }
+
+    /**
+     * Получить значение исходящего ребра
+     *
+     * @param e номер исходящего ребра
+     * @return значение ребра
+     */
+    public int getOutValue(int e) {
+        return outValues.get(e);
+    }
+
+    /**
+     * Получить номер первого входящего ребра вершины
+     *
+     * @param i индекс вершины
+     * @return номер первого входящего ребра
+     */
+    public int getInBegin(int i) {
+        return inOffsets.get(i);
+    }
+
+    /**
+     * Получить номер, следующий за последним входящим ребром вершины
+     *
+     * @param i индекс вершины
+     * @return номер, следующий за последним входящим ребром
+     */
+    public int getInEnd(int i) {
+        return inOffsets.get(i + 1);
+    }
+
+    /**
+     * Получить начало входящего ребра
+     *
+     * @param e номер входящего ребра
+     * @return индекс начала ребра
+     */
+    public int getInSource(int e) {
+        return inSources.get(e);
+    }
+
+    /**
+     * Получить значение входящего ребра
+     *
+     * @param e номер входящего ребра
+     * @return значение ребра
+     */
+    public int getInValue(int e) {
+        return inValues.get(e);
+    }
+}
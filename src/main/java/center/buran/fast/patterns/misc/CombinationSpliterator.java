@@ -0,0 +1,143 @@
+package center.buran.fast.patterns.misc;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Перебор возрастающих комбинаций с номерами из диапазона в порядке
+ * комбинаторной системы счисления, см. {@link Combinatorics#rank(int[])}.
+ * Разбиение делит диапазон номеров пополам, а первая комбинация части
+ * восстанавливается по номеру, поэтому части получают одинаковое кол-во
+ * комбинаций. При `n <= 64` комбинация хранится битовой маской и следующая
+ * получается методом Госпера, иначе - перебором массива
+ */
+class CombinationSpliterator implements Spliterator<int[]> {
+    /**
+     * общее число элементов
+     */
+    private final int n;
+    /**
+     * размер комбинации
+     */
+    private final int k;
+    /**
+     * номер следующей комбинации
+     */
+    private long index;
+    /**
+     * номер, следующий за номером последней комбинации
+     */
+    private final long end;
+    /**
+     * флаг, восстановлена ли текущая комбинация по номеру
+     */
+    private boolean started;
+    /**
+     * текущая комбинация при `n > 64`
+     */
+    private int[] combination;
+    /**
+     * маска текущей комбинации при `n <= 64`
+     */
+    private long mask;
+
+    /**
+     * Конструктор
+     *
+     * @param n    общее число элементов
+     * @param k    размер комбинации
+     * @param from номер первой комбинации
+     * @param end  номер, следующий за номером последней комбинации
+     */
+    CombinationSpliterator(int n, int k, long from, long end) {
+        this.n = n;
+        this.k = k;
+        this.index = from;
+        this.end = end;
+    }
+
+    /**
+     * Перейти к следующей комбинации и передать её обработчику
+     *
+     * @param action обработчик комбинации
+     * @return флаг, была ли комбинация
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+        if (index >= end)
+            return false;
+        if (!started) {
+            // первая комбинация восстанавливается по номеру
+            int[] first = Combinatorics.unrank(index, n, k);
+            if (n <= Long.SIZE) {
+                mask = 0;
+                for (int v : first)
+                    mask |= 1L << v;
+            } else
+                combination = first;
+            started = true;
+        } else if (n <= Long.SIZE)
+            mask = Combinatorics.nextCombination(mask);
+        else
+            Combinatorics.nextCombination(combination, n);
+        index++;
+        action.accept(current());
+        return true;
+    }
+
+    /**
+     * Отделить первую половину оставшихся номеров; этот объект
+     * продолжает перебор со второй половины
+     *
+     * @return отделённый перебор или `null`, если делить нечего
+     */
+    @Override
+    public Spliterator<int[]> trySplit() {
+        long left = end - index;
+        if (left < 2)
+            return null;
+        long mid = index + left / 2;
+        Spliterator<int[]> prefix = new CombinationSpliterator(n, k, index, mid);
+        // оставшаяся часть начинается с нового номера
+        index = mid;
+        started = false;
+        return prefix;
+    }
+
+    /**
+     * Кол-во оставшихся комбинаций
+     *
+     * @return кол-во оставшихся комбинаций
+     */
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    /**
+     * Характеристики перебора
+     *
+     * @return характеристики перебора
+     */
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Получить копию текущей комбинации
+     *
+     * @return возрастающая комбинация
+     */
+    private int[] current() {
+        if (n > Long.SIZE)
+            return combination.clone();
+        int[] res = new int[k];
+        long m = mask;
+        for (int i = 0; i < k; i++) {
+            res[i] = Long.numberOfTrailingZeros(m);
+            m &= m - 1;
+        }
+        return res;
+    }
+}
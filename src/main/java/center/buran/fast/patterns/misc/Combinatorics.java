@@ -3,6 +3,8 @@ package center.buran.fast.patterns.misc;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Класс для работы с комбинаторикой
@@ -153,25 +155,30 @@ public class Combinatorics {
             throw new AssertionError("размер массива: " + n + " количество " +
                     "элементов " + k);
 
-        // создаём множество значений случайной комбинации
-        Set<Integer> combination = new HashSet<>();
-
-        // пока не набралось достаточное количество значений в множестве
-        while (combination.size() < k)
-            // добавляем в него случайное значение от 0 до n
-            combination.add(Math.abs(ThreadLocalRandom.current().nextInt()) % n);
-
-        // переводим комбинацию из множества в список
-        List<Integer> lst = new ArrayList<>(combination);
-        // перемешиваем этот список
-        Collections.shuffle(lst);
-
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         // массив итоговой комбинации
         int[] res = new int[k];
-        // заполняем массив, начиная с нулевого индекса
-        int pos = 0;
-        for (Integer e : lst)
-            res[pos++] = e;
+        if ((long) k * k <= n) {
+            // комбинация мала по сравнению с `n`: выбираем случайные значения,
+            // отбрасывая повторы, проверка повторов стоит O(k^2) <= O(n)
+            for (int pos = 0; pos < k; ) {
+                int v = random.nextInt(n);
+                boolean repeated = false;
+                for (int i = 0; i < pos && !repeated; i++)
+                    repeated = res[i] == v;
+                if (!repeated)
+                    res[pos++] = v;
+            }
+        } else {
+            // иначе делаем первые `k` шагов перемешивания Фишера-Йетса
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++)
+                all[i] = i;
+            for (int i = 0; i < k; i++) {
+                swap(all, i, i + random.nextInt(n - i));
+                res[i] = all[i];
+            }
+        }
 
         return new CombinatoricsData(res);
     }
@@ -200,30 +207,13 @@ public class Combinatorics {
         if (size < 1)
             throw new AssertionError("Недопустимый размер перестановки: " + size);
 
-        // заполняем массив данных заданной длины случайными числами
-        int[] r = new int[size];
+        // перемешивание Фишера-Йетса за линейное время
+        int[] rc = new int[size];
         for (int i = 0; i < size; i++)
-            r[i] = ThreadLocalRandom.current().nextInt() % 20000 - 10000;
-
-        // заполняем массив заданной длины индексами
-        int[] rc = new int[r.length];
-        for (int i = 0; i < r.length; i++)
             rc[i] = i;
-
-        // сортируем совместно два массива по значению из массива данных
-        for (int i = 0; i < r.length; i++)
-            for (int j = i + 1; j < r.length; j++)
-                if (r[i] < r[j]) {
-                    int c = r[i];
-                    r[i] = r[j];
-                    r[j] = c;
-
-                    c = rc[i];
-                    rc[i] = rc[j];
-                    rc[j] = c;
-                }
-        // возвращаем отсортированный по значениям массива данных
-        // массив индексов
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = size - 1; i > 0; i--)
+            swap(rc, i, random.nextInt(i + 1));
         return rc;
     }
 
@@ -294,6 +284,159 @@ public class Combinatorics {
         return r;
     }
 
+    /**
+     * Биномиальный коэффициент
+     *
+     * @param n общее число элементов
+     * @param k размер комбинации
+     * @return кол-во комбинаций из `n` по `k`; 0, если `k < 0` или `k > n`
+     */
+    public static long binomial(int n, int k) {
+        if (k < 0 || k > n)
+            return 0;
+        k = Math.min(k, n - k);
+        long res = 1;
+        try {
+            for (int i = 0; i < k; i++) {
+                // res * (n - i) делится на (i + 1) нацело, делим по частям,
+                // чтобы не переполнить произведение
+                long q = res / (i + 1);
+                long r = res % (i + 1);
+                res = Math.addExact(Math.multiplyExact(q, n - i), r * (n - i) / (i + 1));
+            }
+        } catch (ArithmeticException e) {
+            throw new AssertionError("кол-во комбинаций из " + n + " по " + k + " не помещается в long");
+        }
+        return res;
+    }
+
+    /**
+     * Получить номер комбинации в комбинаторной системе счисления:
+     * номер возрастающей комбинации `c` равен сумме `C(c[i], i + 1)`,
+     * а комбинации нумеруются в колексикографическом порядке, т.е. по
+     * возрастанию последнего элемента, затем предпоследнего и т.д.
+     *
+     * @param combination возрастающая комбинация
+     * @return номер комбинации от 0 до `C(n, k) - 1`
+     */
+    public static long rank(int[] combination) {
+        long res = 0;
+        for (int i = 0; i < combination.length; i++) {
+            if (i > 0 && combination[i] <= combination[i - 1])
+                throw new AssertionError("комбинация должна быть возрастающей: " + Arrays.toString(combination));
+            res += binomial(combination[i], i + 1);
+        }
+        return res;
+    }
+
+    /**
+     * Получить комбинацию по её номеру в комбинаторной системе счисления,
+     * см. {@link #rank(int[])}
+     *
+     * @param rank номер комбинации
+     * @param n    общее число элементов
+     * @param k    размер комбинации
+     * @return возрастающая комбинация
+     */
+    public static int[] unrank(long rank, int n, int k) {
+        if (k < 0 || k > n || rank < 0 || rank >= binomial(n, k))
+            throw new AssertionError("номер " + rank + " вне диапазона комбинаций из " + n + " по " + k);
+        int[] combination = new int[k];
+        // старшие элементы выбираем первыми: наибольшее `v`, для которого C(v, i + 1) <= rank
+        int v = n - 1;
+        for (int i = k - 1; i >= 0; i--) {
+            long c = binomial(v, i + 1);
+            while (c > rank)
+                c = binomial(--v, i + 1);
+            combination[i] = v;
+            rank -= c;
+            v--;
+        }
+        return combination;
+    }
+
+    /**
+     * Перейти к следующей комбинации в колексикографическом порядке
+     *
+     * @param combination возрастающая комбинация, изменяется на месте
+     * @param n           общее число элементов
+     * @return флаг, есть ли следующая комбинация; если `false`, комбинация не изменена
+     */
+    public static boolean nextCombination(int[] combination, int n) {
+        int k = combination.length;
+        // ищем первый элемент, который можно увеличить, не догнав следующий
+        for (int i = 0; i < k; i++) {
+            int limit = i + 1 < k ? combination[i + 1] : n;
+            if (combination[i] + 1 < limit) {
+                combination[i]++;
+                // младшие элементы сбрасываем в начальные значения
+                for (int j = 0; j < i; j++)
+                    combination[j] = j;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Перейти к следующей комбинации, записанной битовой маской (метод Госпера):
+     * следующая комбинация - это ближайшее большее число с тем же кол-вом
+     * единиц, поэтому порядок тот же, что и у {@link #nextCombination(int[], int)}
+     *
+     * @param mask непустая маска комбинации, `n <= 64`, не последняя комбинация
+     * @return маска следующей комбинации
+     */
+    public static long nextCombination(long mask) {
+        // младшая единица
+        long lowest = mask & -mask;
+        // переносим младший блок единиц на разряд выше
+        long ripple = mask + lowest;
+        // остаток блока сдвигаем в младшие разряды
+        return (((ripple ^ mask) >>> 2) >>> Long.numberOfTrailingZeros(lowest)) | ripple;
+    }
+
+    /**
+     * Получить разбиваемый перебор комбинаций; части перебора получают
+     * диапазоны номеров одинаковой длины
+     *
+     * @param n общее число элементов
+     * @param k размер комбинации
+     * @return перебор всех возрастающих комбинаций в порядке {@link #rank(int[])}
+     */
+    public static Spliterator<int[]> spliterator(int n, int k) {
+        return spliterator(n, k, 0, binomial(n, k));
+    }
+
+    /**
+     * Получить разбиваемый перебор комбинаций с номерами из диапазона;
+     * по нему можно продолжить перебор с любого номера
+     *
+     * @param n    общее число элементов
+     * @param k    размер комбинации
+     * @param from номер первой комбинации
+     * @param to   номер, следующий за номером последней комбинации
+     * @return перебор комбинаций; каждая комбинация передаётся новым массивом
+     */
+    public static Spliterator<int[]> spliterator(int n, int k, long from, long to) {
+        if (k < 0 || k > n)
+            throw new AssertionError("размер массива: " + n + " количество элементов " + k);
+        if (from < 0 || from > to || to > binomial(n, k))
+            throw new AssertionError("недопустимый диапазон номеров: [" + from + ", " + to + ")");
+        return new CombinationSpliterator(n, k, from, to);
+    }
+
+    /**
+     * Получить поток комбинаций
+     *
+     * @param n        общее число элементов
+     * @param k        размер комбинации
+     * @param parallel флаг, нужен ли параллельный поток
+     * @return поток всех возрастающих комбинаций в порядке {@link #rank(int[])}
+     */
+    public static Stream<int[]> stream(int n, int k, boolean parallel) {
+        return StreamSupport.stream(spliterator(n, k), parallel);
+    }
+
     /**
      * поменять местами элементы массива arr с индексами l и r
      *
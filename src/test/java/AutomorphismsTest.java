@@ -0,0 +1,117 @@
+import center.buran.fast.patterns.Automorphisms;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест автоморфизмов паттерна и поиска с нарушением симметрии
+ */
+public class AutomorphismsTest {
+
+    /**
+     * Проверка порядка группы автоморфизмов для клики, цикла и пути
+     */
+    @Test
+    public void groupSizeTest() {
+        for (int k = 1; k <= 6; k++) {
+            int[][] clique = new int[k][k];
+            int[][] cycle = new int[k][k];
+            for (int i = 0; i < k; i++)
+                for (int j = 0; j < k; j++) {
+                    clique[i][j] = i == j ? 0 : 1;
+                    if (k > 2 && (j == (i + 1) % k || i == (j + 1) % k))
+                        cycle[i][j] = 1;
+                }
+            long factorial = 1;
+            for (int i = 2; i <= k; i++)
+                factorial *= i;
+            assert new Automorphisms(clique).getGroupSize() == factorial;
+            assert new Automorphisms(clique).getAll().size() == factorial;
+            if (k > 2)
+                assert new Automorphisms(cycle).getGroupSize() == 2L * k;
+        }
+
+        // ориентированный путь симметрий не имеет
+        int[][] path = {{0, 1, 0}, {0, 0, 1}, {0, 0, 0}};
+        assert new Automorphisms(path).getGroupSize() == 1;
+        assert new Automorphisms(path).getConstraints().length == 0;
+    }
+
+    /**
+     * Проверка, что найденные перестановки являются автоморфизмами,
+     * а их кол-во совпадает с порядком группы
+     */
+    @Test
+    public void randomGroupTest() {
+        for (int i = 0; i < 200; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(2, 7, 1, 2, 0.5);
+            Automorphisms automorphisms = new Automorphisms(pattern);
+            List<int[]> group = automorphisms.getAll();
+            assert group.size() == automorphisms.getGroupSize();
+            for (int[] p : group)
+                assert Arrays.deepEquals(Combinatorics.makePermute(pattern, p), pattern);
+        }
+    }
+
+    /**
+     * Сверка поиска с нарушением симметрии с полным поиском
+     */
+    @Test
+    public void uniqueTest() {
+        for (int i = 0; i < 30; i++) {
+            int[][] source = Combinatorics.randomMatrix(10, 16, 1, 3, 0.5);
+            int[][] pattern = Combinatorics.randomMatrix(3, 5, 1, 3, 0.6);
+            // у половины паттернов делаем матрицу симметричной,
+            // чтобы группа автоморфизмов была нетривиальной
+            if (i % 2 == 0)
+                for (int a = 0; a < pattern.length; a++)
+                    for (int b = 0; b < a; b++)
+                        pattern[b][a] = pattern[a][b];
+            PatternBuilder pb = new PatternBuilder(source);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+            int[][] data = pb.getData();
+
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(data, pattern, hardCheck);
+                List<CombinatoricsData> unique = FastPatternResolver.getAllPatterns(data, pattern, hardCheck, true);
+                List<CombinatoricsData> expanded = FastPatternResolver.getAllPatterns(data, pattern, hardCheck, false);
+                long groupSize = new Automorphisms(pattern).getGroupSize();
+
+                // размноженные вхождения совпадают с найденными полным поиском
+                assert expanded.size() == all.size();
+                assert new HashSet<>(expanded).equals(new HashSet<>(all));
+                // размноженные вхождения не повторяются, поэтому
+                // уникальные вхождения попарно не эквивалентны
+                assert new HashSet<>(expanded).size() == expanded.size();
+                assert unique.size() * groupSize == all.size();
+                assert FastPatternResolver.count(data, pattern, hardCheck, true) == unique.size();
+                assert FastPatternResolver.count(data, pattern, hardCheck, false) == all.size();
+            }
+        }
+    }
+
+    /**
+     * Проверка, что для треугольника возвращается по одному вхождению на тройку вершин
+     */
+    @Test
+    public void triangleTest() {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] source = new int[6][6];
+        for (int i = 0; i < 6; i++)
+            for (int j = 0; j < 6; j++)
+                source[i][j] = i == j ? 0 : 1;
+
+        List<CombinatoricsData> unique = FastPatternResolver.getAllPatterns(source, triangle, true, true);
+        // C(6, 3) троек, по одному вхождению на тройку
+        assert unique.size() == 20;
+        for (CombinatoricsData cd : unique) {
+            int[] c = cd.getData();
+            assert c[0] < c[1] && c[1] < c[2];
+        }
+        assert FastPatternResolver.getAllPatterns(source, triangle, true, false).size() == 120;
+    }
+}
@@ -1,8 +1,12 @@
 import center.buran.fast.patterns.misc.Combinatorics;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
 
 /**
  * Тесты класса комбинаторики
@@ -24,4 +28,82 @@ public class CombinatoricsTest {
         }
     }
 
+    /**
+     * Проверка номеров комбинаций и перехода к следующей комбинации
+     */
+    @Test
+    public void test2() {
+        assert Combinatorics.binomial(10, 3) == 120;
+        assert Combinatorics.binomial(64, 32) == 1832624140942590534L;
+        assert Combinatorics.binomial(3, 5) == 0;
+
+        for (int n = 1; n <= 9; n++)
+            for (int k = 0; k <= n; k++) {
+                // все комбинации перебором массива
+                List<int[]> all = new ArrayList<>();
+                int[] c = new int[k];
+                for (int i = 0; i < k; i++)
+                    c[i] = i;
+                do
+                    all.add(c.clone());
+                while (Combinatorics.nextCombination(c, n));
+                assert all.size() == Combinatorics.binomial(n, k);
+
+                long mask = (1L << k) - 1;
+                for (int r = 0; r < all.size(); r++) {
+                    assert Combinatorics.rank(all.get(r)) == r;
+                    assert Arrays.equals(Combinatorics.unrank(r, n, k), all.get(r));
+                    // маска даёт тот же порядок
+                    long expected = 0;
+                    for (int v : all.get(r))
+                        expected |= 1L << v;
+                    assert mask == expected;
+                    if (r + 1 < all.size())
+                        mask = Combinatorics.nextCombination(mask);
+                }
+            }
+
+        // старший разряд маски при n = 64
+        assert Combinatorics.nextCombination(1L | (1L << 62)) == ((1L << 1) | (1L << 62));
+        assert Combinatorics.nextCombination((1L << 62) | (1L << 61)) == (1L | (1L << 63));
+    }
+
+    /**
+     * Проверка разбиения перебора комбинаций
+     */
+    @Test
+    public void test3() {
+        for (int n : new int[]{12, 70}) {
+            int k = 3;
+            List<int[]> expected = new ArrayList<>();
+            Spliterator<int[]> whole = Combinatorics.spliterator(n, k);
+            assert whole.estimateSize() == Combinatorics.binomial(n, k);
+            whole.forEachRemaining(expected::add);
+
+            // делим перебор на части после нескольких шагов и собираем по порядку
+            Spliterator<int[]> rest = Combinatorics.spliterator(n, k);
+            List<int[]> actual = new ArrayList<>();
+            rest.tryAdvance(actual::add);
+            rest.tryAdvance(actual::add);
+            Spliterator<int[]> prefix = rest.trySplit();
+            assert prefix != null && prefix.estimateSize() + rest.estimateSize() == expected.size() - 2;
+            prefix.forEachRemaining(actual::add);
+            rest.forEachRemaining(actual::add);
+            assert actual.size() == expected.size();
+            for (int i = 0; i < expected.size(); i++)
+                assert Arrays.equals(actual.get(i), expected.get(i));
+
+            // продолжение с номера
+            long from = expected.size() / 3;
+            List<int[]> tail = new ArrayList<>();
+            Combinatorics.spliterator(n, k, from, expected.size()).forEachRemaining(tail::add);
+            assert Arrays.equals(tail.get(0), expected.get((int) from));
+            assert tail.size() == expected.size() - from;
+
+            // параллельный поток сохраняет порядок
+            List<int[]> parallel = Combinatorics.stream(n, k, true).collect(Collectors.toList());
+            for (int i = 0; i < expected.size(); i++)
+                assert Arrays.equals(parallel.get(i), expected.get(i));
+        }
+    }
 }
@@ -0,0 +1,83 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Тест подготовленного паттерна
+ */
+public class CompiledPatternTest {
+
+    /**
+     * Сверка поиска по одному подготовленному паттерну в разных дата-графах
+     * с поиском по матрице паттерна
+     */
+    @Test
+    public void reuseTest() {
+        for (int i = 0; i < 10; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(3, 6, 0, 3, 0.5);
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                CompiledPattern compiled = new CompiledPattern(pattern, hardCheck);
+                for (int j = 0; j < 5; j++) {
+                    int[][] source = Combinatorics.randomMatrix(10, 16, 0, 3, 0.5);
+                    PatternBuilder pb = new PatternBuilder(source);
+                    pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+                    SourceIndex index = new SourceIndex(pb.getData());
+
+                    List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck);
+                    assert FastPatternResolver.getAllPatterns(index, compiled).equals(all);
+                    assert FastPatternResolver.count(index, compiled) == all.size();
+                    assert FastPatternResolver.count(index, compiled, false) == all.size();
+                    assert FastPatternResolver.exists(index, compiled) == !all.isEmpty();
+                    assert FastPatternResolver.stream(index, compiled)
+                            .map(CombinatoricsData::new).collect(Collectors.toList()).equals(all);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверка, что изменение матрицы после подготовки
+     * не влияет на подготовленный паттерн
+     */
+    @Test
+    public void immutabilityTest() {
+        int[][] pattern = {{0, 1, 0}, {0, 0, 1}, {0, 0, 0}};
+        CompiledPattern compiled = new CompiledPattern(pattern, true);
+        pattern[0][1] = 0;
+        assert compiled.getPattern()[0][1] == 1;
+        compiled.getPattern()[1][2] = 0;
+        compiled.getOrder()[0] = -1;
+        assert compiled.getPattern()[1][2] == 1;
+        assert compiled.getOrder()[0] >= 0;
+        assert compiled.getGroupSize() == 1;
+    }
+
+    /**
+     * Проверка поиска по одному подготовленному паттерну из нескольких потоков
+     */
+    @Test
+    public void threadsTest() {
+        int[][] pattern = Combinatorics.randomMatrix(4, 5, 1, 3, 0.6);
+        CompiledPattern compiled = new CompiledPattern(pattern, false);
+        List<SourceIndex> indexes = new ArrayList<>();
+        List<List<CombinatoricsData>> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(12, 16, 1, 3, 0.5));
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            indexes.add(new SourceIndex(pb.getData()));
+            expected.add(FastPatternResolver.getAllPatterns(pb.getData(), pattern, false));
+        }
+
+        assert IntStream.range(0, 64).parallel().allMatch(i ->
+                FastPatternResolver.getAllPatterns(indexes.get(i % 8), compiled).equals(expected.get(i % 8))
+        );
+    }
+}
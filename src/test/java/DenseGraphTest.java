@@ -0,0 +1,137 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.PatternResolver;
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест плотного графа и поиска паттернов в нём
+ */
+public class DenseGraphTest {
+
+    /**
+     * Проверка выбора типа элементов по диапазону значений
+     */
+    @Test
+    public void widthTest() {
+        assert new DenseGraph(new int[][]{{0, 127}, {-128, 1}}).getWidth() == Byte.BYTES;
+        assert new DenseGraph(new int[][]{{0, 128}, {-1, 1}}).getWidth() == Short.BYTES;
+        assert new DenseGraph(new int[][]{{0, Short.MIN_VALUE}, {1, 1}}).getWidth() == Short.BYTES;
+        assert new DenseGraph(new int[][]{{0, 1 << 16}, {1, 1}}).getWidth() == Integer.BYTES;
+    }
+
+    /**
+     * Проверка, что плотный граф и его транспонированная копия
+     * хранят те же значения, что и матрица связности
+     */
+    @Test
+    public void matrixTest() {
+        int[][] ranges = {{-5, 5}, {-1000, 1000}, {-100000, 100000}};
+        for (int[] range : ranges)
+            for (int i = 0; i < 30; i++) {
+                int[][] m = Combinatorics.randomMatrix(1, 30, range[0], range[1], 0.5);
+                DenseGraph g = new DenseGraph(m);
+                assert g.getSize() == m.length;
+                for (int a = 0; a < m.length; a++)
+                    for (int b = 0; b < m.length; b++) {
+                        assert g.get(a, b) == m[a][b];
+                        assert g.getReverse(a, b) == m[b][a];
+                    }
+                int[] select = Combinatorics.getRandomCombination(m.length, Math.min(m.length, 5)).getData();
+                assert Arrays.deepEquals(g.getSubMatrix(select), Combinatorics.getSubMatrix(m, select));
+            }
+    }
+
+    /**
+     * Сверка поэлементного сравнения строки и столбца с чтением по одному элементу
+     */
+    @Test
+    public void rowEqualsTest() {
+        int[][] ranges = {{-5, 5}, {-1000, 1000}, {-100000, 100000}};
+        Random random = new Random(1);
+        for (int[] range : ranges)
+            for (int i = 0; i < 300; i++) {
+                int[][] m = Combinatorics.randomMatrix(20, 30, range[0], range[1], 0.5);
+                DenseGraph g = new DenseGraph(m);
+                // длины с остатком и без остатка от деления на 4
+                int n = random.nextInt(14);
+                int[] combination = Combinatorics.getRandomCombination(m.length, n + 1).getData();
+                int[] positions = new int[n];
+                for (int t = 0; t < n; t++)
+                    positions[t] = random.nextInt(n + 1);
+                boolean reverse = random.nextBoolean();
+                int v = combination[n];
+                int[] values = new int[n];
+                for (int t = 0; t < n; t++)
+                    values[t] = reverse ? m[combination[positions[t]]][v] : m[v][combination[positions[t]]];
+                assert g.rowEquals(v, combination, positions, values, reverse);
+                if (n > 0) {
+                    values[random.nextInt(n)] ^= 1 << random.nextInt(3);
+                    assert !g.rowEquals(v, combination, positions, values, reverse);
+                }
+            }
+    }
+
+    /**
+     * Проверка графа, читающего матрицу связности без копирования
+     */
+    @Test
+    public void wrapTest() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            int[][] m = Combinatorics.randomMatrix(1, 30, -100000, 100000, 0.5);
+            DenseGraph g = DenseGraph.wrap(m);
+            assert g.getSize() == m.length;
+            for (int a = 0; a < m.length; a++)
+                for (int b = 0; b < m.length; b++) {
+                    assert g.get(a, b) == m[a][b];
+                    assert g.getReverse(a, b) == m[b][a];
+                }
+            int n = random.nextInt(Math.min(m.length, 10));
+            int[] combination = Combinatorics.getRandomCombination(m.length, n + 1).getData();
+            int[] positions = new int[n];
+            for (int t = 0; t < n; t++)
+                positions[t] = random.nextInt(n + 1);
+            int v = combination[n];
+            for (boolean reverse : new boolean[]{false, true}) {
+                int[] values = new int[n];
+                for (int t = 0; t < n; t++)
+                    values[t] = reverse ? m[combination[positions[t]]][v] : m[v][combination[positions[t]]];
+                assert g.rowEquals(v, combination, positions, values, reverse);
+                if (n > 0) {
+                    values[random.nextInt(n)]++;
+                    assert !g.rowEquals(v, combination, positions, values, reverse);
+                }
+            }
+            // матрица не копируется
+            m[0][0]++;
+            assert g.get(0, 0) == m[0][0];
+        }
+    }
+
+    /**
+     * Сверка поиска в плотном графе с поиском по матрице связности
+     */
+    @Test
+    public void compareTest() {
+        for (int i = 0; i < 10; i++) {
+            int[][] source = Combinatorics.randomMatrix(10, 14, -300, 300, 0.4);
+            int[][] pattern = Combinatorics.randomMatrix(3, 5, -300, 300, 0.4);
+            PatternBuilder pb = new PatternBuilder(source);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+
+            DenseGraph g = new DenseGraph(pb.getData());
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                assert new HashSet<>(FastPatternResolver.getAllPatterns(g, pattern, hardCheck)).equals(
+                        new HashSet<>(FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck))
+                );
+                assert new HashSet<>(PatternResolver.getAllPatterns(g, pattern, hardCheck)).equals(
+                        new HashSet<>(PatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck))
+                );
+            }
+        }
+    }
+}
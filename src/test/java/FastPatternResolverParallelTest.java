@@ -0,0 +1,73 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Тест параллельного быстрого алгоритма поиска изоморфных подграфов
+ */
+public class FastPatternResolverParallelTest {
+
+    /**
+     * Сверка результатов параллельного и последовательного поиска при жёсткой проверке
+     */
+    @Test
+    public void compareTest1() {
+        compare(20, 12, 20, 4, 6, -100, 100, 0.5, true);
+    }
+
+    /**
+     * Сверка результатов параллельного и последовательного поиска при нежёсткой проверке
+     */
+    @Test
+    public void compareTest2() {
+        compare(20, 12, 20, 4, 6, -3, 3, 0.3, false);
+    }
+
+    /**
+     * Сверка результатов параллельного и последовательного поиска
+     *
+     * @param testCnt     кол-во тестов
+     * @param minS        минимальный размер матрицы-источника
+     * @param maxS        максимальный размер матрицы-источника
+     * @param minP        минимальный размер матрицы-паттерна
+     * @param maxP        максимальный размер матрицы-паттерна
+     * @param minE        минимальное значение элементов матриц
+     * @param maxE        максимальный значение элементов матриц
+     * @param nonZeroPart доля ненулевых элементов
+     * @param hardCheck   флаг, нужна ли жёсткая сверка
+     */
+    public void compare(
+            int testCnt, int minS, int maxS, int minP, int maxP, int minE, int maxE, double nonZeroPart,
+            boolean hardCheck
+    ) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < testCnt; i++) {
+                // формируем случайные матрицы источника и паттерна
+                int[][] source = Combinatorics.randomMatrix(minS, maxS, minE, maxE, nonZeroPart);
+                int[][] pattern = Combinatorics.randomMatrix(minP, maxP, minE, maxE, nonZeroPart);
+                // добавляем в источник несколько копий паттерна
+                PatternBuilder pb = new PatternBuilder(source);
+                int pCnt = Math.abs(ThreadLocalRandom.current().nextInt()) % 5 + 1;
+                for (int j = 0; j < pCnt; j++)
+                    pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+
+                List<CombinatoricsData> sequential =
+                        FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck);
+                List<CombinatoricsData> parallel =
+                        FastPatternResolver.getAllPatternsParallel(pb.getData(), pattern, hardCheck, pool);
+
+                assert new HashSet<>(sequential).equals(new HashSet<>(parallel));
+                assert sequential.size() == parallel.size();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Тест запросов подсчёта, проверки наличия и поиска первых комбинаций
+ */
+public class FastPatternResolverQueryTest {
+
+    /**
+     * Сверка запросов со списком всех комбинаций при жёсткой проверке
+     */
+    @Test
+    public void compareTest1() {
+        compare(20, 12, 20, 4, 6, -100, 100, 0.5, true);
+    }
+
+    /**
+     * Сверка запросов со списком всех комбинаций при нежёсткой проверке
+     */
+    @Test
+    public void compareTest2() {
+        compare(20, 12, 20, 4, 6, -3, 3, 0.3, false);
+    }
+
+    /**
+     * Проверка, что поиск останавливается после первых комбинаций
+     */
+    @Test
+    public void earlyStopTest() {
+        // полный граф с одинаковыми рёбрами содержит n!/(n-k)! комбинаций
+        int[][] source = new int[300][300];
+        for (int[] row : source)
+            Arrays.fill(row, 1);
+        int[][] pattern = new int[8][8];
+        for (int[] row : pattern)
+            Arrays.fill(row, 1);
+
+        assert FastPatternResolver.exists(source, pattern, true);
+        List<CombinatoricsData> first = FastPatternResolver.findFirst(3, source, pattern, true);
+        assert first.size() == 3;
+        assert Arrays.equals(first.get(0).getData(), new int[]{0, 1, 2, 3, 4, 5, 6, 7});
+        assert Arrays.equals(first.get(2).getData(), new int[]{0, 1, 2, 3, 4, 5, 6, 9});
+    }
+
+    /**
+     * Сверка запросов со списком всех комбинаций
+     *
+     * @param testCnt     кол-во тестов
+     * @param minS        минимальный размер матрицы-источника
+     * @param maxS        максимальный размер матрицы-источника
+     * @param minP        минимальный размер матрицы-паттерна
+     * @param maxP        максимальный размер матрицы-паттерна
+     * @param minE        минимальное значение элементов матриц
+     * @param maxE        максимальный значение элементов матриц
+     * @param nonZeroPart доля ненулевых элементов
+     * @param hardCheck   флаг, нужна ли жёсткая сверка
+     */
+    public void compare(
+            int testCnt, int minS, int maxS, int minP, int maxP, int minE, int maxE, double nonZeroPart,
+            boolean hardCheck
+    ) {
+        for (int i = 0; i < testCnt; i++) {
+            // формируем случайные матрицы источника и паттерна
+            int[][] source = Combinatorics.randomMatrix(minS, maxS, minE, maxE, nonZeroPart);
+            int[][] pattern = Combinatorics.randomMatrix(minP, maxP, minE, maxE, nonZeroPart);
+            // добавляем в источник несколько копий паттерна, иногда не добавляем ни одной
+            PatternBuilder pb = new PatternBuilder(source);
+            int pCnt = Math.abs(ThreadLocalRandom.current().nextInt()) % 5;
+            for (int j = 0; j < pCnt; j++)
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+
+            List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck);
+
+            assert FastPatternResolver.count(pb.getData(), pattern, hardCheck) == all.size();
+            assert FastPatternResolver.exists(pb.getData(), pattern, hardCheck) == !all.isEmpty();
+            for (int k = 0; k <= all.size() + 1; k++) {
+                List<CombinatoricsData> first = FastPatternResolver.findFirst(k, pb.getData(), pattern, hardCheck);
+                assert first.equals(all.subList(0, Math.min(k, all.size())));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Тест ленивого потока комбинаций быстрого алгоритма поиска изоморфных подграфов
+ */
+public class FastPatternResolverStreamTest {
+
+    /**
+     * Сверка потока комбинаций со списком при жёсткой проверке
+     */
+    @Test
+    public void compareTest1() {
+        compare(20, 12, 20, 4, 6, -100, 100, 0.5, true);
+    }
+
+    /**
+     * Сверка потока комбинаций со списком при нежёсткой проверке
+     */
+    @Test
+    public void compareTest2() {
+        compare(20, 12, 20, 4, 6, -3, 3, 0.3, false);
+    }
+
+    /**
+     * Проверка, что первая комбинация находится без перебора всего дерева
+     */
+    @Test
+    public void firstTest() {
+        // полный граф с одинаковыми рёбрами содержит n!/(n-k)! комбинаций
+        int[][] source = new int[200][200];
+        for (int[] row : source)
+            Arrays.fill(row, 1);
+        int[][] pattern = new int[6][6];
+        for (int[] row : pattern)
+            Arrays.fill(row, 1);
+
+        Optional<int[]> first = FastPatternResolver.stream(source, pattern, true).findFirst();
+        assert first.isPresent();
+        assert Arrays.equals(first.get(), new int[]{0, 1, 2, 3, 4, 5});
+    }
+
+    /**
+     * Сверка потока комбинаций со списком
+     *
+     * @param testCnt     кол-во тестов
+     * @param minS        минимальный размер матрицы-источника
+     * @param maxS        максимальный размер матрицы-источника
+     * @param minP        минимальный размер матрицы-паттерна
+     * @param maxP        максимальный размер матрицы-паттерна
+     * @param minE        минимальное значение элементов матриц
+     * @param maxE        максимальный значение элементов матриц
+     * @param nonZeroPart доля ненулевых элементов
+     * @param hardCheck   флаг, нужна ли жёсткая сверка
+     */
+    public void compare(
+            int testCnt, int minS, int maxS, int minP, int maxP, int minE, int maxE, double nonZeroPart,
+            boolean hardCheck
+    ) {
+        for (int i = 0; i < testCnt; i++) {
+            // формируем случайные матрицы источника и паттерна
+            int[][] source = Combinatorics.randomMatrix(minS, maxS, minE, maxE, nonZeroPart);
+            int[][] pattern = Combinatorics.randomMatrix(minP, maxP, minE, maxE, nonZeroPart);
+            // добавляем в источник несколько копий паттерна
+            PatternBuilder pb = new PatternBuilder(source);
+            int pCnt = Math.abs(ThreadLocalRandom.current().nextInt()) % 5 + 1;
+            for (int j = 0; j < pCnt; j++)
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+
+            List<CombinatoricsData> expected = FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck);
+
+            // последовательный поток должен выдавать комбинации в том же порядке
+            List<CombinatoricsData> sequential = FastPatternResolver.stream(pb.getData(), pattern, hardCheck)
+                    .map(CombinatoricsData::new).collect(Collectors.toList());
+            assert expected.equals(sequential);
+
+            // параллельный поток должен сохранять порядок
+            List<CombinatoricsData> parallel = FastPatternResolver.stream(pb.getData(), pattern, hardCheck)
+                    .parallel().map(CombinatoricsData::new).collect(Collectors.toList());
+            assert expected.equals(parallel);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.graph.GraphFile;
+import center.buran.fast.patterns.graph.SparseGraph;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Тест двоичного файла графа
+ */
+public class GraphFileTest {
+
+    /**
+     * Сверка плотного графа, прочитанного из файла, с исходным
+     *
+     * @throws IOException ошибка работы с файлом
+     */
+    @Test
+    public void denseTest() throws IOException {
+        int[][] ranges = {{-5, 5}, {-1000, 1000}, {-100000, 100000}};
+        Path file = Files.createTempFile("graph", ".jpgf");
+        try {
+            for (int[] range : ranges)
+                for (int i = 0; i < 10; i++) {
+                    int[][] pattern = Combinatorics.randomMatrix(3, 5, range[0], range[1], 0.5);
+                    PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 20, range[0], range[1], 0.5));
+                    pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+                    int[][] m = i % 2 == 0 ? pb.getData() : symmetric(pb.getData());
+                    DenseGraph g = new DenseGraph(m);
+
+                    GraphFile.write(file, g);
+                    DenseGraph mapped = GraphFile.mapDense(file);
+                    assert mapped.getSize() == g.getSize();
+                    assert mapped.getWidth() == g.getWidth();
+                    for (int a = 0; a < m.length; a++)
+                        for (int b = 0; b < m.length; b++) {
+                            assert mapped.get(a, b) == m[a][b];
+                            assert mapped.getReverse(a, b) == m[b][a];
+                        }
+                    assert FastPatternResolver.getAllPatterns(mapped, pattern, true)
+                            .equals(FastPatternResolver.getAllPatterns(g, pattern, true));
+                }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Сверка разреженного графа, прочитанного из файла, с исходным
+     *
+     * @throws IOException ошибка работы с файлом
+     */
+    @Test
+    public void sparseTest() throws IOException {
+        Path file = Files.createTempFile("graph", ".jpgf");
+        try {
+            for (int i = 0; i < 20; i++) {
+                int[][] pattern = Combinatorics.randomMatrix(3, 5, -3, 3, 0.4);
+                PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 20, -3, 3, 0.3));
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+                int[][] m = i % 2 == 0 ? pb.getData() : symmetric(pb.getData());
+                SparseGraph g = SparseGraph.fromMatrix(m);
+
+                GraphFile.write(file, g);
+                SparseGraph mapped = GraphFile.mapSparse(file);
+                assert mapped.getSize() == g.getSize();
+                assert mapped.getEdgeCount() == g.getEdgeCount();
+                for (int a = 0; a < m.length; a++) {
+                    assert mapped.getOutDegree(a) == g.getOutDegree(a);
+                    assert mapped.getInDegree(a) == g.getInDegree(a);
+                    for (int b = 0; b < m.length; b++)
+                        assert mapped.get(a, b) == m[a][b];
+                }
+                List<CombinatoricsData> expected = FastPatternResolver.getAllPatterns(g, pattern, false);
+                assert FastPatternResolver.getAllPatterns(mapped, pattern, false).equals(expected);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Проверка, что файл другого формата не читается
+     *
+     * @throws IOException ошибка работы с файлом
+     */
+    @Test
+    public void layoutTest() throws IOException {
+        Path file = Files.createTempFile("graph", ".jpgf");
+        try {
+            GraphFile.write(file, new DenseGraph(new int[][]{{0, 1}, {1, 0}}));
+            try {
+                GraphFile.mapSparse(file);
+                assert false;
+            } catch (AssertionError e) {
+                assert e.getMessage().startsWith("способ хранения");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Сделать матрицу симметричной, отразив нижний треугольник
+     *
+     * @param m матрица
+     * @return та же матрица
+     */
+    private static int[][] symmetric(int[][] m) {
+        for (int a = 0; a < m.length; a++)
+            for (int b = 0; b < a; b++)
+                m[b][a] = m[a][b];
+        return m;
+    }
+}
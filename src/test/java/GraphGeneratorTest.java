@@ -0,0 +1,135 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.graph.GraphGenerator;
+import center.buran.fast.patterns.graph.SparseGraph;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест генератора больших разреженных графов
+ */
+public class GraphGeneratorTest {
+    /**
+     * паттерн для вставки: ориентированный цикл с хордой
+     */
+    private static final int[][] PATTERN = {
+            {0, 7, 0, 0},
+            {0, 0, 7, 9},
+            {0, 0, 0, 7},
+            {7, 0, 0, 0},
+    };
+
+    /**
+     * Проверка, что при одинаковом начальном значении получается один и тот же граф
+     */
+    @Test
+    public void seedTest() {
+        SparseGraph a = generate(42).build();
+        SparseGraph b = generate(42).build();
+        SparseGraph c = generate(43).build();
+        assert a.getEdgeCount() == b.getEdgeCount();
+        assert Arrays.equals(a.getPowers(), b.getPowers());
+        for (int i = 0; i < a.getSize(); i++)
+            for (int e = a.getOutBegin(i); e < a.getOutEnd(i); e++)
+                assert b.get(i, a.getOutTarget(e)) == a.getOutValue(e);
+        assert !Arrays.equals(a.getPowers(), c.getPowers());
+        assert generate(42).getPlanted().size() == generate(42).getPlanted().size();
+    }
+
+    /**
+     * Проверка кол-ва рёбер и значений случайных моделей
+     */
+    @Test
+    public void modelsTest() {
+        int n = 5000;
+        SparseGraph er = new GraphGenerator(n, 1).erdosRenyi(4, -3, 3).build();
+        // совпадающие пары и петли отбрасываются, их меньше процента
+        assert er.getEdgeCount() <= 4 * n && er.getEdgeCount() > 4 * n * 0.99;
+        for (int i = 0; i < n; i++) {
+            assert er.get(i, i) == 0;
+            for (int e = er.getOutBegin(i); e < er.getOutEnd(i); e++)
+                assert er.getOutValue(e) != 0 && er.getOutValue(e) >= -3 && er.getOutValue(e) < 3;
+        }
+
+        SparseGraph cl = new GraphGenerator(n, 1).chungLu(4, 2.1, 1, 2).build();
+        assert cl.getEdgeCount() > 2 * n && cl.getEdgeCount() <= 4 * n;
+        // у степенного распределения есть вершины намного тяжелее средней
+        int maxDegree = 0;
+        for (int i = 0; i < n; i++)
+            maxDegree = Math.max(maxDegree, cl.getOutDegree(i) + cl.getInDegree(i));
+        assert maxDegree > 80;
+
+        SparseGraph cm = new GraphGenerator(n, 1).communities(50, 6, 1, 1, 2).build();
+        assert cm.getEdgeCount() > 6 * n && cm.getEdgeCount() <= 7 * n;
+    }
+
+    /**
+     * Проверка, что вставленные паттерны находятся поиском
+     */
+    @Test
+    public void plantTest() {
+        GraphGenerator generator = generate(7);
+        List<int[]> planted = generator.getPlanted();
+        assert planted.size() > 0;
+        Set<CombinatoricsData> found = new HashSet<>(
+                FastPatternResolver.getAllPatterns(generator.build(), PATTERN, true)
+        );
+        for (int[] combination : planted)
+            assert found.contains(new CombinatoricsData(combination));
+    }
+
+    /**
+     * Проверка конфликтов вставки и недопустимых параметров
+     */
+    @Test
+    public void putPatternTest() {
+        GraphGenerator generator = new GraphGenerator(10, 0);
+        assert generator.putPattern(PATTERN, new int[]{0, 1, 2, 3});
+        // тот же паттерн в тех же вершинах не конфликтует
+        assert generator.putPattern(PATTERN, new int[]{0, 1, 2, 3});
+        // ребро 1 -> 2 уже задано паттерном со значением 7
+        assert !generator.putPattern(PATTERN, new int[]{2, 1, 4, 5});
+        assert generator.getPlanted().size() == 2;
+        assert generator.build().getEdgeCount() == 5;
+
+        try {
+            generator.erdosRenyi(1, 0, 1);
+            assert false;
+        } catch (AssertionError e) {
+            assert e.getMessage().contains("ненулевых");
+        }
+    }
+
+    /**
+     * Проверка построения большого графа
+     */
+    @Test
+    public void largeTest() {
+        int n = 200_000;
+        long start = System.currentTimeMillis();
+        GraphGenerator generator = new GraphGenerator(n, 5).chungLu(5, 2.5, 1, 4);
+        assert generator.plant(PATTERN, 100) == 100;
+        SparseGraph graph = generator.build();
+        // миллион рёбер строится за доли секунды, граница взята с большим запасом
+        assert System.currentTimeMillis() - start < 30_000;
+        assert graph.getSize() == n;
+        for (int[] combination : generator.getPlanted())
+            for (int i = 0; i < PATTERN.length; i++)
+                for (int j = 0; j < PATTERN.length; j++)
+                    assert graph.get(combination[i], combination[j]) == PATTERN[i][j];
+    }
+
+    /**
+     * Сгенерировать небольшой граф со вставленными паттернами
+     *
+     * @param seed начальное значение
+     * @return генератор
+     */
+    private static GraphGenerator generate(long seed) {
+        GraphGenerator generator = new GraphGenerator(2000, seed)
+                .communities(20, 3, 1, 1, 10);
+        generator.plant(PATTERN, 30);
+        return generator;
+    }
+}
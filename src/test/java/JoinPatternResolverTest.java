@@ -0,0 +1,90 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.JoinPatternResolver;
+import center.buran.fast.patterns.graph.GraphGenerator;
+import center.buran.fast.patterns.graph.SparseGraph;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Тест поиска паттернов соединением
+ */
+public class JoinPatternResolverTest {
+
+    /**
+     * Сверка с поиском по матрице связности на случайных графах,
+     * включая несвязные паттерны и ненулевую диагональ
+     */
+    @Test
+    public void matrixTest() {
+        for (int i = 0; i < 200; i++) {
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 25, -2, 3, 0.3));
+            int[][] pattern = Combinatorics.randomMatrix(1, 5, -2, 3, 0.4);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            SparseGraph graph = SparseGraph.fromMatrix(pb.getData());
+            for (boolean hardCheck : new boolean[]{false, true}) {
+                List<CombinatoricsData> expected = FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck);
+                assert JoinPatternResolver.getAllPatterns(graph, pattern, hardCheck).equals(expected);
+                assert JoinPatternResolver.count(graph, pattern, hardCheck) == expected.size();
+            }
+        }
+    }
+
+    /**
+     * Сверка на графе, где списки соседей перемешивают значения рёбер:
+     * у двух вершин-хабов рёбра ко всем остальным вершинам со значениями
+     * по кругу от 1 до 5, а паттерн использует только часть значений
+     */
+    @Test
+    public void mixedValuesTest() {
+        int n = 200;
+        int[][] source = new int[n][n];
+        for (int v = 2; v < n; v++) {
+            source[0][v] = 1 + v % 5;
+            source[1][v] = 1 + (v * 3) % 5;
+            source[v][v + 1 < n ? v + 1 : 2] = 1 + (v * 7) % 5;
+        }
+        source[0][1] = 2;
+        SparseGraph graph = SparseGraph.fromMatrix(source);
+        int[][][] patterns = {
+                // два хаба с общим соседом по заданным значениям
+                {{0, 2, 3}, {0, 0, 4}, {0, 0, 0}},
+                // хаб и путь из двух его соседей
+                {{0, 3, 5}, {0, 0, 2}, {0, 0, 0}},
+                // звезда из хаба с тремя разными значениями
+                {{0, 1, 2, 4}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}},
+        };
+        for (int[][] pattern : patterns)
+            for (boolean hardCheck : new boolean[]{false, true}) {
+                List<CombinatoricsData> expected = FastPatternResolver.getAllPatterns(source, pattern, hardCheck);
+                assert JoinPatternResolver.getAllPatterns(graph, pattern, hardCheck).equals(expected);
+                assert JoinPatternResolver.count(graph, pattern, hardCheck) == expected.size();
+            }
+    }
+
+    /**
+     * Сверка с поиском по спискам соседей на больших разреженных графах
+     */
+    @Test
+    public void sparseTest() {
+        int[][] diamond = {
+                {0, 3, 3, 0},
+                {0, 0, 0, 3},
+                {0, 5, 0, 3},
+                {3, 0, 0, 0},
+        };
+        for (int t = 0; t < 4; t++) {
+            GraphGenerator generator = new GraphGenerator(20_000, t).chungLu(6, 2.2, 1, 6);
+            generator.plant(diamond, 40);
+            SparseGraph graph = generator.build();
+            CompiledPattern compiled = new CompiledPattern(diamond, t % 2 == 0);
+            List<CombinatoricsData> res = JoinPatternResolver.getAllPatterns(graph, compiled);
+            assert res.equals(FastPatternResolver.getAllPatterns(graph, compiled));
+            assert res.size() >= generator.getPlanted().size();
+        }
+    }
+}
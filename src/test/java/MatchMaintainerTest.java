@@ -0,0 +1,123 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.MatchMaintainer;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Тест поддержки множества комбинаций при изменении дата-графа
+ */
+public class MatchMaintainerTest {
+
+    /**
+     * Сверка с полным поиском при жёсткой проверке
+     */
+    @Test
+    public void compareTest1() {
+        compare(10, 10, 16, 3, 5, 0, 3, 0.4, true);
+    }
+
+    /**
+     * Сверка с полным поиском при нежёсткой проверке
+     */
+    @Test
+    public void compareTest2() {
+        compare(10, 10, 16, 3, 5, 0, 3, 0.4, false);
+    }
+
+    /**
+     * Проверка появления и пропадания треугольника
+     */
+    @Test
+    public void triangleTest() {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] source = new int[5][5];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                source[i][j] = i == j || (i == 0 && j == 2) ? 0 : 1;
+
+        MatchMaintainer maintainer = new MatchMaintainer(source, triangle, true);
+        assert maintainer.getMatches().isEmpty();
+        MatchMaintainer.Update update = maintainer.setEdge(0, 2, 1);
+        // 3! перестановок треугольника
+        assert update.getAdded().size() == 6;
+        assert update.getRemoved().isEmpty();
+        update = maintainer.setEdge(1, 0, 0);
+        assert update.getAdded().isEmpty();
+        assert update.getRemoved().size() == 6;
+        assert maintainer.getMatches().isEmpty();
+    }
+
+    /**
+     * Проверка, что изменение переданного паттерна не влияет на поиск
+     */
+    @Test
+    public void patternCopyTest() {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] source = new int[5][5];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                source[i][j] = i == j || (i == 0 && j == 2) ? 0 : 1;
+
+        MatchMaintainer maintainer = new MatchMaintainer(source, triangle, true);
+        triangle[0][2] = 0;
+        assert maintainer.setEdge(0, 2, 1).getAdded().size() == 6;
+    }
+
+    /**
+     * Сверка с полным поиском после каждого изменения ребра
+     *
+     * @param testCnt     кол-во тестов
+     * @param minS        минимальный размер матрицы-источника
+     * @param maxS        максимальный размер матрицы-источника
+     * @param minP        минимальный размер матрицы-паттерна
+     * @param maxP        максимальный размер матрицы-паттерна
+     * @param minE        минимальное значение элементов матриц
+     * @param maxE        максимальный значение элементов матриц
+     * @param nonZeroPart доля ненулевых элементов
+     * @param hardCheck   флаг, нужна ли жёсткая сверка
+     */
+    public void compare(
+            int testCnt, int minS, int maxS, int minP, int maxP, int minE, int maxE, double nonZeroPart,
+            boolean hardCheck
+    ) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < testCnt; i++) {
+            int[][] source = Combinatorics.randomMatrix(minS, maxS, minE, maxE, nonZeroPart);
+            int[][] pattern = Combinatorics.randomMatrix(minP, maxP, minE, maxE, nonZeroPart);
+            PatternBuilder pb = new PatternBuilder(source);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+            int[][] data = pb.getData();
+
+            MatchMaintainer maintainer = new MatchMaintainer(data, pattern, hardCheck);
+            Set<CombinatoricsData> expected = new HashSet<>(FastPatternResolver.getAllPatterns(data, pattern, hardCheck));
+            assert maintainer.getMatches().equals(expected);
+
+            for (int k = 0; k < 30; k++) {
+                int a = random.nextInt(data.length);
+                int b = random.nextInt(data.length);
+                // чаще берём значения из паттерна, чтобы комбинации появлялись
+                int value = random.nextBoolean() ?
+                        pattern[random.nextInt(pattern.length)][random.nextInt(pattern.length)] :
+                        minE + random.nextInt(maxE - minE);
+                data[a][b] = value;
+                MatchMaintainer.Update update = maintainer.setEdge(a, b, value);
+
+                Set<CombinatoricsData> actual = new HashSet<>(
+                        FastPatternResolver.getAllPatterns(data, pattern, hardCheck)
+                );
+                for (CombinatoricsData cd : update.getAdded())
+                    assert actual.contains(cd) && !expected.contains(cd);
+                for (CombinatoricsData cd : update.getRemoved())
+                    assert !actual.contains(cd) && expected.contains(cd);
+                assert expected.size() + update.getAdded().size() - update.getRemoved().size() == actual.size();
+                assert maintainer.getMatches().equals(actual);
+                expected = actual;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.MatchBuffer;
+import center.buran.fast.patterns.Matcher;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Тест многоразового поиска и буфера комбинаций
+ */
+public class MatcherTest {
+
+    /**
+     * Сверка многоразового поиска с обычным
+     */
+    @Test
+    public void compareTest() {
+        for (int i = 0; i < 20; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(3, 6, 0, 3, 0.5);
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 16, 0, 3, 0.5));
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            SourceIndex index = new SourceIndex(pb.getData());
+
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                CompiledPattern compiled = new CompiledPattern(pattern, hardCheck);
+                List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(index, compiled);
+                Matcher matcher = new Matcher(index, compiled);
+                // маленькие страницы, чтобы комбинации занимали несколько страниц
+                MatchBuffer buffer = new MatchBuffer(pattern.length, 7);
+                for (int j = 0; j < 3; j++) {
+                    buffer.clear();
+                    assert matcher.getAllPatterns(buffer) == all.size();
+                    assert buffer.getSize() == all.size();
+                    assert buffer.toList().equals(all);
+                    assert matcher.count() == all.size();
+                    assert matcher.exists() == !all.isEmpty();
+                }
+
+                buffer.clear();
+                int k = all.size() / 2;
+                assert matcher.findFirst(k, buffer) == k;
+                assert buffer.toList().equals(all.subList(0, k));
+            }
+        }
+    }
+
+    /**
+     * Проверка чтения буфера по номерам и обходом страниц
+     */
+    @Test
+    public void bufferTest() {
+        MatchBuffer buffer = new MatchBuffer(3, 10);
+        for (int i = 0; i < 100; i++)
+            buffer.add(new int[]{i, i + 1, i + 2});
+        assert buffer.getSize() == 100;
+        int[] dst = new int[3];
+        for (int i = 0; i < 100; i++) {
+            buffer.copy(i, dst);
+            assert Arrays.equals(dst, new int[]{i, i + 1, i + 2});
+            assert buffer.get(i, 2) == i + 2;
+        }
+        int[] cnt = new int[1];
+        assert !buffer.forEach((page, offset) -> page[offset] == cnt[0]++ && cnt[0] < 50);
+        assert cnt[0] == 50;
+
+        buffer.clear();
+        assert buffer.getSize() == 0;
+        assert buffer.forEach((page, offset) -> false);
+        buffer.add(new int[]{7, 8, 9});
+        assert buffer.get(0, 0) == 7;
+        try {
+            buffer.get(1, 0);
+            assert false;
+        } catch (AssertionError e) {
+            assert e.getMessage().startsWith("номер комбинации");
+        }
+    }
+
+    /**
+     * Проверка, что повторные запросы не выделяют память
+     */
+    @Test
+    public void allocationTest() {
+        int[][] pattern = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(40, 41, 0, 2, 0.5));
+        pb.putPattern(pattern, Combinatorics.getRandomCombination(40, 3));
+        Matcher matcher = new Matcher(new SourceIndex(pb.getData()), new CompiledPattern(pattern, false));
+        MatchBuffer buffer = new MatchBuffer(3);
+
+        // первый запрос выделяет страницы буфера
+        for (int i = 0; i < 20; i++) {
+            buffer.clear();
+            matcher.getAllPatterns(buffer);
+            matcher.count();
+        }
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        long total = 0;
+        for (int i = 0; i < 200; i++) {
+            buffer.clear();
+            total += matcher.getAllPatterns(buffer);
+            total += matcher.count();
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        assert total > 0;
+        // допускаем только служебные выделения самого замера
+        assert allocated < 4096 : allocated;
+    }
+}
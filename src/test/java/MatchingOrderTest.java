@@ -0,0 +1,80 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.MatchingOrder;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест порядка сопоставления вершин паттерна
+ */
+public class MatchingOrderTest {
+
+    /**
+     * Проверка, что порядок сопоставления является перестановкой и что каждая
+     * вершина, связанная с остальными, идёт после хотя бы одной своей соседки
+     */
+    @Test
+    public void orderTest() {
+        for (int i = 0; i < 100; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(2, 10, 1, 5, 0.3);
+            int[] order = MatchingOrder.getOrder(pattern);
+
+            int[] sorted = order.clone();
+            Arrays.sort(sorted);
+            for (int j = 0; j < sorted.length; j++)
+                assert sorted[j] == j;
+
+            // если у вершины есть связь хотя бы с одной выбранной ранее вершиной,
+            // то вершина без таких связей не может быть выбрана раньше неё
+            for (int pos = 1; pos < order.length; pos++) {
+                if (links(pattern, order, pos, order[pos]) > 0)
+                    continue;
+                for (int rest = pos + 1; rest < order.length; rest++)
+                    assert links(pattern, order, pos, order[rest]) == 0;
+            }
+        }
+    }
+
+    /**
+     * Проверка, что перестановка вершин паттерна только переставляет
+     * элементы найденных комбинаций
+     */
+    @Test
+    public void permutedPatternTest() {
+        for (int i = 0; i < 20; i++) {
+            int[][] source = Combinatorics.randomMatrix(12, 16, 1, 3, 0.4);
+            int[][] pattern = Combinatorics.randomMatrix(3, 6, 1, 3, 0.4);
+            int[] p = Combinatorics.getRandomPermutation(pattern.length);
+            int[][] permuted = Combinatorics.makePermute(pattern, p);
+
+            // комбинации для переставленного паттерна, переведённые к исходному
+            Set<CombinatoricsData> expected = new HashSet<>();
+            for (CombinatoricsData cd : FastPatternResolver.getAllPatterns(source, permuted, false))
+                expected.add(Combinatorics.makePermute(cd.getData(), p));
+
+            assert expected.equals(new HashSet<>(FastPatternResolver.getAllPatterns(source, pattern, false)));
+        }
+    }
+
+    /**
+     * Кол-во ненулевых связей вершины с первыми `pos` вершинами порядка
+     *
+     * @param pattern паттерн
+     * @param order   порядок сопоставления
+     * @param pos     кол-во выбранных вершин
+     * @param v       вершина паттерна
+     * @return кол-во связей
+     */
+    private static int links(int[][] pattern, int[] order, int pos, int v) {
+        int res = 0;
+        for (int i = 0; i < pos; i++) {
+            if (pattern[order[i]][v] != 0)
+                res++;
+            if (pattern[v][order[i]] != 0)
+                res++;
+        }
+        return res;
+    }
+}
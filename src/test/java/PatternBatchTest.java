@@ -0,0 +1,56 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.PatternBatch;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест поиска набора паттернов за один перебор
+ */
+public class PatternBatchTest {
+
+    /**
+     * Сверка поиска набора с поиском каждого паттерна по отдельности
+     */
+    @Test
+    public void compareTest() {
+        for (int i = 0; i < 20; i++) {
+            int[][] source = Combinatorics.randomMatrix(12, 16, 0, 2, 0.4);
+            PatternBuilder pb = new PatternBuilder(source);
+            List<int[][]> patterns = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                int[][] pattern = Combinatorics.randomMatrix(1, 5, 0, 2, 0.5);
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+                patterns.add(pattern);
+                // добавляем паттерны, совпадающие с уже добавленными, чтобы у них были общие префиксы
+                patterns.add(pattern);
+                patterns.add(Combinatorics.makePermute(pattern, Combinatorics.getRandomPermutation(pattern.length)));
+            }
+
+            SourceIndex index = new SourceIndex(pb.getData());
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                List<List<CombinatoricsData>> batch = FastPatternResolver.getAllPatterns(index, patterns, hardCheck);
+                assert batch.size() == patterns.size();
+                for (int j = 0; j < patterns.size(); j++)
+                    assert batch.get(j).equals(FastPatternResolver.getAllPatterns(index, patterns.get(j), hardCheck));
+            }
+        }
+    }
+
+    /**
+     * Проверка, что паттерны с общими префиксами делят узлы дерева
+     */
+    @Test
+    public void sharedPrefixTest() {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] square = {{0, 1, 1, 1}, {1, 0, 1, 1}, {1, 1, 0, 1}, {1, 1, 1, 0}};
+        PatternBatch batch = new PatternBatch(Arrays.asList(triangle, triangle, square));
+        assert batch.getSize() == 3;
+        // путь клики из 4 вершин проходит через путь треугольника
+        assert batch.getNodeCount() == 4;
+    }
+}
@@ -0,0 +1,99 @@
+import center.buran.fast.patterns.*;
+import center.buran.fast.patterns.graph.GraphGenerator;
+import center.buran.fast.patterns.graph.SparseGraph;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тест приближённого подсчёта комбинаций
+ */
+public class PatternEstimatorTest {
+    /**
+     * ориентированный цикл из четырёх вершин
+     */
+    private static final int[][] CYCLE = {
+            {0, 1, 0, 0},
+            {0, 0, 1, 0},
+            {0, 0, 0, 1},
+            {1, 0, 0, 0},
+    };
+
+    /**
+     * Сверка оценки по плотному графу с точным подсчётом
+     */
+    @Test
+    public void denseTest() {
+        for (int t = 0; t < 10; t++) {
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(30, 31, 0, 2, 0.4));
+            int[][] pattern = Combinatorics.randomMatrix(3, 5, 0, 2, 0.5);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            boolean hardCheck = t % 2 == 0;
+            SourceIndex index = new SourceIndex(pb.getData());
+            CompiledPattern compiled = new CompiledPattern(pattern, hardCheck);
+            long exact = FastPatternResolver.count(index, compiled);
+
+            CountEstimate estimate = new PatternEstimator(index, compiled, t).estimate(50_000, 0.001);
+            assert estimate.getSamples() == 50_000;
+            assert estimate.contains(exact) : estimate + " " + exact;
+            assert Math.abs(estimate.getEstimate() - exact) <= 0.1 * exact : estimate + " " + exact;
+        }
+    }
+
+    /**
+     * Сверка оценки по разреженному графу с точным подсчётом
+     */
+    @Test
+    public void sparseTest() {
+        for (int t = 0; t < 6; t++) {
+            GraphGenerator generator = new GraphGenerator(3000, t).chungLu(4, 2.3, 1, 2);
+            generator.plant(CYCLE, 50);
+            SparseGraph graph = generator.build();
+            boolean hardCheck = t % 2 == 0;
+            CompiledPattern compiled = new CompiledPattern(CYCLE, hardCheck);
+            long exact = FastPatternResolver.getAllPatterns(graph, compiled).size();
+
+            CountEstimate estimate = new PatternEstimator(graph, compiled, t).estimate(0.05, 0.01, 20_000);
+            assert estimate.isConverged() : estimate + " " + exact;
+            assert estimate.getRelativeError() <= 0.05;
+            assert Math.abs(estimate.getEstimate() - exact) <= 0.1 * exact : estimate + " " + exact;
+        }
+    }
+
+    /**
+     * Проверка оценки отсутствующего паттерна и доверительного интервала
+     */
+    @Test
+    public void intervalTest() {
+        int[][] source = Combinatorics.randomMatrix(20, 21, 0, 2, 0.3);
+        // в дата-графе нет значения 5
+        int[][] pattern = {{0, 5}, {5, 0}};
+        CountEstimate none = new PatternEstimator(
+                new SourceIndex(source), new CompiledPattern(pattern, false), 1
+        ).estimate(1000, 0.05);
+        assert none.getEstimate() == 0 && none.getUpper() == 0;
+        assert !none.isConverged();
+
+        // отсутствующий паттерн не ждёт ограничения времени
+        long start = System.currentTimeMillis();
+        CountEstimate absent = new PatternEstimator(
+                new SourceIndex(source), new CompiledPattern(pattern, false), 1
+        ).estimate(0.01, 0.05, 60_000);
+        assert System.currentTimeMillis() - start < 10_000;
+        assert absent.isConverged() && absent.getEstimate() == 0 && absent.getUpper() == 0;
+
+        // недостижимая точность останавливается по времени
+        CountEstimate timed = new PatternEstimator(
+                new SourceIndex(source), new CompiledPattern(CYCLE, false), 1
+        ).estimate(1e-9, 0.05, 50);
+        assert !timed.isConverged() && timed.getSamples() > 0;
+
+        CountEstimate estimate = new PatternEstimator(
+                new SourceIndex(source), new CompiledPattern(CYCLE, false), 1
+        ).estimate(10_000, 0.05);
+        assert Math.abs(estimate.getConfidence() - 0.95) < 1e-12;
+        // полуширина 95%-го интервала - 1.96 стандартной ошибки
+        double halfWidth = estimate.getUpper() - estimate.getEstimate();
+        assert Math.abs(halfWidth / estimate.getStandardError() - 1.959964) < 1e-4;
+    }
+}
@@ -0,0 +1,119 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.PatternQueryService;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Тест сервиса запросов поиска паттернов
+ */
+public class PatternQueryServiceTest {
+
+    /**
+     * Сверка результатов сервиса с обычным поиском
+     *
+     * @throws Exception ошибка выполнения запроса
+     */
+    @Test
+    public void compareTest() throws Exception {
+        try (PatternQueryService service = new PatternQueryService(4, 100, 60_000)) {
+            for (int i = 0; i < 10; i++) {
+                int[][] pattern = Combinatorics.randomMatrix(3, 6, 0, 3, 0.5);
+                PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 16, 0, 3, 0.5));
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+                SourceIndex index = new SourceIndex(pb.getData());
+                CompiledPattern compiled = new CompiledPattern(pattern, i % 2 == 0);
+
+                List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(index, compiled);
+                CompletableFuture<List<CombinatoricsData>> allFuture = service.getAllPatterns(index, compiled);
+                CompletableFuture<List<CombinatoricsData>> firstFuture = service.findFirst(1, index, compiled);
+                CompletableFuture<Long> countFuture = service.count(index, compiled);
+                CompletableFuture<Boolean> existsFuture = service.exists(index, compiled);
+                assert allFuture.get().equals(all);
+                assert firstFuture.get().equals(all.subList(0, Math.min(1, all.size())));
+                assert countFuture.get() == all.size();
+                assert existsFuture.get() == !all.isEmpty();
+            }
+            assert service.getPendingCount() == 0;
+        }
+    }
+
+    /**
+     * Проверка, что запрос с истёкшим сроком завершается и освобождает поток
+     *
+     * @throws Exception ошибка выполнения запроса
+     */
+    @Test
+    public void timeoutTest() throws Exception {
+        try (PatternQueryService service = new PatternQueryService(1, 10, 100)) {
+            CompletableFuture<Long> slow = service.count(fullIndex(200), emptyPattern(7));
+            try {
+                slow.get();
+                assert false;
+            } catch (ExecutionException e) {
+                assert e.getCause() instanceof TimeoutException;
+            }
+            // единственный поток освободился и выполняет следующий запрос
+            int[][] edge = {{0, 1}, {0, 0}};
+            assert service.count(fullIndex(5), new CompiledPattern(edge, false)).get() == 20;
+        }
+    }
+
+    /**
+     * Проверка отмены запроса и отказа при заполненной очереди
+     *
+     * @throws Exception ошибка выполнения запроса
+     */
+    @Test
+    public void cancelTest() throws Exception {
+        try (PatternQueryService service = new PatternQueryService(1, 1, 60_000)) {
+            SourceIndex index = fullIndex(200);
+            CompiledPattern pattern = emptyPattern(7);
+            CompletableFuture<Long> running = service.count(index, pattern);
+            CompletableFuture<Long> queued = service.count(index, pattern);
+            CompletableFuture<Long> rejected = service.count(index, pattern);
+            try {
+                rejected.get();
+                assert false;
+            } catch (ExecutionException e) {
+                assert e.getCause() instanceof RejectedExecutionException;
+            }
+
+            assert running.cancel(true);
+            assert queued.cancel(true);
+            int[][] edge = {{0, 1}, {0, 0}};
+            assert service.count(fullIndex(5), new CompiledPattern(edge, false)).get(10, TimeUnit.SECONDS) == 20;
+        }
+    }
+
+    /**
+     * Получить индекс полного графа
+     *
+     * @param n кол-во вершин
+     * @return индекс графа, у которого все рёбра, кроме петель, равны 1
+     */
+    private static SourceIndex fullIndex(int n) {
+        int[][] source = new int[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                source[i][j] = i == j ? 0 : 1;
+        return new SourceIndex(source);
+    }
+
+    /**
+     * Получить паттерн без рёбер с нежёсткой проверкой; в полном графе
+     * ему соответствуют все размещения вершин, поэтому перебор очень долгий
+     *
+     * @param k кол-во вершин
+     * @return подготовленный паттерн
+     */
+    private static CompiledPattern emptyPattern(int k) {
+        return new CompiledPattern(new int[k][k], false);
+    }
+}
@@ -135,4 +135,20 @@ public class PatternResolverTest {
             }
         }
     }
+
+    /**
+     * Сверка параллельного полного перебора с последовательным
+     */
+    @Test
+    public void parallelTest() {
+        for (int i = 0; i < 10; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(3, 5, 0, 2, 0.5);
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(8, 12, 0, 2, 0.5));
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            List<CombinatoricsData> expected = PatternResolver.getAllPatterns(pb.getData(), pattern, i % 2 == 0);
+            List<CombinatoricsData> actual = PatternResolver.getAllPatternsParallel(pb.getData(), pattern, i % 2 == 0);
+            assert actual.size() == expected.size();
+            assert new HashSet<>(actual).equals(new HashSet<>(expected));
+        }
+    }
 }
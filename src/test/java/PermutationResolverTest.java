@@ -1,9 +1,12 @@
+import center.buran.fast.patterns.FastPatternResolver;
 import center.buran.fast.patterns.misc.Combinatorics;
 import center.buran.fast.patterns.misc.CombinatoricsData;
 import center.buran.fast.patterns.PatternResolver;
+import center.buran.fast.patterns.misc.PatternBuilder;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -69,4 +72,46 @@ public class PermutationResolverTest {
         }
     }
 
+    /**
+     * Сверка перебора с отсечениями с перебором всех перестановок
+     */
+    @Test
+    public void test3() {
+        for (int i = 0; i < 200; i++) {
+            boolean hardCheck = i % 2 == 0;
+            // маленький диапазон значений, чтобы совпадений было много
+            int[][] m = Combinatorics.randomMatrix(2, 7, 0, 2, 0.5);
+            int[][] target = i % 4 < 2 ?
+                    Combinatorics.makePermute(m, Combinatorics.getRandomPermutation(m.length)) :
+                    Combinatorics.randomMatrix(m.length, m.length + 1, 0, 2, 0.3);
+
+            Set<CombinatoricsData> expected = new HashSet<>();
+            Combinatorics.generatePermutations(m.length, p -> {
+                for (int a = 0; a < m.length; a++)
+                    for (int b = 0; b < m.length; b++)
+                        if ((hardCheck || target[a][b] != 0) && target[a][b] != m[p[a]][p[b]])
+                            return;
+                expected.add(new CombinatoricsData(p.clone()));
+            });
+            assert PatternResolver.getAllIsomorphicPermutations(m, target, hardCheck).equals(expected);
+        }
+    }
+
+    /**
+     * Сверка полного перебора с быстрым поиском для паттернов из 8 вершин
+     */
+    @Test
+    public void test4() {
+        for (int i = 0; i < 2; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(8, 9, 0, 3, 0.5);
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(11, 12, 0, 3, 0.5));
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+
+            List<CombinatoricsData> expected = FastPatternResolver.getAllPatterns(pb.getData(), pattern, i == 0);
+            List<CombinatoricsData> actual = PatternResolver.getAllPatterns(pb.getData(), pattern, i == 0);
+            assert !actual.isEmpty();
+            assert new HashSet<>(actual).equals(new HashSet<>(expected));
+            assert actual.size() == expected.size();
+        }
+    }
 }
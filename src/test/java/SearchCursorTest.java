@@ -0,0 +1,119 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.MatchBuffer;
+import center.buran.fast.patterns.SearchCursor;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Тест итеративного поиска с контрольными точками
+ */
+public class SearchCursorTest {
+
+    /**
+     * Сверка итеративного поиска с рекурсивным
+     */
+    @Test
+    public void compareTest() {
+        for (int i = 0; i < 20; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(3, 6, 0, 3, 0.5);
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 16, 0, 3, 0.5));
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            SourceIndex index = new SourceIndex(pb.getData());
+
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                CompiledPattern compiled = new CompiledPattern(pattern, hardCheck);
+                List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(index, compiled);
+
+                SearchCursor cursor = new SearchCursor(index, compiled);
+                List<CombinatoricsData> res = new ArrayList<>();
+                while (cursor.next())
+                    res.add(new CombinatoricsData(cursor.get()));
+                assert res.equals(all);
+                assert cursor.isDone();
+                assert cursor.getMatches() == all.size();
+
+                MatchBuffer buffer = new MatchBuffer(pattern.length);
+                assert new SearchCursor(index, compiled).next(Integer.MAX_VALUE, buffer) == all.size();
+                assert buffer.toList().equals(all);
+            }
+        }
+    }
+
+    /**
+     * Проверка продолжения перебора с контрольных точек
+     */
+    @Test
+    public void checkpointTest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(3, 6, 0, 3, 0.5);
+            PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(10, 16, 0, 3, 0.5));
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            CompiledPattern compiled = new CompiledPattern(pattern, i % 2 == 0);
+            List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(pb.getData(), pattern, i % 2 == 0);
+
+            // каждую порцию ищем новым объектом по новому индексу того же графа
+            byte[] checkpoint = new SearchCursor(new SourceIndex(pb.getData()), compiled).checkpoint();
+            List<CombinatoricsData> res = new ArrayList<>();
+            while (true) {
+                SearchCursor cursor = new SearchCursor(new SourceIndex(pb.getData()), compiled, checkpoint);
+                assert cursor.getMatches() == res.size();
+                if (cursor.isDone())
+                    break;
+                int portion = 1 + random.nextInt(3);
+                for (int j = 0; j < portion && cursor.next(); j++)
+                    res.add(new CombinatoricsData(cursor.get()));
+                checkpoint = cursor.checkpoint();
+                assert checkpoint.length <= 33 + 4 * pattern.length;
+            }
+            assert res.equals(all);
+        }
+    }
+
+    /**
+     * Проверка отказа продолжать перебор с чужой или испорченной контрольной точки
+     */
+    @Test
+    public void invalidCheckpointTest() {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] source = new int[6][6];
+        for (int i = 0; i < 6; i++)
+            for (int j = 0; j < 6; j++)
+                source[i][j] = i == j ? 0 : 1;
+        SourceIndex index = new SourceIndex(source);
+        SearchCursor cursor = new SearchCursor(index, new CompiledPattern(triangle, true));
+        cursor.next();
+        byte[] checkpoint = cursor.checkpoint();
+
+        int[][] path = {{0, 1, 0}, {0, 0, 1}, {0, 0, 0}};
+        expectError(() -> new SearchCursor(index, new CompiledPattern(path, true), checkpoint));
+        expectError(() -> new SearchCursor(index, new CompiledPattern(triangle, true),
+                Arrays.copyOf(checkpoint, checkpoint.length - 1)));
+        // вторая позиция получает ту же вершину, что и первая
+        byte[] broken = checkpoint.clone();
+        broken[broken.length - 5] = 0;
+        expectError(() -> new SearchCursor(index, new CompiledPattern(triangle, true), broken));
+    }
+
+    /**
+     * Проверить, что действие завершается ошибкой
+     *
+     * @param action действие
+     */
+    private static void expectError(Runnable action) {
+        boolean failed = false;
+        try {
+            action.run();
+        } catch (AssertionError e) {
+            failed = true;
+        }
+        assert failed;
+    }
+}
@@ -0,0 +1,92 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.SearchStats;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Тест статистики дерева перебора
+ */
+public class SearchStatsTest {
+
+    /**
+     * Сверка поиска со статистикой с обычным поиском и проверка счётчиков
+     */
+    @Test
+    public void compareTest() {
+        for (int i = 0; i < 20; i++) {
+            int[][] source = Combinatorics.randomMatrix(12, 20, 0, 3, 0.4);
+            int[][] pattern = Combinatorics.randomMatrix(3, 6, 0, 3, 0.5);
+            PatternBuilder pb = new PatternBuilder(source);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+            SourceIndex index = new SourceIndex(pb.getData());
+
+            for (boolean hardCheck : new boolean[]{true, false}) {
+                CompiledPattern compiled = new CompiledPattern(pattern, hardCheck);
+                SearchStats stats = new SearchStats();
+                List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(index, compiled);
+                assert FastPatternResolver.getAllPatterns(index, compiled, stats).equals(all);
+                assert FastPatternResolver.count(index, compiled, stats) == all.size();
+
+                int k = pattern.length;
+                assert stats.getSearches() == 2;
+                assert stats.getMatches() == 2L * all.size();
+                assert stats.getDepth() == k;
+                // кандидаты последней позиции, прошедшие проверки, - это найденные комбинации
+                assert stats.getNodes(k - 1) - stats.getEdgeRejections(k - 1) - stats.getDomainRejections(k - 1)
+                        == stats.getMatches();
+                for (int d = 0; d < k; d++) {
+                    assert stats.getFiltered(d) >= 0 && stats.getFiltered(d) <= 2L * source.length;
+                    assert stats.getEdgeRejections(d) + stats.getDomainRejections(d) <= stats.getNodes(d);
+                    assert stats.getTime(d) >= 0;
+                }
+                // первая позиция перебирает все вершины, прошедшие фильтр
+                assert stats.getNodes(0) + stats.getFiltered(0) == 2L * source.length;
+            }
+        }
+    }
+
+    /**
+     * Проверка записи статистики событиями JFR
+     *
+     * @throws IOException ошибка записи файла
+     */
+    @Test
+    public void jfrTest() throws IOException {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] source = new int[6][6];
+        for (int i = 0; i < 6; i++)
+            for (int j = 0; j < 6; j++)
+                source[i][j] = i == j ? 0 : 1;
+
+        Path file = Files.createTempFile("search-stats", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("center.buran.fast.patterns.SearchDepth");
+            recording.start();
+            FastPatternResolver.count(new SourceIndex(source), new CompiledPattern(triangle, true), new SearchStats());
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assert events.size() == 3;
+            long[] nodes = new long[3];
+            for (RecordedEvent event : events)
+                nodes[event.getInt("depth")] = event.getLong("nodes");
+            // 6 вершин, затем 5 и 4 оставшихся
+            assert Arrays.equals(nodes, new long[]{6, 30, 120});
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import center.buran.fast.patterns.CompiledPattern;
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.ShardedSearch;
+import center.buran.fast.patterns.graph.DenseGraph;
+import center.buran.fast.patterns.graph.GraphFile;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Тест поиска в нескольких рабочих процессах
+ */
+public class ShardedSearchTest {
+
+    /**
+     * Сверка шардированного поиска с обычным
+     *
+     * @throws IOException ошибка работы с файлом или процессами
+     */
+    @Test
+    public void compareTest() throws IOException {
+        PatternBuilder pb = new PatternBuilder(Combinatorics.randomMatrix(30, 40, 0, 3, 0.5));
+        List<int[][]> patterns = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int[][] pattern = Combinatorics.randomMatrix(3, 5, 0, 3, 0.5);
+            pb.putPattern(pattern, Combinatorics.getRandomCombination(pb.getData().length, pattern.length));
+            patterns.add(pattern);
+        }
+
+        Path file = Files.createTempFile("graph", ".jpgf");
+        // шардов больше, чем процессов, и больше, чем вершин в части из них
+        try (ShardedSearch search = writeAndOpen(file, pb.getData(), 3, 7)) {
+            assert search.getWorkerCount() == 3;
+            assert search.getSize() == pb.getData().length;
+            for (int i = 0; i < patterns.size(); i++) {
+                CompiledPattern compiled = new CompiledPattern(patterns.get(i), i % 2 == 0);
+                List<CombinatoricsData> all = FastPatternResolver.getAllPatterns(pb.getData(), patterns.get(i), i % 2 == 0);
+                assert search.getAllPatterns(compiled).equals(all);
+                assert search.count(compiled) == all.size();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Проверка шардов, часть которых не содержит ни одной вершины
+     *
+     * @throws IOException ошибка работы с файлом или процессами
+     */
+    @Test
+    public void emptyShardsTest() throws IOException {
+        int[][] triangle = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        int[][] source = new int[4][4];
+        for (int i = 0; i < 4; i++)
+            for (int j = 0; j < 4; j++)
+                source[i][j] = i == j ? 0 : 1;
+
+        Path file = Files.createTempFile("graph", ".jpgf");
+        try (ShardedSearch search = writeAndOpen(file, source, 2, 10)) {
+            CompiledPattern compiled = new CompiledPattern(triangle, true);
+            // 4 тройки вершин по 3! перестановки
+            assert search.count(compiled) == 24;
+            assert search.getAllPatterns(compiled).equals(FastPatternResolver.getAllPatterns(source, triangle, true));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Записать граф в файл и запустить процессы
+     *
+     * @param file        файл графа
+     * @param source      матрица дата-графа
+     * @param workerCount кол-во процессов
+     * @param shardCount  кол-во шардов
+     * @return координатор
+     * @throws IOException ошибка работы с файлом или процессами
+     */
+    private static ShardedSearch writeAndOpen(Path file, int[][] source, int workerCount, int shardCount)
+            throws IOException {
+        GraphFile.write(file, new DenseGraph(source));
+        return new ShardedSearch(file, workerCount, shardCount);
+    }
+}
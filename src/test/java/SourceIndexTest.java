@@ -0,0 +1,80 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.PatternResolver;
+import center.buran.fast.patterns.SourceIndex;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест индекса дата-графа
+ */
+public class SourceIndexTest {
+
+    /**
+     * Проверка полустепеней и гистограмм значений рёбер
+     */
+    @Test
+    public void histogramTest() {
+        for (int i = 0; i < 50; i++) {
+            int[][] m = Combinatorics.randomMatrix(1, 30, -3, 3, 0.5);
+            SourceIndex index = new SourceIndex(m);
+            for (int v = 0; v < m.length; v++) {
+                int out = 0;
+                int in = 0;
+                for (int j = 0; j < m.length; j++) {
+                    if (m[v][j] != 0)
+                        out++;
+                    if (m[j][v] != 0)
+                        in++;
+                }
+                assert index.getOutDegree(v) == out;
+                assert index.getInDegree(v) == in;
+                for (int value = -3; value <= 3; value++) {
+                    if (value == 0)
+                        continue;
+                    int outCnt = 0;
+                    int inCnt = 0;
+                    for (int j = 0; j < m.length; j++) {
+                        if (m[v][j] == value)
+                            outCnt++;
+                        if (m[j][v] == value)
+                            inCnt++;
+                    }
+                    assert index.getOutValueCount(v, value) == outCnt;
+                    assert index.getInValueCount(v, value) == inCnt;
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверка, что один индекс можно использовать для поиска разных паттернов
+     */
+    @Test
+    public void sharedIndexTest() {
+        for (int i = 0; i < 10; i++) {
+            int[][] source = Combinatorics.randomMatrix(12, 16, -3, 3, 0.4);
+            // добавляем в источник несколько разных паттернов
+            List<int[][]> patterns = new ArrayList<>();
+            PatternBuilder pb = new PatternBuilder(source);
+            for (int j = 0; j < 5; j++) {
+                int[][] pattern = Combinatorics.randomMatrix(3, 6, -3, 3, 0.4);
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+                patterns.add(pattern);
+            }
+
+            SourceIndex index = new SourceIndex(pb.getData());
+            for (int[][] pattern : patterns)
+                for (boolean hardCheck : new boolean[]{true, false}) {
+                    List<CombinatoricsData> indexed = FastPatternResolver.getAllPatterns(index, pattern, hardCheck);
+                    assert new HashSet<>(indexed).equals(
+                            new HashSet<>(PatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck))
+                    );
+                    assert FastPatternResolver.count(index, pattern, hardCheck) == indexed.size();
+                }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import center.buran.fast.patterns.FastPatternResolver;
+import center.buran.fast.patterns.graph.SparseGraph;
+import center.buran.fast.patterns.misc.Combinatorics;
+import center.buran.fast.patterns.misc.CombinatoricsData;
+import center.buran.fast.patterns.misc.PatternBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Тест разреженного графа и поиска паттернов в нём
+ */
+public class SparseGraphTest {
+
+    /**
+     * Проверка, что разреженный граф хранит те же рёбра, что и матрица связности
+     */
+    @Test
+    public void matrixTest() {
+        for (int i = 0; i < 100; i++) {
+            int[][] m = Combinatorics.randomMatrix(1, 30, -5, 5, 0.3);
+            SparseGraph g = SparseGraph.fromMatrix(m);
+            assert g.getSize() == m.length;
+            for (int a = 0; a < m.length; a++) {
+                int out = 0;
+                int in = 0;
+                for (int b = 0; b < m.length; b++) {
+                    assert g.get(a, b) == m[a][b];
+                    if (m[a][b] != 0)
+                        out++;
+                    if (m[b][a] != 0)
+                        in++;
+                }
+                assert g.getOutDegree(a) == out;
+                assert g.getInDegree(a) == in;
+                // списки соседей отсортированы
+                for (int e = g.getOutBegin(a) + 1; e < g.getOutEnd(a); e++)
+                    assert g.getOutTarget(e - 1) < g.getOutTarget(e);
+                for (int e = g.getInBegin(a) + 1; e < g.getInEnd(a); e++)
+                    assert g.getInSource(e - 1) < g.getInSource(e);
+            }
+        }
+    }
+
+    /**
+     * Проверка подграфа из рёбер с заданным значением
+     */
+    @Test
+    public void filterTest() {
+        for (int i = 0; i < 50; i++) {
+            int[][] m = Combinatorics.randomMatrix(1, 30, -3, 3, 0.5);
+            SparseGraph g = SparseGraph.fromMatrix(m);
+            for (int value = -3; value < 3; value++) {
+                if (value == 0)
+                    continue;
+                SparseGraph f = g.filter(value);
+                assert f.getSize() == m.length;
+                for (int a = 0; a < m.length; a++)
+                    for (int b = 0; b < m.length; b++)
+                        assert f.get(a, b) == (m[a][b] == value ? value : 0);
+            }
+        }
+        // если значение у всех рёбер одно, граф не копируется
+        SparseGraph single = SparseGraph.fromMatrix(new int[][]{{0, 4}, {4, 0}});
+        assert single.filter(4) == single;
+    }
+
+    /**
+     * Сверка поиска в разреженном графе с поиском по матрице связности при жёсткой проверке
+     */
+    @Test
+    public void compareTest1() {
+        compare(20, 12, 20, 4, 6, -100, 100, 0.5, true);
+    }
+
+    /**
+     * Сверка поиска в разреженном графе с поиском по матрице связности при нежёсткой проверке
+     */
+    @Test
+    public void compareTest2() {
+        compare(20, 12, 20, 4, 6, -3, 3, 0.3, false);
+    }
+
+    /**
+     * Сверка поиска в разреженном графе с поиском по матрице связности
+     *
+     * @param testCnt     кол-во тестов
+     * @param minS        минимальный размер матрицы-источника
+     * @param maxS        максимальный размер матрицы-источника
+     * @param minP        минимальный размер матрицы-паттерна
+     * @param maxP        максимальный размер матрицы-паттерна
+     * @param minE        минимальное значение элементов матриц
+     * @param maxE        максимальный значение элементов матриц
+     * @param nonZeroPart доля ненулевых элементов
+     * @param hardCheck   флаг, нужна ли жёсткая сверка
+     */
+    public void compare(
+            int testCnt, int minS, int maxS, int minP, int maxP, int minE, int maxE, double nonZeroPart,
+            boolean hardCheck
+    ) {
+        for (int i = 0; i < testCnt; i++) {
+            // формируем случайные матрицы источника и паттерна
+            int[][] source = Combinatorics.randomMatrix(minS, maxS, minE, maxE, nonZeroPart);
+            int[][] pattern = Combinatorics.randomMatrix(minP, maxP, minE, maxE, nonZeroPart);
+            // добавляем в источник несколько копий паттерна
+            PatternBuilder pb = new PatternBuilder(source);
+            int pCnt = Math.abs(ThreadLocalRandom.current().nextInt()) % 5 + 1;
+            for (int j = 0; j < pCnt; j++)
+                pb.putPattern(pattern, Combinatorics.getRandomCombination(source.length, pattern.length));
+
+            List<CombinatoricsData> dense = FastPatternResolver.getAllPatterns(pb.getData(), pattern, hardCheck);
+            List<CombinatoricsData> sparse =
+                    FastPatternResolver.getAllPatterns(SparseGraph.fromMatrix(pb.getData()), pattern, hardCheck);
+            assert dense.equals(sparse);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package center.buran.fast.patterns;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Тест множеств вершин-кандидатов; множества доступны только внутри
+ * пакета, поэтому тест лежит в пакете поиска
+ */
+public class CandidateDomainsTest {
+    /**
+     * путь a -> b -> c со значениями рёбер 1 и 2; порядок сопоставления
+     * b, a, c, т.е. позиция 0 - вершина b, 1 - a, 2 - c
+     */
+    private static final int[][] PATH = {
+            {0, 1, 0},
+            {0, 0, 2},
+            {0, 0, 0},
+    };
+
+    /**
+     * Дата-граф из 6 вершин:
+     * <pre>
+     * 0 -> 1 (1), 3 -> 1 (1), 4 -> 5 (1) - подходят для ребра a -> b
+     * 1 -> 2 (2), 5 -> 2 (2)             - подходят для ребра b -> c
+     * 1 -> 3 (7)                         - лишнее ребро для жёсткой проверки
+     * 4 -> 4 (5)                         - петля, вершина 4 не проходит по диагонали
+     * </pre>
+     *
+     * @return матрица связности
+     */
+    private static int[][] source() {
+        int[][] source = new int[6][6];
+        source[0][1] = 1;
+        source[3][1] = 1;
+        source[4][5] = 1;
+        source[1][2] = 2;
+        source[5][2] = 2;
+        source[1][3] = 7;
+        source[4][4] = 5;
+        return source;
+    }
+
+    /**
+     * Проверка начальных множеств: фильтр по сигнатурам и диагонали
+     */
+    @Test
+    public void initialTest() {
+        CompiledPattern compiled = new CompiledPattern(PATH, true);
+        assert Arrays.equals(compiled.getOrder(), new int[]{1, 0, 2});
+        CandidateDomains domains = new CandidateDomains(new SourceIndex(source()), compiled, false);
+        // b: входящее ребро 1 и исходящее 2
+        assert Arrays.equals(domain(domains, 0), new int[]{1, 5});
+        assert domains.getInitialSize(0) == 2;
+        // a: исходящее ребро 1, вершина 4 отброшена из-за петли
+        assert domains.getInitialSize(1) == 2;
+        // c: входящее ребро 2
+        assert domains.getInitialSize(2) == 1;
+
+        // выбор по номеру совпадает с перебором
+        assert domains.size(0) == 2;
+        assert domains.select(0, 0) == 1 && domains.select(0, 1) == 5;
+    }
+
+    /**
+     * Проверка пересечения с соседями при выборе вершины
+     */
+    @Test
+    public void assignTest() {
+        CompiledPattern compiled = new CompiledPattern(PATH, true);
+        CandidateDomains domains = new CandidateDomains(new SourceIndex(source()), compiled, false);
+        // b = 1: кандидаты a - входящие соседи 1 со значением 1, то есть 0 и 3,
+        // но при жёсткой проверке 3 отбрасывается ребром 1 -> 3
+        assert domains.assign(0, 1);
+        assert Arrays.equals(domain(domains, 1), new int[]{0});
+        assert domains.assign(1, 0);
+        assert Arrays.equals(domain(domains, 2), new int[]{2});
+        // b = 5: у 5 единственный входящий сосед 4, а он не подходит для a
+        assert !domains.assign(0, 5);
+
+        // при нежёсткой проверке отсутствие ребра 1 -> 3 не требуется
+        CandidateDomains soft = new CandidateDomains(new SourceIndex(source()), new CompiledPattern(PATH, false), false);
+        assert soft.assign(0, 1);
+        assert Arrays.equals(domain(soft, 1), new int[]{0, 3});
+    }
+
+    /**
+     * Проверка, что выбранная вершина исключается из следующих позиций,
+     * а при жёсткой проверке исключаются и её соседи
+     */
+    @Test
+    public void usedTest() {
+        int[][] isolated = new int[2][2];
+        CandidateDomains soft = new CandidateDomains(
+                new SourceIndex(source()), new CompiledPattern(isolated, false), false
+        );
+        assert soft.size(0) == 6;
+        assert soft.assign(0, 4);
+        assert Arrays.equals(domain(soft, 1), new int[]{0, 1, 2, 3, 5});
+
+        CandidateDomains hard = new CandidateDomains(
+                new SourceIndex(source()), new CompiledPattern(isolated, true), false
+        );
+        // петля 4 -> 4 не совпадает с нулевой диагональю
+        assert Arrays.equals(domain(hard, 0), new int[]{0, 1, 2, 3, 5});
+        // у вершины 1 соседи 0, 2, 3, остаётся только 5
+        assert hard.assign(0, 1);
+        assert Arrays.equals(domain(hard, 1), new int[]{5});
+        // у вершины 5 соседи 2 и 4, а 4 отброшена диагональю
+        assert hard.assign(0, 5);
+        assert Arrays.equals(domain(hard, 1), new int[]{0, 1, 3});
+    }
+
+    /**
+     * Получить кандидатов позиции на её уровне перебора
+     *
+     * @param domains множества кандидатов
+     * @param cnt     позиция паттерна
+     * @return индексы вершин по возрастанию
+     */
+    private static int[] domain(CandidateDomains domains, int cnt) {
+        List<Integer> res = new ArrayList<>();
+        for (int i = domains.next(cnt, 0); i >= 0; i = domains.next(cnt, i + 1))
+            res.add(i);
+        return res.stream().mapToInt(Integer::intValue).toArray();
+    }
+}